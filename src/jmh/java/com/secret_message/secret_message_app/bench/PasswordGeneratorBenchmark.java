@@ -0,0 +1,69 @@
+package com.secret_message.secret_message_app.bench;
+
+import com.secret_message.secret_message_app.utils.PasswordGenerator;
+import com.secret_message.secret_message_app.utils.PasswordGenerator.CharacterClass;
+import com.secret_message.secret_message_app.utils.RandomSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * One password of {@code length} characters from all four classes.
+ * {@code stream} is the generator as it was: a {@link RandomSource} draw,
+ * a one-character {@code String} and a {@code Collectors.joining} step per
+ * character. {@code chars} is {@link PasswordGenerator#generate}: one bulk
+ * draw mapped into a {@code char[]}, wiped here as the response
+ * serializer would.
+ *
+ * <p>Run with {@code ./gradlew jmh -PjmhInclude=PasswordGenerator}, and add
+ * {@code -prof gc} to compare bytes allocated per password as well as
+ * ops/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordGeneratorBenchmark {
+
+    private static final String ALPHABET =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789!@#$%&*()_+-=[]?";
+
+    @Param({"stream", "chars"})
+    private String generator;
+
+    @Param({"16", "64"})
+    private int length;
+
+    private final PasswordGenerator passwordGenerator = new PasswordGenerator();
+    private final EnumSet<CharacterClass> allClasses = EnumSet.allOf(CharacterClass.class);
+
+    @Benchmark
+    public int generate() {
+        if ("stream".equals(generator)) {
+            return IntStream.range(0, length)
+                    .map(i -> ALPHABET.charAt(RandomSource.nextInt(ALPHABET.length())))
+                    .mapToObj(c -> String.valueOf((char) c))
+                    .collect(Collectors.joining())
+                    .hashCode();
+        }
+        char[] password = passwordGenerator.generate(length, allClasses);
+        int first = password[0];
+        Arrays.fill(password, '\0');
+        return first;
+    }
+}
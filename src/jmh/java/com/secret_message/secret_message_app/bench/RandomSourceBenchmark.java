@@ -0,0 +1,82 @@
+package com.secret_message.secret_message_app.bench;
+
+import com.secret_message.secret_message_app.utils.CryptoUtil;
+import com.secret_message.secret_message_app.utils.RandomSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The randomness of a message create under contention, at 1, 4 and all
+ * hardware threads: a 32-byte key, a message id, and the GCM seal of a
+ * short message (whose nonce always comes from {@link RandomSource}).
+ * {@code shared} draws the key from one static {@link SecureRandom} and
+ * the id from {@link UUID#randomUUID}, as CryptoUtil and the stores did;
+ * {@code striped} draws both from {@link RandomSource}.
+ *
+ * <p>Run with {@code ./gradlew jmh -PjmhInclude=RandomSource}. Compare
+ * ops/s across the three thread counts: the shared source flattens as
+ * threads queue on its locks, while the striped one keeps scaling until
+ * the cores run out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RandomSourceBenchmark {
+
+    private static final SecureRandom SHARED = new SecureRandom();
+
+    @Param({"shared", "striped"})
+    private String source;
+
+    private final CryptoUtil cryptoUtil = new CryptoUtil();
+
+    @Benchmark
+    @Threads(1)
+    public byte[] createOneThread() throws GeneralSecurityException {
+        return create();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] createFourThreads() throws GeneralSecurityException {
+        return create();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] createAllThreads() throws GeneralSecurityException {
+        return create();
+    }
+
+    private byte[] create() throws GeneralSecurityException {
+        boolean shared = "shared".equals(source);
+        byte[] key = new byte[32];
+        if (shared) {
+            SHARED.nextBytes(key);
+        } else {
+            RandomSource.nextBytes(key);
+        }
+        UUID messageId = shared ? UUID.randomUUID() : RandomSource.randomUUID();
+        byte[] sealed = cryptoUtil.encryptMessageToBytes(messageId.toString(), key, true);
+        Arrays.fill(key, (byte) 0);
+        return sealed;
+    }
+}
@@ -0,0 +1,88 @@
+package com.secret_message.secret_message_app.bench;
+
+import com.secret_message.secret_message_app.utils.CryptoUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of sealing and opening one message of {@code size} UTF-8 bytes,
+ * as one AES-GCM pass ({@code single}) and as 64 KiB segments
+ * ({@code segmented}), with {@code parallelism} cores to spread over
+ * ({@code 0}: all of them). Each operation runs as a task in a
+ * {@link ForkJoinPool} of that parallelism, so the segments fork into it
+ * rather than into the common pool the service uses; {@code single} runs
+ * in the same pool and ignores the parallelism.
+ *
+ * <p>Run with {@code ./gradlew jmh -PjmhInclude=SegmentedCipher}. The
+ * {@code segmented} scores against {@code parallelism} are the scaling
+ * curve; at {@code 1} they show what segmenting costs on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentedCipherBenchmark {
+
+    private static final int SEGMENT_SIZE = 65536;
+
+    @Param({"single", "segmented"})
+    private String format;
+
+    @Param({"262144", "1048576"})
+    private int size;
+
+    @Param({"1", "2", "4", "0"})
+    private int parallelism;
+
+    private final CryptoUtil cryptoUtil = new CryptoUtil();
+    private ForkJoinPool pool;
+    private byte[] key;
+    private String message;
+    private byte[] stored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        key = cryptoUtil.generateRandomAESKeyBytes();
+        char[] characters = new char[size];
+        for (int i = 0; i < size; i++) {
+            characters[i] = (char) ('a' + ThreadLocalRandom.current().nextInt(26));
+        }
+        message = new String(characters);
+        stored = encrypt();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        return pool.submit(() -> "segmented".equals(format)
+                ? cryptoUtil.encryptSegmentedMessageToBytes(message, key, SEGMENT_SIZE)
+                : cryptoUtil.encryptMessageToBytes(message, key, true)).join();
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return pool.submit(() -> cryptoUtil.decryptMessageFromBytes(stored, key)).join();
+    }
+}
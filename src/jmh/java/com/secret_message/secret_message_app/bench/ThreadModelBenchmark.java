@@ -0,0 +1,123 @@
+package com.secret_message.secret_message_app.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Platform versus virtual request threads under a burst of concurrent
+ * requests, each of which blocks on Redis the way the servlet mode does:
+ * the command goes out on a multiplexed connection and the request thread
+ * joins the reply future (RedisCacheManager's blocking forms).
+ *
+ * <p>Redis itself is simulated: one scheduler thread, standing in for the
+ * Lettuce event loop, completes each reply after {@code latencyMicros}, so
+ * the numbers measure the thread model and not a server. {@code platform}
+ * is Tomcat's default pool of 200 threads; {@code virtual} is one virtual
+ * thread per request, optionally behind the {@code app.redis.max-blocking-calls}
+ * semaphore ({@code maxBlockingCalls}, 0 = unbounded). Each request makes
+ * {@code roundTrips} calls: two is an atomic reveal (rate-limit bucket, then
+ * the take script).
+ *
+ * <p>Run with {@code ./gradlew jmh -PjmhInclude=ThreadModel}. The platform
+ * pool works through a burst in waves of 200, so its time grows with the
+ * burst size; virtual threads overlap every wait and are limited by the
+ * reply path instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadModelBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"200", "2000", "10000"})
+    private int concurrency;
+
+    @Param({"0", "512"})
+    private int maxBlockingCalls;
+
+    @Param("500")
+    private long latencyMicros;
+
+    @Param("2")
+    private int roundTrips;
+
+    private ExecutorService requestThreads;
+    private ScheduledExecutorService eventLoop;
+    private Semaphore permits;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        requestThreads = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        eventLoop = Executors.newSingleThreadScheduledExecutor();
+        permits = maxBlockingCalls > 0 ? new Semaphore(maxBlockingCalls, true) : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requestThreads.shutdownNow();
+        eventLoop.shutdownNow();
+    }
+
+    /** One burst of {@code concurrency} requests, start to last reply. */
+    @Benchmark
+    public void burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            requestThreads.execute(() -> {
+                try {
+                    for (int call = 0; call < roundTrips; call++) {
+                        blockingCall();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    private void blockingCall() throws InterruptedException {
+        if (permits != null) {
+            permits.acquire();
+        }
+        try {
+            CompletableFuture<Void> reply = new CompletableFuture<>();
+            eventLoop.schedule(() -> reply.complete(null), latencyMicros, TimeUnit.MICROSECONDS);
+            reply.join();
+        } finally {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.secret_message.secret_message_app.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring over shard ids. Each shard is placed at
+ * {@code virtualNodes} points (first 8 bytes of SHA-256 over
+ * {@code "<id>#<n>"}), and a key belongs to the first point at or after its
+ * own hash. Adding or removing one of N shards therefore moves only about
+ * 1/N of the key space. Immutable; build a new ring to change membership.
+ */
+public final class ConsistentHashRing {
+
+    private static final double HASH_SPACE = 0x1p64;
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> shardIds, int virtualNodes) {
+        if (shardIds.isEmpty()) {
+            throw new IllegalArgumentException("hash ring needs at least one shard");
+        }
+        for (String shardId : shardIds) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shardId + "#" + i), shardId);
+            }
+        }
+    }
+
+    /**
+     * Returns the shard that owns {@code key}.
+     */
+    public String shardFor(String key) {
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash(key));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * Fraction of the hash space (0..1) owned by {@code shardId}; the
+     * expected share of new keys placed on it.
+     */
+    public double share(String shardId) {
+        if (ring.size() == 1) {
+            // A single point owns the whole circle.
+            return ring.firstEntry().getValue().equals(shardId) ? 1.0 : 0.0;
+        }
+        double owned = 0;
+        long previous = ring.lastKey();
+        for (Map.Entry<Long, String> point : ring.entrySet()) {
+            if (point.getValue().equals(shardId)) {
+                owned += unsigned(point.getKey() - previous);
+            }
+            previous = point.getKey();
+        }
+        return owned / HASH_SPACE;
+    }
+
+    private static double unsigned(long value) {
+        return value >= 0 ? value : value + HASH_SPACE;
+    }
+
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest, 0, Long.BYTES).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
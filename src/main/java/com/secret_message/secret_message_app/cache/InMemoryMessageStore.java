@@ -0,0 +1,347 @@
+package com.secret_message.secret_message_app.cache;
+
+import com.secret_message.secret_message_app.utils.RandomSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-node {@link MessageStore} ({@code app.storage.backend=memory}):
+ * no network hop and no Redis at all, for edge sites and for measuring the
+ * service's own overhead. Nothing survives a restart and replicas do not
+ * share state, so run exactly one instance.
+ *
+ * <p>Each message is one immutable entry (payload, deadline, attempts,
+ * creation time) in a {@link ConcurrentHashMap}, with the ciphertext itself
+ * in an off-heap {@link OffHeapPayloadPool} block that is zeroed as soon as
+ * the message is taken, deleted or expires. Every multi-step primitive is a
+ * single {@code compute}/{@code remove} on its key, which gives the same
+ * per-message atomicity as the Redis scripts. A chunked message's chunks
+ * live in a second map, one block per chunk. Expiry is checked on every
+ * read and enforced in the background by a {@link TimerWheel} ticking once
+ * per {@value #TICK_MILLIS} ms.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "memory")
+public class InMemoryMessageStore implements MessageStore, DisposableBean {
+
+    static final long TICK_MILLIS = 1_000;
+    private static final int WHEEL_SLOTS = 4_096;
+
+    private record StoredMessage(OffHeapPayloadPool.Block payload, long expiresAtMillis, int attempts,
+                                 long createdAtMillis) {
+        boolean expired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+    }
+
+    /** A chunked message's ciphertext, one off-heap block per chunk. */
+    private record StoredChunks(List<OffHeapPayloadPool.Block> blocks, long expiresAtMillis) {
+        boolean expired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+
+        void free() {
+            blocks.forEach(OffHeapPayloadPool.Block::free);
+        }
+    }
+
+    private record StoredRecord(String json, long expiresAtMillis) {
+        boolean expired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+    }
+
+    private final ConcurrentHashMap<String, StoredMessage> messages = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StoredChunks> chunks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StoredRecord> idempotencyRecords = new ConcurrentHashMap<>();
+    private final TimerWheel<String> messageTimers;
+    private final TimerWheel<String> chunkTimers;
+    private final TimerWheel<String> recordTimers;
+    private final OffHeapPayloadPool payloadPool;
+    private final Clock clock;
+    private final ScheduledExecutorService expiryThread;
+    private final long ttlMillis;
+    private final int maxTries;
+
+    @Autowired
+    public InMemoryMessageStore(OffHeapPayloadPool payloadPool,
+                                @Value("${app.auto-delete-days}") long messageExpiryTime,
+                                @Value("${app.max-tries}") int maxTries) {
+        this(payloadPool, Clock.systemUTC(), TimeUnit.DAYS.toMillis(messageExpiryTime), maxTries, true);
+    }
+
+    /**
+     * @param startExpiryThread false in tests that drive {@link #expire()} themselves
+     */
+    InMemoryMessageStore(OffHeapPayloadPool payloadPool, Clock clock, long ttlMillis, int maxTries,
+                         boolean startExpiryThread) {
+        this.payloadPool = payloadPool;
+        this.clock = clock;
+        this.ttlMillis = ttlMillis;
+        this.maxTries = maxTries;
+        this.messageTimers = new TimerWheel<>(TICK_MILLIS, WHEEL_SLOTS, clock.millis());
+        this.chunkTimers = new TimerWheel<>(TICK_MILLIS, WHEEL_SLOTS, clock.millis());
+        this.recordTimers = new TimerWheel<>(TICK_MILLIS, WHEEL_SLOTS, clock.millis());
+        if (startExpiryThread) {
+            expiryThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "message-store-expiry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            expiryThread.scheduleAtFixedRate(this::expire, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            expiryThread = null;
+        }
+    }
+
+    @Override
+    public String newMessageId() {
+        return RandomSource.randomUUID().toString();
+    }
+
+    @Override
+    public String newMessageId(String idempotencyKey) {
+        return newMessageId();
+    }
+
+    @Override
+    public void storeEncryptedPayload(String messageId, byte[] payload) {
+        long now = clock.millis();
+        put(messageId, new StoredMessage(payloadPool.store(payload), now + ttlMillis, 0, now));
+    }
+
+    @Override
+    public String storeEncryptedPayloadWithIdempotencyRecord(String messageId, byte[] payload,
+                                                             String idempotencyKey, String recordJson) {
+        long now = clock.millis();
+        StoredRecord created = new StoredRecord(recordJson, now + ttlMillis);
+        // The message is written inside the record's compute, so no reader
+        // can see the record without its message.
+        StoredRecord winner = idempotencyRecords.compute(idempotencyKey, (key, existing) -> {
+            if (existing != null && !existing.expired(now)) {
+                return existing;
+            }
+            put(messageId, new StoredMessage(payloadPool.store(payload), now + ttlMillis, 0, now));
+            return created;
+        });
+        if (winner != created) {
+            return winner.json();
+        }
+        recordTimers.schedule(idempotencyKey, created.expiresAtMillis());
+        return null;
+    }
+
+    @Override
+    public byte[] getEncryptedPayload(String messageId) {
+        long now = clock.millis();
+        byte[][] copy = new byte[1][];
+        // Copied under the entry's lock, so a concurrent take cannot free
+        // the block mid-read.
+        messages.computeIfPresent(messageId, (id, message) -> {
+            if (!message.expired(now)) {
+                copy[0] = message.payload().read();
+            }
+            return message;
+        });
+        return copy[0];
+    }
+
+    @Override
+    public boolean deleteIfPresent(String messageId) {
+        StoredMessage removed = messages.remove(messageId);
+        if (removed == null) {
+            return false;
+        }
+        removed.payload().free();
+        return !removed.expired(clock.millis());
+    }
+
+    @Override
+    public TakenMessage takeMessage(String messageId) {
+        long now = clock.millis();
+        StoredMessage taken = messages.remove(messageId);
+        if (taken == null) {
+            return null;
+        }
+        byte[] payload = taken.expired(now) ? null : taken.payload().read();
+        taken.payload().free();
+        if (payload == null) {
+            return null;
+        }
+        return new TakenMessage(payload, taken.expiresAtMillis() - now, taken.attempts(), taken.createdAtMillis());
+    }
+
+    @Override
+    public boolean restoreAfterFailedAttempt(String messageId, TakenMessage taken) {
+        int attempts = taken.attempts() + 1;
+        if (attempts >= maxTries) {
+            return true;
+        }
+        long expiresAt = clock.millis() + taken.remainingTtlMillis();
+        StoredMessage restored = new StoredMessage(
+                payloadPool.store(taken.payload()), expiresAt, attempts, taken.createdAtMillis());
+        if (messages.putIfAbsent(messageId, restored) == null) {
+            messageTimers.schedule(messageId, expiresAt);
+        } else {
+            restored.payload().free();
+        }
+        return false;
+    }
+
+    @Override
+    public boolean incrementAndCheckAttempt(String messageId) {
+        long now = clock.millis();
+        boolean[] exhausted = new boolean[1];
+        messages.computeIfPresent(messageId, (id, message) -> {
+            if (message.expired(now)) {
+                message.payload().free();
+                return null;
+            }
+            int attempts = message.attempts() + 1;
+            if (attempts >= maxTries) {
+                exhausted[0] = true;
+                message.payload().free();
+                return null;
+            }
+            return new StoredMessage(message.payload(), message.expiresAtMillis(), attempts, message.createdAtMillis());
+        });
+        return exhausted[0];
+    }
+
+    /**
+     * Attempts are kept inside the message entry, so there is never a
+     * separate count to drop.
+     */
+    @Override
+    public void resetAttempt(String messageId) {
+    }
+
+    /**
+     * Chunks outlive their message by one timer tick, so a manifest never
+     * points at chunks the expiry thread has already dropped.
+     */
+    @Override
+    public void appendChunk(String messageId, byte[] chunk) {
+        long expiresAt = clock.millis() + ttlMillis + TICK_MILLIS;
+        OffHeapPayloadPool.Block block = payloadPool.store(chunk);
+        chunks.compute(messageId, (id, stored) -> {
+            List<OffHeapPayloadPool.Block> blocks = new ArrayList<>();
+            if (stored != null) {
+                blocks.addAll(stored.blocks());
+            }
+            blocks.add(block);
+            return new StoredChunks(List.copyOf(blocks), expiresAt);
+        });
+        chunkTimers.schedule(messageId, expiresAt);
+    }
+
+    @Override
+    public byte[] getChunk(String messageId, int index) {
+        long now = clock.millis();
+        byte[][] copy = new byte[1][];
+        chunks.computeIfPresent(messageId, (id, stored) -> {
+            if (!stored.expired(now) && index >= 0 && index < stored.blocks().size()) {
+                copy[0] = stored.blocks().get(index).read();
+            }
+            return stored;
+        });
+        return copy[0];
+    }
+
+    @Override
+    public void deleteChunks(String messageId) {
+        StoredChunks removed = chunks.remove(messageId);
+        if (removed != null) {
+            removed.free();
+        }
+    }
+
+    @Override
+    public String getIdempotencyRecord(String idempotencyKey) {
+        StoredRecord record = idempotencyRecords.get(idempotencyKey);
+        if (record == null || record.expired(clock.millis())) {
+            return null;
+        }
+        return record.json();
+    }
+
+    @Override
+    public boolean storeIdempotencyRecordIfAbsent(String idempotencyKey, String recordJson) {
+        long now = clock.millis();
+        StoredRecord created = new StoredRecord(recordJson, now + ttlMillis);
+        StoredRecord winner = idempotencyRecords.compute(idempotencyKey,
+                (key, existing) -> existing != null && !existing.expired(now) ? existing : created);
+        if (winner != created) {
+            return false;
+        }
+        recordTimers.schedule(idempotencyKey, created.expiresAtMillis());
+        return true;
+    }
+
+    /**
+     * Number of live (unexpired) messages.
+     */
+    public int size() {
+        long now = clock.millis();
+        return (int) messages.values().stream().filter(message -> !message.expired(now)).count();
+    }
+
+    /**
+     * Advances both timer wheels to the current time, dropping expired
+     * entries. Runs on the expiry thread once per tick.
+     */
+    void expire() {
+        long now = clock.millis();
+        messageTimers.advance(now, id -> {
+            StoredMessage remaining = messages.computeIfPresent(id, (key, message) -> {
+                if (!message.expired(now)) {
+                    return message;
+                }
+                message.payload().free();
+                return null;
+            });
+            return remaining == null;
+        });
+        chunkTimers.advance(now, id -> {
+            StoredChunks remaining = chunks.computeIfPresent(id, (key, stored) -> {
+                if (!stored.expired(now)) {
+                    return stored;
+                }
+                stored.free();
+                return null;
+            });
+            return remaining == null;
+        });
+        recordTimers.advance(now, key -> {
+            StoredRecord remaining = idempotencyRecords.computeIfPresent(key,
+                    (k, record) -> record.expired(now) ? null : record);
+            return remaining == null;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        if (expiryThread != null) {
+            expiryThread.shutdownNow();
+        }
+    }
+
+    private void put(String messageId, StoredMessage message) {
+        StoredMessage replaced = messages.put(messageId, message);
+        if (replaced != null) {
+            replaced.payload().free();
+        }
+        messageTimers.schedule(messageId, message.expiresAtMillis());
+    }
+}
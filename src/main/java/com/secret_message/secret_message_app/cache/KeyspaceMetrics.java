@@ -0,0 +1,103 @@
+package com.secret_message.secret_message_app.cache;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What the store holds, for capacity planning and for alerting before
+ * Redis hits its memory limit: live messages, idempotency records, and
+ * rate-limit buckets with their memory, plus the size of every payload
+ * written.
+ *
+ * <p>Message and idempotency counts are kept incrementally by the write
+ * paths ({@link RedisCacheManager}, {@code IdempotencyService}), which
+ * cannot see keys expire, so {@link KeyspaceReconciler} periodically
+ * replaces them with counts from a SCAN. Between scans each replica reports
+ * the keyspace as of its last scan plus its own writes since, so aggregate
+ * the gauges across replicas with max, not sum. Rate-limit buckets come
+ * from the scan alone: Bucket4j creates them inside its compare-and-swap,
+ * where a new bucket cannot be told from a refilled one.
+ */
+@Component
+public class KeyspaceMetrics {
+
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong idempotencyRecords = new AtomicLong();
+    private final AtomicLong rateLimitBuckets = new AtomicLong();
+    private final AtomicLong rateLimitBytes = new AtomicLong();
+    private final DistributionSummary payloadSize;
+
+    public KeyspaceMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("storage.messages.live", messages, AtomicLong::get)
+                .description("Messages stored and not yet revealed, deleted or expired")
+                .register(meterRegistry);
+        Gauge.builder("storage.idempotency.records", idempotencyRecords, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("storage.ratelimit.buckets", rateLimitBuckets, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("storage.ratelimit.memory", rateLimitBytes, AtomicLong::get)
+                .description("Redis memory held by rate-limit buckets, estimated from a sample")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.payloadSize = DistributionSummary.builder("storage.payload.size")
+                .description("Stored payload (or chunked-message manifest) sizes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void messageStored(int payloadLength) {
+        messages.incrementAndGet();
+        payloadSize.record(payloadLength);
+    }
+
+    /**
+     * A message put back after a wrong-key attempt: live again, but not a
+     * new payload.
+     */
+    public void messageRestored() {
+        messages.incrementAndGet();
+    }
+
+    public void messageRemoved() {
+        decrement(messages);
+    }
+
+    public void idempotencyRecordStored() {
+        idempotencyRecords.incrementAndGet();
+    }
+
+    /**
+     * Replaces the incremental counts with what a scan found.
+     */
+    void reconcile(long messageCount, long idempotencyRecordCount, long rateLimitBucketCount,
+                   long rateLimitMemoryBytes) {
+        messages.set(messageCount);
+        idempotencyRecords.set(idempotencyRecordCount);
+        rateLimitBuckets.set(rateLimitBucketCount);
+        rateLimitBytes.set(rateLimitMemoryBytes);
+    }
+
+    long messages() {
+        return messages.get();
+    }
+
+    long idempotencyRecords() {
+        return idempotencyRecords.get();
+    }
+
+    long rateLimitBuckets() {
+        return rateLimitBuckets.get();
+    }
+
+    long rateLimitBytes() {
+        return rateLimitBytes.get();
+    }
+
+    private static void decrement(AtomicLong count) {
+        count.updateAndGet(value -> Math.max(0, value - 1));
+    }
+}
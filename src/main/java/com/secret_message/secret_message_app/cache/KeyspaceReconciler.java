@@ -0,0 +1,147 @@
+package com.secret_message.secret_message_app.cache;
+
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recounts the Redis keyspace for {@link KeyspaceMetrics} every
+ * {@code app.metrics.keyspace-scan-interval} (0 disables it), correcting
+ * for keys that expired since the last scan. Each shard is walked with
+ * SCAN in pages of {@value #SCAN_PAGE} keys on its multiplexed connection,
+ * one page in flight at a time, so Redis is never blocked the way KEYS
+ * would block it and no thread waits on the replies. Rate-limit memory is
+ * MEMORY USAGE averaged over the first {@value #MEMORY_SAMPLES} buckets
+ * seen, times the bucket count.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "redis", matchIfMissing = true)
+public class KeyspaceReconciler implements DisposableBean {
+
+    static final int SCAN_PAGE = 1_000;
+    static final int MEMORY_SAMPLES = 64;
+
+    private final RedisShardRouter shards;
+    private final KeyspaceMetrics metrics;
+    private final Duration interval;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private ScheduledExecutorService scheduler;
+
+    public KeyspaceReconciler(RedisShardRouter shards, KeyspaceMetrics metrics,
+                              @Value("${app.metrics.keyspace-scan-interval:5m}") Duration interval) {
+        this.shards = shards;
+        this.metrics = metrics;
+        this.interval = interval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (interval.isZero() || interval.isNegative()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "keyspace-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::reconcileInBackground, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Scans every shard and publishes the counts once all have finished. A
+     * scan still running when the next one is due is left to finish; a
+     * failed scan leaves the incremental counts in place until the next.
+     */
+    public CompletableFuture<Void> reconcile() {
+        Counts counts = new Counts();
+        List<CompletableFuture<Void>> scans = new ArrayList<>();
+        for (RedisShard shard : shards.all()) {
+            scans.add(scan(shard.commands(), ScanCursor.INITIAL, counts));
+        }
+        return CompletableFuture.allOf(scans.toArray(CompletableFuture[]::new)).thenRun(() -> {
+            long buckets = counts.rateLimitBuckets.get();
+            long sampled = counts.sampledBuckets.get();
+            long bucketBytes = sampled == 0 ? 0 : counts.sampledBytes.get() * buckets / sampled;
+            metrics.reconcile(counts.messages.get(), counts.idempotencyRecords.get(), buckets, bucketBytes);
+        });
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void reconcileInBackground() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        reconcile().whenComplete((ignored, failure) -> {
+            running.set(false);
+            if (failure != null) {
+                log.warn("Keyspace scan failed; storage gauges keep their incremental counts", failure);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> scan(RedisAsyncCommands<String, byte[]> commands, ScanCursor cursor,
+                                         Counts counts) {
+        return commands.scan(cursor, ScanArgs.Builder.limit(SCAN_PAGE)).toCompletableFuture()
+                .thenCompose(page -> sample(commands, page, counts)
+                        .thenCompose(ignored -> page.isFinished()
+                                ? CompletableFuture.completedFuture(null)
+                                : scan(commands, page, counts)));
+    }
+
+    private CompletableFuture<Void> sample(RedisAsyncCommands<String, byte[]> commands, KeyScanCursor<String> page,
+                                           Counts counts) {
+        List<CompletableFuture<?>> samples = new ArrayList<>();
+        for (String key : page.getKeys()) {
+            if (key.startsWith("messages:") || key.startsWith("msg:")) {
+                counts.messages.incrementAndGet();
+            } else if (key.startsWith("idempotency:")) {
+                counts.idempotencyRecords.incrementAndGet();
+            } else if (key.startsWith("ratelimit:")) {
+                counts.rateLimitBuckets.incrementAndGet();
+                if (counts.sampledBuckets.get() + samples.size() < MEMORY_SAMPLES) {
+                    samples.add(commands.memoryUsage(key).toCompletableFuture().thenAccept(bytes -> {
+                        // Null when the bucket expired between SCAN and MEMORY USAGE.
+                        if (bytes != null) {
+                            counts.sampledBuckets.incrementAndGet();
+                            counts.sampledBytes.addAndGet(bytes);
+                        }
+                    }));
+                }
+            }
+        }
+        return CompletableFuture.allOf(samples.toArray(CompletableFuture[]::new));
+    }
+
+    private static final class Counts {
+        final AtomicLong messages = new AtomicLong();
+        final AtomicLong idempotencyRecords = new AtomicLong();
+        final AtomicLong rateLimitBuckets = new AtomicLong();
+        final AtomicLong sampledBuckets = new AtomicLong();
+        final AtomicLong sampledBytes = new AtomicLong();
+    }
+}
@@ -0,0 +1,205 @@
+package com.secret_message.secret_message_app.cache;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage primitives the message and idempotency services rely on. Every
+ * method that changes more than one piece of state does so atomically:
+ * no caller can observe a half-written create, a taken-but-still-readable
+ * message, or an attempt counted without its delete-on-exhaustion.
+ *
+ * <p>Messages and idempotency records expire {@code app.auto-delete-days}
+ * after they are written. Implementations, selected with
+ * {@code app.storage.backend}:
+ * <ul>
+ *   <li>{@link RedisCacheManager} ({@code redis}, default): shared by all
+ *       replicas, optionally sharded.</li>
+ *   <li>{@link InMemoryMessageStore} ({@code memory}): single node, no
+ *       network; everything is lost on restart.</li>
+ * </ul>
+ *
+ * <p>Messages above {@code app.storage.chunk-size} are stored as numbered
+ * ciphertext chunks plus a small manifest that takes the payload's place.
+ * The chunks are written first and are only reachable through the
+ * manifest, so storing the manifest commits the message and claiming it
+ * with {@link #takeMessage} claims the whole set.
+ *
+ * <p>Each storage operation also has an {@code ...Async} form returning a
+ * {@link CompletableFuture} that fails with the exception the blocking form
+ * would throw. The Redis store issues the command and returns at once; the
+ * defaults here run the blocking form on the calling thread, which is all
+ * a store without network I/O needs.
+ */
+public interface MessageStore {
+
+    /**
+     * Id for a new message. Backends that partition data may encode the
+     * placement in it.
+     */
+    String newMessageId();
+
+    /**
+     * Id for a new message that must be stored next to the idempotency
+     * record for {@code idempotencyKey}.
+     */
+    String newMessageId(String idempotencyKey);
+
+    /**
+     * Stores a payload (binary, or legacy Base64 text as ASCII bytes) with
+     * the message TTL and no recorded attempts.
+     */
+    void storeEncryptedPayload(String messageId, byte[] payload);
+
+    /**
+     * Stores the payload and its idempotency record together, unless a
+     * record already exists for {@code idempotencyKey}; then nothing is
+     * written and that record is returned.
+     *
+     * @return null when this call created the message, else the existing record JSON
+     */
+    String storeEncryptedPayloadWithIdempotencyRecord(String messageId, byte[] payload,
+                                                      String idempotencyKey, String recordJson);
+
+    /**
+     * Returns the stored payload bytes, or null when the message is gone.
+     */
+    byte[] getEncryptedPayload(String messageId);
+
+    /**
+     * Race-closing primitive for the classic reveal success path.
+     * Returns true only for the caller that actually performed the delete.
+     */
+    boolean deleteIfPresent(String messageId);
+
+    /**
+     * Reads and removes the message and its attempt count in one step.
+     * Returns null when the message does not exist (never created, expired,
+     * exhausted, or claimed by a concurrent reveal).
+     */
+    TakenMessage takeMessage(String messageId);
+
+    /**
+     * Counts the failed attempt of a message claimed by {@link #takeMessage}
+     * and puts it back with its remaining TTL, unless {@code app.max-tries}
+     * is reached.
+     *
+     * @return true when the attempt budget is exhausted and the message is gone
+     */
+    boolean restoreAfterFailedAttempt(String messageId, TakenMessage taken);
+
+    /**
+     * Counts a wrong-key attempt against a stored message. The count expires
+     * with its message; reaching {@code app.max-tries} deletes both.
+     *
+     * @return true when the attempt budget is exhausted and the message is gone
+     */
+    boolean incrementAndCheckAttempt(String messageId);
+
+    /**
+     * Drops any attempt count still held apart from its message.
+     */
+    void resetAttempt(String messageId);
+
+    /**
+     * Appends the next ciphertext chunk of a chunked message. Chunks expire
+     * a little after their message would, so a manifest never outlives them.
+     */
+    void appendChunk(String messageId, byte[] chunk);
+
+    /**
+     * Returns chunk {@code index} (0-based) of a chunked message, or null
+     * when it is gone.
+     */
+    byte[] getChunk(String messageId, int index);
+
+    /**
+     * Drops every chunk of a message; a no-op when it has none.
+     */
+    void deleteChunks(String messageId);
+
+    /**
+     * Returns the idempotency record JSON for {@code idempotencyKey}, or null.
+     */
+    String getIdempotencyRecord(String idempotencyKey);
+
+    /**
+     * Stores an idempotency record unless one already exists.
+     *
+     * @return true when this call created the record
+     */
+    boolean storeIdempotencyRecordIfAbsent(String idempotencyKey, String recordJson);
+
+    /**
+     * Stores each payload as {@link #storeEncryptedPayload} does, for a batch
+     * create; {@code payloads.get(i)} belongs to {@code messageIds.get(i)}.
+     * Not atomic across the batch: after a failure some messages may exist,
+     * and the caller deletes them.
+     */
+    default void storeEncryptedPayloads(List<String> messageIds, List<byte[]> payloads) {
+        for (int i = 0; i < messageIds.size(); i++) {
+            storeEncryptedPayload(messageIds.get(i), payloads.get(i));
+        }
+    }
+
+    default CompletableFuture<Void> storeEncryptedPayloadAsync(String messageId, byte[] payload) {
+        return CompletableFuture.runAsync(() -> storeEncryptedPayload(messageId, payload), Runnable::run);
+    }
+
+    default CompletableFuture<Void> storeEncryptedPayloadsAsync(List<String> messageIds, List<byte[]> payloads) {
+        return CompletableFuture.runAsync(() -> storeEncryptedPayloads(messageIds, payloads), Runnable::run);
+    }
+
+    default CompletableFuture<String> storeEncryptedPayloadWithIdempotencyRecordAsync(String messageId, byte[] payload,
+                                                                                      String idempotencyKey,
+                                                                                      String recordJson) {
+        return CompletableFuture.supplyAsync(
+                () -> storeEncryptedPayloadWithIdempotencyRecord(messageId, payload, idempotencyKey, recordJson),
+                Runnable::run);
+    }
+
+    default CompletableFuture<byte[]> getEncryptedPayloadAsync(String messageId) {
+        return CompletableFuture.supplyAsync(() -> getEncryptedPayload(messageId), Runnable::run);
+    }
+
+    default CompletableFuture<Boolean> deleteIfPresentAsync(String messageId) {
+        return CompletableFuture.supplyAsync(() -> deleteIfPresent(messageId), Runnable::run);
+    }
+
+    default CompletableFuture<TakenMessage> takeMessageAsync(String messageId) {
+        return CompletableFuture.supplyAsync(() -> takeMessage(messageId), Runnable::run);
+    }
+
+    default CompletableFuture<Boolean> restoreAfterFailedAttemptAsync(String messageId, TakenMessage taken) {
+        return CompletableFuture.supplyAsync(() -> restoreAfterFailedAttempt(messageId, taken), Runnable::run);
+    }
+
+    default CompletableFuture<Boolean> incrementAndCheckAttemptAsync(String messageId) {
+        return CompletableFuture.supplyAsync(() -> incrementAndCheckAttempt(messageId), Runnable::run);
+    }
+
+    default CompletableFuture<Void> resetAttemptAsync(String messageId) {
+        return CompletableFuture.runAsync(() -> resetAttempt(messageId), Runnable::run);
+    }
+
+    default CompletableFuture<Void> appendChunkAsync(String messageId, byte[] chunk) {
+        return CompletableFuture.runAsync(() -> appendChunk(messageId, chunk), Runnable::run);
+    }
+
+    default CompletableFuture<byte[]> getChunkAsync(String messageId, int index) {
+        return CompletableFuture.supplyAsync(() -> getChunk(messageId, index), Runnable::run);
+    }
+
+    default CompletableFuture<Void> deleteChunksAsync(String messageId) {
+        return CompletableFuture.runAsync(() -> deleteChunks(messageId), Runnable::run);
+    }
+
+    default CompletableFuture<String> getIdempotencyRecordAsync(String idempotencyKey) {
+        return CompletableFuture.supplyAsync(() -> getIdempotencyRecord(idempotencyKey), Runnable::run);
+    }
+
+    default CompletableFuture<Boolean> storeIdempotencyRecordIfAbsentAsync(String idempotencyKey, String recordJson) {
+        return CompletableFuture.supplyAsync(() -> storeIdempotencyRecordIfAbsent(idempotencyKey, recordJson),
+                Runnable::run);
+    }
+}
@@ -0,0 +1,176 @@
+package com.secret_message.secret_message_app.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Slab allocator that keeps message ciphertext off the Java heap for the
+ * in-process store. Payloads are copied into fixed-size blocks carved from
+ * 1 MiB direct-buffer slabs, one free list per power-of-two size class
+ * (256 B up to the largest payload). Off-heap memory is never moved or
+ * copied by the GC, and a large-message burst no longer turns into
+ * megabyte {@code byte[]}s promoted through the heap.
+ *
+ * <p>A block is zeroed when it is freed, i.e. when its message is taken,
+ * deleted or expires, so a released slot holds no ciphertext while it
+ * waits for reuse. Slabs are kept for reuse and never handed back to the
+ * OS; {@code app.storage.off-heap.max-bytes} caps the total, and an
+ * allocation beyond it fails rather than growing direct memory past
+ * {@code -XX:MaxDirectMemorySize}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "memory")
+public class OffHeapPayloadPool {
+
+    static final int MIN_BLOCK_BYTES = 256;
+    static final int SLAB_BYTES = 1024 * 1024;
+    private static final byte[] ZEROS = new byte[4096];
+
+    /**
+     * A payload held in one block. Reads copy it out to the heap; the block
+     * is returned to its free list exactly once.
+     */
+    public final class Block {
+        private final ByteBuffer memory;
+        private final int sizeClass;
+        private final int length;
+        private final AtomicBoolean freed = new AtomicBoolean();
+
+        private Block(ByteBuffer memory, int sizeClass, int length) {
+            this.memory = memory;
+            this.sizeClass = sizeClass;
+            this.length = length;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public byte[] read() {
+            if (freed.get()) {
+                throw new IllegalStateException("block already freed");
+            }
+            byte[] copy = new byte[length];
+            memory.get(0, copy, 0, length);
+            return copy;
+        }
+
+        /**
+         * Zeroes the payload bytes and returns the block to its free list.
+         */
+        public void free() {
+            if (!freed.compareAndSet(false, true)) {
+                return;
+            }
+            for (int offset = 0; offset < length; offset += ZEROS.length) {
+                memory.put(offset, ZEROS, 0, Math.min(ZEROS.length, length - offset));
+            }
+            usedBytes.addAndGet(-blockBytes(sizeClass));
+            freeLists[sizeClass].push(memory);
+        }
+    }
+
+    private final ConcurrentLinkedDeque<ByteBuffer>[] freeLists;
+    private final long maxBytes;
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final Counter rejected;
+
+    @SuppressWarnings("unchecked")
+    public OffHeapPayloadPool(@Value("${app.storage.off-heap.max-bytes:67108864}") long maxBytes,
+                              @Value("${app.max-message-size:1048576}") long maxMessageSize,
+                              MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes;
+        // Binary ciphertext is the plaintext plus marker, IV and padding.
+        int classes = sizeClassFor(maxMessageSize + 64) + 1;
+        this.freeLists = new ConcurrentLinkedDeque[classes];
+        for (int i = 0; i < classes; i++) {
+            freeLists[i] = new ConcurrentLinkedDeque<>();
+        }
+        Gauge.builder("storage.offheap.bytes.reserved", reservedBytes, AtomicLong::get)
+                .description("Direct memory held in payload slabs")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.offheap.bytes.used", usedBytes, AtomicLong::get)
+                .description("Slab blocks currently holding a payload")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("storage.offheap.allocations.rejected")
+                .description("Payloads refused because the pool reached app.storage.off-heap.max-bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Copies {@code payload} into a free block of the smallest fitting size
+     * class. The caller keeps ownership of (and may wipe) its array.
+     *
+     * @throws IllegalStateException when the pool is at its size cap
+     */
+    public Block store(byte[] payload) {
+        int sizeClass = sizeClassFor(payload.length);
+        if (sizeClass >= freeLists.length) {
+            throw new IllegalArgumentException("payload larger than the largest size class");
+        }
+        ByteBuffer memory = freeLists[sizeClass].poll();
+        if (memory == null) {
+            memory = carveSlab(sizeClass);
+        }
+        memory.put(0, payload);
+        usedBytes.addAndGet(blockBytes(sizeClass));
+        return new Block(memory, sizeClass, payload.length);
+    }
+
+    long reservedBytes() {
+        return reservedBytes.get();
+    }
+
+    long usedBytes() {
+        return usedBytes.get();
+    }
+
+    static int sizeClassFor(long length) {
+        int sizeClass = 0;
+        while ((long) MIN_BLOCK_BYTES << sizeClass < length) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    private static int blockBytes(int sizeClass) {
+        return MIN_BLOCK_BYTES << sizeClass;
+    }
+
+    /**
+     * Allocates one slab for {@code sizeClass}, keeps its first block and
+     * pushes the rest onto the free list. Blocks of 1 MiB and up get a
+     * slab of their own.
+     */
+    private ByteBuffer carveSlab(int sizeClass) {
+        int blockBytes = blockBytes(sizeClass);
+        int blocks = Math.max(1, SLAB_BYTES / blockBytes);
+        long slabBytes = (long) blocks * blockBytes;
+        long reserved;
+        do {
+            reserved = reservedBytes.get();
+            if (reserved + slabBytes > maxBytes) {
+                rejected.increment();
+                throw new IllegalStateException("off-heap payload pool exhausted");
+            }
+        } while (!reservedBytes.compareAndSet(reserved, reserved + slabBytes));
+
+        ByteBuffer slab = ByteBuffer.allocateDirect((int) slabBytes);
+        for (int i = 1; i < blocks; i++) {
+            freeLists[sizeClass].push(slab.slice(i * blockBytes, blockBytes));
+        }
+        return slab.slice(0, blockBytes);
+    }
+}
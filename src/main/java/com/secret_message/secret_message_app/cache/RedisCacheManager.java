@@ -1,18 +1,106 @@
 package com.secret_message.secret_message_app.cache;
 
+import com.secret_message.secret_message_app.utils.CryptoUtil;
+import io.lettuce.core.RedisCommandInterruptedException;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+/**
+ * Redis {@link MessageStore} for message payloads, attempt counters and
+ * idempotency records. Two message layouts,
+ * selected with {@code app.storage.layout}:
+ * <ul>
+ *   <li><b>keys</b> (default): {@code messages:<id>} holds the payload and
+ *       {@code attempts:<id>} the wrong-key counter, each with its own TTL.</li>
+ *   <li><b>hash</b>: one {@code msg:<id>} hash holds payload, counter and
+ *       metadata ({@code created_at}, {@code size_class}) under a single TTL
+ *       and is claimed or deleted as a unit. Half the keys, and the counter
+ *       cannot drift from its message. Reads and attempt accounting fall back
+ *       to the split keys, so messages written before a switch stay usable
+ *       until they expire. The keys layout has no such fallback, which makes
+ *       the switch one-way and one every replica must make together.</li>
+ * </ul>
+ * Either way a chunked message keeps its ciphertext in a
+ * {@code chunks:<id>} list, and the layout's payload slot holds only its
+ * manifest.
+ * Every operation runs on the shard encoded in the message id (see
+ * {@link RedisShardRouter}); with no extra shards configured that is
+ * always the {@code spring.redis.*} primary.
+ *
+ * <p>The storage operations are implemented once, on the shard's
+ * multiplexed Lettuce connection, as their {@code ...Async} forms; the
+ * blocking forms wait on those futures. Either way no connection is held
+ * while a reply is outstanding. {@code app.redis.max-blocking-calls} caps
+ * how many blocking callers may have a command in flight at once; with
+ * virtual threads there is no request thread pool left to do that.
+ */
 @Service
-public class RedisCacheManager {
+@Slf4j
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "redis", matchIfMissing = true)
+public class RedisCacheManager implements MessageStore {
 
-    private final StringRedisTemplate redisTemplate;
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE_MESSAGE_SCRIPT = loadScript("redis/take-message.lua", List.class);
+    private static final RedisScript<Long> RESTORE_MESSAGE_SCRIPT = loadScript("redis/restore-message.lua", Long.class);
+    private static final RedisScript<Long> RECORD_ATTEMPT_SCRIPT = loadScript("redis/record-attempt.lua", Long.class);
+    private static final RedisScript<Long> STORE_MESSAGE_HASH_SCRIPT = loadScript("redis/store-message-hash.lua", Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE_MESSAGE_HASH_SCRIPT = loadScript("redis/take-message-hash.lua", List.class);
+    private static final RedisScript<Long> RESTORE_MESSAGE_HASH_SCRIPT = loadScript("redis/restore-message-hash.lua", Long.class);
+    private static final RedisScript<Long> RECORD_ATTEMPT_HASH_SCRIPT = loadScript("redis/record-attempt-hash.lua", Long.class);
+    private static final RedisScript<byte[]> CREATE_IDEMPOTENT_SCRIPT = loadScript("redis/create-message-idempotent.lua", byte[].class);
+    private static final RedisScript<Long> APPEND_CHUNK_SCRIPT = loadScript("redis/append-chunk.lua", Long.class);
 
-    public RedisCacheManager(StringRedisTemplate redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    /** Chunk lists outlive their manifest by this much; see {@link #appendChunk}. */
+    private static final long CHUNK_TTL_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final String PAYLOAD_FIELD = "payload";
+
+    private final RedisShardRouter shards;
+    private final Counter payloadBytesSaved;
+    private final KeyspaceMetrics keyspaceMetrics;
+
+    /** Null when {@code app.redis.max-blocking-calls} is 0 (unbounded). */
+    private final Semaphore blockingPermits;
+    private final Duration commandTimeout;
+
+    public RedisCacheManager(RedisShardRouter shards, MeterRegistry meterRegistry, KeyspaceMetrics keyspaceMetrics,
+                             @Value("${app.redis.max-blocking-calls:0}") int maxBlockingCalls,
+                             @Value("${app.redis.command-timeout:2s}") Duration commandTimeout) {
+        this.shards = shards;
+        this.keyspaceMetrics = keyspaceMetrics;
+        this.blockingPermits = maxBlockingCalls > 0 ? new Semaphore(maxBlockingCalls, true) : null;
+        this.commandTimeout = commandTimeout;
+        // Bytes each binary payload saves versus its legacy Base64 encoding.
+        this.payloadBytesSaved = Counter.builder("storage.payload.bytes.saved")
+                .baseUnit("bytes")
+                .register(meterRegistry);
     }
 
     @Value("${app.auto-delete-days}")
@@ -21,6 +109,13 @@ public class RedisCacheManager {
     @Value("${app.max-tries}")
     private int maxTries;
 
+    @Value("${app.storage.layout:keys}")
+    private String storageLayout;
+
+    private String buildIdempotencyKey(String idempotencyKey) {
+        return "idempotency:" + idempotencyKey;
+    }
+
     private String buildMessageKey(String messageId) {
         return "messages:" + messageId;
     }
@@ -29,45 +124,534 @@ public class RedisCacheManager {
         return "attempts:" + messageId;
     }
 
+    private String buildHashKey(String messageId) {
+        return "msg:" + messageId;
+    }
+
+    private String buildChunksKey(String messageId) {
+        return "chunks:" + messageId;
+    }
+
+    private boolean hashLayout() {
+        return "hash".equalsIgnoreCase(storageLayout);
+    }
+
+    /**
+     * Coarse payload size bucket kept as hash metadata: 0 up to 1 KiB,
+     * 1 up to 64 KiB, 2 up to 1 MiB, 3 above.
+     */
+    static int sizeClass(int payloadLength) {
+        if (payloadLength <= 1024) {
+            return 0;
+        }
+        if (payloadLength <= 64 * 1024) {
+            return 1;
+        }
+        return payloadLength <= 1024 * 1024 ? 2 : 3;
+    }
+
+    @Override
+    public String newMessageId() {
+        return shards.newMessageId();
+    }
+
+    @Override
+    public String newMessageId(String idempotencyKey) {
+        return shards.newMessageId(idempotencyKey);
+    }
+
     public void storeEncryptedMessage(String messageId, String encryptedMessage) {
-        redisTemplate.opsForValue().set(buildMessageKey(messageId), encryptedMessage, messageExpiryTime, TimeUnit.DAYS);
+        if (hashLayout()) {
+            blocking(() -> storeInHash(messageId, encryptedMessage.getBytes(StandardCharsets.US_ASCII)));
+            return;
+        }
+        strings(messageId).opsForValue().set(buildMessageKey(messageId), encryptedMessage, messageExpiryTime, TimeUnit.DAYS);
     }
 
     public String getEncryptedMessageById(String messageId) {
-        return redisTemplate.opsForValue().get(buildMessageKey(messageId));
+        if (hashLayout()) {
+            byte[] payload = getEncryptedPayload(messageId);
+            return payload == null ? null : new String(payload, StandardCharsets.US_ASCII);
+        }
+        return strings(messageId).opsForValue().get(buildMessageKey(messageId));
+    }
+
+    /**
+     * Stores a payload as raw bytes: normally the binary form from
+     * {@code CryptoUtil.encryptMessageToBytes}, whose first byte is a format
+     * marker so the remainder is exactly what the legacy path Base64-encoded;
+     * legacy Base64 text passed as ASCII bytes is stored unchanged.
+     */
+    @Override
+    public void storeEncryptedPayload(String messageId, byte[] payload) {
+        blocking(() -> storeEncryptedPayloadAsync(messageId, payload));
+    }
+
+    @Override
+    public CompletableFuture<Void> storeEncryptedPayloadAsync(String messageId, byte[] payload) {
+        CompletableFuture<?> stored = hashLayout()
+                ? storeInHash(messageId, payload)
+                : commands(messageId).set(buildMessageKey(messageId), payload, SetArgs.Builder.px(messageTtlMillis()))
+                        .toCompletableFuture();
+        return stored.thenRun(() -> {
+            keyspaceMetrics.messageStored(payload.length);
+            if (CryptoUtil.isBinaryPayload(payload) || CryptoUtil.isAuthenticatedPayload(payload)) {
+                recordBytesSaved(payload);
+            }
+        });
+    }
+
+    @Override
+    public void storeEncryptedPayloads(List<String> messageIds, List<byte[]> payloads) {
+        blocking(() -> storeEncryptedPayloadsAsync(messageIds, payloads));
+    }
+
+    /**
+     * Issues every write before waiting for any reply. Lettuce puts them on
+     * each shard's multiplexed connection back to back, so the batch is one
+     * pipeline per shard and costs about one round trip, not one per
+     * message. Auto-flush stays on: batching by hand on a connection every
+     * request shares would hold up everyone else's commands.
+     */
+    @Override
+    public CompletableFuture<Void> storeEncryptedPayloadsAsync(List<String> messageIds, List<byte[]> payloads) {
+        CompletableFuture<?>[] stored = new CompletableFuture<?>[messageIds.size()];
+        for (int i = 0; i < stored.length; i++) {
+            stored[i] = storeEncryptedPayloadAsync(messageIds.get(i), payloads.get(i));
+        }
+        return CompletableFuture.allOf(stored);
+    }
+
+    /**
+     * Stores the payload together with its idempotency record in a single
+     * atomic script call. If a record already exists for
+     * {@code idempotencyKey} nothing is written and that record's JSON is
+     * returned, so a create that loses the race never leaves a message behind.
+     * The record gets the same TTL as the message. Both keys must live on
+     * one shard: create {@code messageId} with
+     * {@link #newMessageId(String)} for the Idempotency-Key.
+     *
+     * @return null when this call created the message, else the existing record JSON
+     */
+    @Override
+    public String storeEncryptedPayloadWithIdempotencyRecord(String messageId, byte[] payload,
+                                                             String idempotencyKey, String recordJson) {
+        return blocking(() -> storeEncryptedPayloadWithIdempotencyRecordAsync(messageId, payload, idempotencyKey, recordJson));
+    }
+
+    @Override
+    public CompletableFuture<String> storeEncryptedPayloadWithIdempotencyRecordAsync(String messageId, byte[] payload,
+                                                                                     String idempotencyKey,
+                                                                                     String recordJson) {
+        CompletableFuture<byte[]> existing = eval(commands(messageId), CREATE_IDEMPOTENT_SCRIPT, ScriptOutputType.VALUE,
+                List.of(buildIdempotencyKey(idempotencyKey),
+                        hashLayout() ? buildHashKey(messageId) : buildMessageKey(messageId)),
+                recordJson.getBytes(StandardCharsets.UTF_8),
+                payload,
+                asciiBytes(messageTtlMillis()),
+                (hashLayout() ? "hash" : "keys").getBytes(StandardCharsets.US_ASCII),
+                asciiBytes(System.currentTimeMillis()),
+                asciiBytes(sizeClass(payload.length)));
+        return existing.thenApply(record -> {
+            if (record != null) {
+                return new String(record, StandardCharsets.UTF_8);
+            }
+            keyspaceMetrics.messageStored(payload.length);
+            if (CryptoUtil.isBinaryPayload(payload) || CryptoUtil.isAuthenticatedPayload(payload)) {
+                recordBytesSaved(payload);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Returns the stored payload bytes in whichever format they were written:
+     * binary, or legacy Base64 text (as its ASCII bytes).
+     */
+    @Override
+    public byte[] getEncryptedPayload(String messageId) {
+        return blocking(() -> getEncryptedPayloadAsync(messageId));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> getEncryptedPayloadAsync(String messageId) {
+        RedisAsyncCommands<String, byte[]> commands = commands(messageId);
+        if (!hashLayout()) {
+            return commands.get(buildMessageKey(messageId)).toCompletableFuture();
+        }
+        return commands.hget(buildHashKey(messageId), PAYLOAD_FIELD).toCompletableFuture()
+                .thenCompose(payload -> payload != null
+                        ? CompletableFuture.completedFuture(payload)
+                        : commands.get(buildMessageKey(messageId)).toCompletableFuture());
     }
 
     public void deleteEncryptedMessage(String messageId) {
-        redisTemplate.delete(buildMessageKey(messageId));
+        if (hashLayout()) {
+            strings(messageId).delete(List.of(buildHashKey(messageId), buildMessageKey(messageId)));
+            return;
+        }
+        strings(messageId).delete(buildMessageKey(messageId));
     }
 
     /**
      * Race-closing primitive for the reveal success path.
      * Returns true only for the caller that actually performed the delete.
      */
+    @Override
     public boolean deleteIfPresent(String messageId) {
-        Boolean deleted = redisTemplate.delete(buildMessageKey(messageId));
-        return Boolean.TRUE.equals(deleted);
+        return blocking(() -> deleteIfPresentAsync(messageId));
     }
 
+    @Override
+    public CompletableFuture<Boolean> deleteIfPresentAsync(String messageId) {
+        RedisFuture<Long> deleted = hashLayout()
+                ? commands(messageId).del(buildHashKey(messageId), buildMessageKey(messageId))
+                : commands(messageId).del(buildMessageKey(messageId));
+        return deleted.toCompletableFuture().thenApply(count -> {
+            boolean removed = count != null && count > 0;
+            if (removed) {
+                keyspaceMetrics.messageRemoved();
+            }
+            return removed;
+        });
+    }
+
+    /**
+     * Counts a wrong-key attempt in one atomic script call: INCR, align the
+     * counter's TTL with the message's remaining PTTL, and delete message and
+     * counter once {@code app.max-tries} is reached.
+     *
+     * @return true when the attempt budget is exhausted and the message is gone
+     */
+    @Override
     public boolean incrementAndCheckAttempt(String messageId) {
-        String attemptKey = buildAttemptKey(messageId);
-        Long attempts = redisTemplate.opsForValue().increment(attemptKey);
-        if (attempts != null && attempts == 1) {
-            redisTemplate.expire(attemptKey, messageExpiryTime, TimeUnit.DAYS);
-        }
-        if (attempts != null && attempts >= maxTries) {
-            deleteEncryptedMessage(messageId);
-            return true;
-        }
-        return false;
+        return blocking(() -> incrementAndCheckAttemptAsync(messageId));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> incrementAndCheckAttemptAsync(String messageId) {
+        CompletableFuture<Long> attempts = hashLayout()
+                ? eval(commands(messageId), RECORD_ATTEMPT_HASH_SCRIPT, ScriptOutputType.INTEGER,
+                        List.of(buildHashKey(messageId), buildMessageKey(messageId), buildAttemptKey(messageId)),
+                        asciiBytes(maxTries),
+                        asciiBytes(messageTtlMillis()))
+                : eval(commands(messageId), RECORD_ATTEMPT_SCRIPT, ScriptOutputType.INTEGER,
+                        List.of(buildMessageKey(messageId), buildAttemptKey(messageId)),
+                        asciiBytes(maxTries),
+                        asciiBytes(messageTtlMillis()));
+        return attempts.thenApply(count -> {
+            boolean exhausted = exhausted(count);
+            if (exhausted) {
+                keyspaceMetrics.messageRemoved();
+            }
+            return exhausted;
+        });
     }
 
+    /**
+     * Drops the split-key attempt counter. In the hash layout the counter is
+     * deleted together with its message, so only a pre-switch counter can
+     * remain here.
+     */
+    @Override
     public void resetAttempt(String messageId) {
-        redisTemplate.delete(buildAttemptKey(messageId));
+        blocking(() -> resetAttemptAsync(messageId));
+    }
+
+    @Override
+    public CompletableFuture<Void> resetAttemptAsync(String messageId) {
+        return commands(messageId).del(buildAttemptKey(messageId)).toCompletableFuture().thenAccept(deleted -> { });
     }
 
     public Long getAttemptKeyTtl(String messageId) {
+        StringRedisTemplate redisTemplate = strings(messageId);
+        if (hashLayout() && Boolean.TRUE.equals(redisTemplate.hasKey(buildHashKey(messageId)))) {
+            return redisTemplate.getExpire(buildHashKey(messageId), TimeUnit.SECONDS);
+        }
         return redisTemplate.getExpire(buildAttemptKey(messageId), java.util.concurrent.TimeUnit.SECONDS);
     }
+
+    /**
+     * Reads and removes the message and its attempt counter in one atomic
+     * script call. Returns null when the message does not exist (never
+     * created, expired, exhausted, or claimed by a concurrent reveal).
+     */
+    @Override
+    public TakenMessage takeMessage(String messageId) {
+        return blocking(() -> takeMessageAsync(messageId));
+    }
+
+    @Override
+    public CompletableFuture<TakenMessage> takeMessageAsync(String messageId) {
+        CompletableFuture<List<Object>> result = hashLayout()
+                ? eval(commands(messageId), TAKE_MESSAGE_HASH_SCRIPT, ScriptOutputType.MULTI,
+                        List.of(buildHashKey(messageId), buildMessageKey(messageId), buildAttemptKey(messageId)))
+                : eval(commands(messageId), TAKE_MESSAGE_SCRIPT, ScriptOutputType.MULTI,
+                        List.of(buildMessageKey(messageId), buildAttemptKey(messageId)));
+        return result.thenApply(this::toTakenMessage).thenApply(taken -> {
+            if (taken != null) {
+                keyspaceMetrics.messageRemoved();
+            }
+            return taken;
+        });
+    }
+
+    private TakenMessage toTakenMessage(List<Object> result) {
+        if (result == null || result.isEmpty()) {
+            return null;
+        }
+        long pttl = ((Number) result.get(1)).longValue();
+        if (pttl <= 0) {
+            // No TTL on the source key should not happen; never restore a
+            // message without one.
+            pttl = messageTtlMillis();
+        }
+        long createdAt = result.size() > 3 ? ((Number) result.get(3)).longValue() : 0;
+        return new TakenMessage((byte[]) result.get(0), pttl, ((Number) result.get(2)).intValue(), createdAt);
+    }
+
+    /**
+     * Compensating path for a message claimed by {@link #takeMessage} whose
+     * decryption failed: counts the failed attempt and puts the payload back
+     * with its original remaining TTL, or leaves it deleted once
+     * {@code app.max-tries} is reached. One script call either way.
+     *
+     * @return true when the attempt budget is exhausted and the message is gone
+     */
+    @Override
+    public boolean restoreAfterFailedAttempt(String messageId, TakenMessage taken) {
+        return blocking(() -> restoreAfterFailedAttemptAsync(messageId, taken));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> restoreAfterFailedAttemptAsync(String messageId, TakenMessage taken) {
+        CompletableFuture<Long> attempts;
+        if (hashLayout()) {
+            long createdAt = taken.createdAtMillis() > 0
+                    ? taken.createdAtMillis()
+                    : System.currentTimeMillis() - (messageTtlMillis() - taken.remainingTtlMillis());
+            attempts = eval(commands(messageId), RESTORE_MESSAGE_HASH_SCRIPT, ScriptOutputType.INTEGER,
+                    List.of(buildHashKey(messageId)),
+                    taken.payload(),
+                    asciiBytes(taken.remainingTtlMillis()),
+                    asciiBytes(taken.attempts()),
+                    asciiBytes(maxTries),
+                    asciiBytes(createdAt),
+                    asciiBytes(sizeClass(taken.payload().length)));
+        } else {
+            attempts = eval(commands(messageId), RESTORE_MESSAGE_SCRIPT, ScriptOutputType.INTEGER,
+                    List.of(buildMessageKey(messageId), buildAttemptKey(messageId)),
+                    taken.payload(),
+                    asciiBytes(taken.remainingTtlMillis()),
+                    asciiBytes(taken.attempts()),
+                    asciiBytes(maxTries));
+        }
+        return attempts.thenApply(count -> {
+            boolean exhausted = exhausted(count);
+            if (!exhausted) {
+                keyspaceMetrics.messageRestored();
+            }
+            return exhausted;
+        });
+    }
+
+    /**
+     * Appends a chunk to the {@code chunks:<id>} list on the message's shard
+     * in one script call (RPUSH and PEXPIRE). The list's TTL is the message
+     * TTL plus a grace period, re-armed on every append, so it is still
+     * there for a manifest stored after the last chunk.
+     */
+    @Override
+    public void appendChunk(String messageId, byte[] chunk) {
+        blocking(() -> appendChunkAsync(messageId, chunk));
+    }
+
+    @Override
+    public CompletableFuture<Void> appendChunkAsync(String messageId, byte[] chunk) {
+        CompletableFuture<Long> count = eval(commands(messageId), APPEND_CHUNK_SCRIPT, ScriptOutputType.INTEGER,
+                List.of(buildChunksKey(messageId)),
+                chunk,
+                asciiBytes(messageTtlMillis() + CHUNK_TTL_GRACE_MILLIS));
+        return count.thenAccept(ignored -> { });
+    }
+
+    @Override
+    public byte[] getChunk(String messageId, int index) {
+        return blocking(() -> getChunkAsync(messageId, index));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> getChunkAsync(String messageId, int index) {
+        return commands(messageId).lindex(buildChunksKey(messageId), index).toCompletableFuture();
+    }
+
+    /**
+     * UNLINK, so Redis frees a large chunk list off its main thread.
+     */
+    @Override
+    public void deleteChunks(String messageId) {
+        blocking(() -> deleteChunksAsync(messageId));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteChunksAsync(String messageId) {
+        return commands(messageId).unlink(buildChunksKey(messageId)).toCompletableFuture().thenAccept(deleted -> { });
+    }
+
+    /**
+     * Idempotency records live on the shard that owns the key.
+     */
+    @Override
+    public String getIdempotencyRecord(String idempotencyKey) {
+        return blocking(() -> getIdempotencyRecordAsync(idempotencyKey));
+    }
+
+    @Override
+    public CompletableFuture<String> getIdempotencyRecordAsync(String idempotencyKey) {
+        return shards.forKey(idempotencyKey).commands().get(buildIdempotencyKey(idempotencyKey)).toCompletableFuture()
+                .thenApply(json -> json == null ? null : new String(json, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean storeIdempotencyRecordIfAbsent(String idempotencyKey, String recordJson) {
+        return blocking(() -> storeIdempotencyRecordIfAbsentAsync(idempotencyKey, recordJson));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> storeIdempotencyRecordIfAbsentAsync(String idempotencyKey, String recordJson) {
+        return shards.forKey(idempotencyKey).commands().set(
+                buildIdempotencyKey(idempotencyKey),
+                recordJson.getBytes(StandardCharsets.UTF_8),
+                SetArgs.Builder.nx().px(messageTtlMillis())
+        ).toCompletableFuture().thenApply("OK"::equals);
+    }
+
+    /**
+     * Loads the message scripts into the Redis script cache of every shard
+     * at startup so the first reveal already runs as EVALSHA. Spring falls
+     * back to EVAL on a NOSCRIPT reply (e.g. after a Redis restart), so a
+     * failure here is only logged.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadScripts() {
+        for (RedisShard shard : shards.all()) {
+            preloadScripts(shard);
+        }
+    }
+
+    private void preloadScripts(RedisShard shard) {
+        try {
+            shard.strings().execute((RedisCallback<Void>) connection -> {
+                for (RedisScript<?> script : List.of(TAKE_MESSAGE_SCRIPT, RESTORE_MESSAGE_SCRIPT, RECORD_ATTEMPT_SCRIPT,
+                        STORE_MESSAGE_HASH_SCRIPT, TAKE_MESSAGE_HASH_SCRIPT, RESTORE_MESSAGE_HASH_SCRIPT,
+                        RECORD_ATTEMPT_HASH_SCRIPT, CREATE_IDEMPOTENT_SCRIPT, APPEND_CHUNK_SCRIPT)) {
+                    connection.scriptingCommands().scriptLoad(
+                            script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Could not preload Redis scripts on shard {}; they will be loaded on first use", shard.id(), e);
+        }
+    }
+
+    private CompletableFuture<Long> storeInHash(String messageId, byte[] payload) {
+        return eval(commands(messageId), STORE_MESSAGE_HASH_SCRIPT, ScriptOutputType.INTEGER,
+                List.of(buildHashKey(messageId)),
+                payload,
+                asciiBytes(System.currentTimeMillis()),
+                asciiBytes(sizeClass(payload.length)),
+                asciiBytes(messageTtlMillis()));
+    }
+
+    private StringRedisTemplate strings(String messageId) {
+        return shards.forMessage(messageId).strings();
+    }
+
+    private RedisAsyncCommands<String, byte[]> commands(String messageId) {
+        return shards.forMessage(messageId).commands();
+    }
+
+    private long messageTtlMillis() {
+        return TimeUnit.DAYS.toMillis(messageExpiryTime);
+    }
+
+    private boolean exhausted(Long attempts) {
+        return attempts != null && attempts >= maxTries;
+    }
+
+    /**
+     * Runs a script as EVALSHA, falling back to EVAL when the server's
+     * script cache does not have it (e.g. after a Redis restart).
+     */
+    private static <T> CompletableFuture<T> eval(RedisAsyncCommands<String, byte[]> commands, RedisScript<?> script,
+                                                 ScriptOutputType type, List<String> keys, byte[]... args) {
+        String[] keyArray = keys.toArray(String[]::new);
+        return commands.<T>evalsha(script.getSha1(), type, keyArray, args).toCompletableFuture()
+                .exceptionallyCompose(failure -> unwrap(failure) instanceof RedisNoScriptException
+                        ? commands.<T>eval(script.getScriptAsString(), type, keyArray, args).toCompletableFuture()
+                        : CompletableFuture.failedFuture(failure));
+    }
+
+    /**
+     * Blocking form of an async operation: issues it and waits for the reply
+     * (bounded by {@code app.redis.command-timeout}). With
+     * {@code app.redis.max-blocking-calls} set the command is only issued
+     * once a permit is free; waiting longer than the command timeout for
+     * one fails the same way a slow reply does. The semaphore parks a
+     * virtual thread without holding its carrier.
+     */
+    private <T> T blocking(Supplier<CompletableFuture<T>> operation) {
+        if (blockingPermits == null) {
+            return await(operation.get());
+        }
+        try {
+            if (!blockingPermits.tryAcquire(commandTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new RedisCommandTimeoutException("No Redis call permit within " + commandTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisCommandInterruptedException(e);
+        }
+        try {
+            return await(operation.get());
+        } finally {
+            blockingPermits.release();
+        }
+    }
+
+    /**
+     * Waits for a reply and rethrows the Redis exception itself rather than
+     * its {@link CompletionException} wrapper.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private void recordBytesSaved(byte[] binaryPayload) {
+        int rawLength = binaryPayload.length - 1;
+        payloadBytesSaved.increment(4L * ((rawLength + 2) / 3) - binaryPayload.length);
+    }
+
+    private static byte[] asciiBytes(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static <T> RedisScript<T> loadScript(String path, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(resultType);
+        return script;
+    }
 }
@@ -0,0 +1,19 @@
+package com.secret_message.secret_message_app.cache;
+
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * One independent Redis primary: its id (as encoded in message ids), the
+ * string and binary templates bound to its connection factory, and the
+ * non-blocking Lettuce commands (string keys, raw values) the data path
+ * runs on.
+ */
+public record RedisShard(
+        String id,
+        StringRedisTemplate strings,
+        RedisTemplate<String, byte[]> bytes,
+        RedisAsyncCommands<String, byte[]> commands
+) {
+}
@@ -0,0 +1,143 @@
+package com.secret_message.secret_message_app.cache;
+
+import com.secret_message.secret_message_app.utils.RandomSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Routes message- and idempotency-scoped Redis operations to one of N
+ * independent Redis primaries (see docs/KUBERNETES.md, "Sharding").
+ *
+ * <p>New messages are placed by consistent hashing and the chosen shard id
+ * is encoded in the message id ({@code <shard>.<uuid>}), so later lookups
+ * never consult the ring and keep working after the ring changes. Ids
+ * without a prefix (all ids when sharding is off, and ids issued before it
+ * was turned on) belong to the primary shard {@value #PRIMARY_SHARD}; so
+ * do ids naming an unknown shard, which then simply are not found.
+ * Idempotency records are placed by hashing the Idempotency-Key, and a
+ * message created under a key goes to that key's shard so the combined
+ * create script runs on one node. Every script touches a single message
+ * (and at most its idempotency record), so ADR-0001's atomicity holds per
+ * shard without cross-node coordination.
+ */
+public class RedisShardRouter {
+
+    /** Shard backed by {@code spring.redis.*}; also holds rate-limit state. */
+    public static final String PRIMARY_SHARD = "0";
+
+    static final char SHARD_SEPARATOR = '.';
+
+    private static final int VIRTUAL_NODES = 160;
+
+    private final Map<String, RedisShard> shards;
+    private final ConsistentHashRing ring;
+    private final Map<String, Counter> created = new LinkedHashMap<>();
+    private final Map<String, Counter> routed = new LinkedHashMap<>();
+
+    /**
+     * @param shards   all shards, including {@value #PRIMARY_SHARD}
+     * @param draining shard ids that still serve their existing messages but
+     *                 receive no new ones
+     */
+    public RedisShardRouter(Collection<RedisShard> shards, Set<String> draining, MeterRegistry meterRegistry) {
+        Map<String, RedisShard> byId = new LinkedHashMap<>();
+        for (RedisShard shard : shards) {
+            if (byId.put(shard.id(), shard) != null) {
+                throw new IllegalStateException("duplicate Redis shard id: " + shard.id());
+            }
+        }
+        if (!byId.containsKey(PRIMARY_SHARD)) {
+            throw new IllegalStateException("Redis shard " + PRIMARY_SHARD + " (spring.redis.*) is required");
+        }
+        List<String> active = new ArrayList<>(byId.keySet());
+        active.removeAll(draining);
+        if (active.isEmpty()) {
+            throw new IllegalStateException("at least one Redis shard must accept new messages");
+        }
+        this.shards = Collections.unmodifiableMap(byId);
+        this.ring = new ConsistentHashRing(active, VIRTUAL_NODES);
+
+        for (String id : byId.keySet()) {
+            created.put(id, Counter.builder("storage.shard.messages.created")
+                    .tag("shard", id)
+                    .register(meterRegistry));
+            routed.put(id, Counter.builder("storage.shard.operations")
+                    .description("Message and idempotency operations routed to the shard")
+                    .tag("shard", id)
+                    .register(meterRegistry));
+            double share = active.contains(id) ? ring.share(id) : 0.0;
+            Gauge.builder("storage.shard.ring.share", () -> share)
+                    .description("Fraction of new messages the shard is expected to receive")
+                    .tag("shard", id)
+                    .register(meterRegistry);
+        }
+    }
+
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    /**
+     * Generates an id for a new message on a ring-selected shard.
+     */
+    public String newMessageId() {
+        String uuid = RandomSource.randomUUID().toString();
+        return encode(ring.shardFor(uuid), uuid);
+    }
+
+    /**
+     * Generates an id for a new message on the shard that owns
+     * {@code placementKey} (the Idempotency-Key), so the message and its
+     * idempotency record share a node.
+     */
+    public String newMessageId(String placementKey) {
+        return encode(ring.shardFor(placementKey), RandomSource.randomUUID().toString());
+    }
+
+    public RedisShard forMessage(String messageId) {
+        return route(shardOf(messageId));
+    }
+
+    /**
+     * Shard for a non-message key such as an Idempotency-Key.
+     */
+    public RedisShard forKey(String key) {
+        return route(ring.shardFor(key));
+    }
+
+    public Collection<RedisShard> all() {
+        return shards.values();
+    }
+
+    /**
+     * Shard id encoded in {@code messageId}, or {@value #PRIMARY_SHARD} when
+     * it has none.
+     */
+    static String shardOf(String messageId) {
+        int separator = messageId.indexOf(SHARD_SEPARATOR);
+        return separator > 0 ? messageId.substring(0, separator) : PRIMARY_SHARD;
+    }
+
+    private String encode(String shardId, String uuid) {
+        created.get(shardId).increment();
+        return isSharded() ? shardId + SHARD_SEPARATOR + uuid : uuid;
+    }
+
+    private RedisShard route(String shardId) {
+        RedisShard shard = shards.get(shardId);
+        if (shard == null) {
+            shard = shards.get(PRIMARY_SHARD);
+        }
+        routed.get(shard.id()).increment();
+        return shard;
+    }
+}
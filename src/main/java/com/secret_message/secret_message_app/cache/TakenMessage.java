@@ -0,0 +1,17 @@
+package com.secret_message.secret_message_app.cache;
+
+/**
+ * A message claimed by {@link MessageStore#takeMessage(String)}. The
+ * stored payload bytes (binary or legacy Base64) and the attempt counter no
+ * longer exist in the store; the remaining TTL and prior attempt count are
+ * kept so a failed decrypt can put the message back exactly as it was (plus
+ * one attempt). {@code createdAtMillis} is known for the Redis hash layout
+ * and the in-memory store, and is 0 otherwise.
+ */
+public record TakenMessage(
+        byte[] payload,
+        long remainingTtlMillis,
+        int attempts,
+        long createdAtMillis
+) {
+}
@@ -0,0 +1,57 @@
+package com.secret_message.secret_message_app.cache;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Hashed timer wheel for TTL expiry. A key scheduled for a deadline goes
+ * into the slot {@code (deadline / tick) % slots}; each {@link #advance}
+ * visits the slots whose time has passed and asks the owner whether each
+ * key there is now gone. Keys that are not yet due (deadline one or more
+ * revolutions away) or were re-scheduled stay put; keys already removed by
+ * other means are dropped on their next visit. Scheduling is O(1) and a
+ * tick touches only one slot, instead of scanning every entry.
+ *
+ * <p>Thread-safe for concurrent {@link #schedule} calls; {@link #advance}
+ * must be called from a single thread.
+ */
+public final class TimerWheel<K> {
+
+    private final long tickMillis;
+    private final Set<K>[] slots;
+    private long nextTick;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickMillis, int slotCount, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new Set[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.nextTick = nowMillis / tickMillis;
+    }
+
+    public void schedule(K key, long deadlineMillis) {
+        slots[slotFor(Math.floorDiv(deadlineMillis, tickMillis))].add(key);
+    }
+
+    /**
+     * Visits every slot up to {@code nowMillis}. {@code expireIfDue} removes
+     * the key's entry if it has expired and returns true when the key no
+     * longer needs a timer (expired now, or already removed).
+     */
+    public void advance(long nowMillis, Predicate<K> expireIfDue) {
+        long currentTick = nowMillis / tickMillis;
+        // After a long stall one revolution visits every slot once.
+        long firstTick = Math.max(nextTick, currentTick - slots.length + 1);
+        for (long tick = firstTick; tick <= currentTick; tick++) {
+            slots[slotFor(tick)].removeIf(expireIfDue);
+        }
+        nextTick = currentTick + 1;
+    }
+
+    private int slotFor(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.length);
+    }
+}
@@ -0,0 +1,114 @@
+package com.secret_message.secret_message_app.config;
+
+import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AbstractCompareAndSwapBasedProxyManager;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AsyncCompareAndSwapOperation;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.CompareAndSwapOperation;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bucket4j proxy manager over a {@link ConcurrentHashMap}, used for rate
+ * limiting when {@code app.storage.backend=memory} so a single node needs
+ * no Redis at all. Bucket state is swapped with the map's atomic
+ * {@code putIfAbsent}/{@code replace}. A bucket is dropped once it would
+ * have refilled completely, so idle client IPs do not accumulate. There is
+ * no I/O to wait for, so the async operations run the same swap and return
+ * completed futures.
+ */
+class InMemoryRateLimitProxyManager extends AbstractCompareAndSwapBasedProxyManager<byte[]> {
+
+    private static final long SWEEP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private record StoredBucket(byte[] state, long expiresAtMillis) {
+    }
+
+    private final ConcurrentHashMap<String, StoredBucket> buckets = new ConcurrentHashMap<>();
+    private final ExpirationAfterWriteStrategy expiration =
+            ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(Duration.ZERO);
+    private final AtomicLong nextSweepMillis = new AtomicLong();
+
+    InMemoryRateLimitProxyManager() {
+        super(ClientSideConfig.getDefault());
+    }
+
+    @Override
+    protected CompareAndSwapOperation beginCompareAndSwapOperation(byte[] key) {
+        String id = new String(key, StandardCharsets.UTF_8);
+        sweepIfDue();
+        return new CompareAndSwapOperation() {
+            private StoredBucket read;
+
+            @Override
+            public Optional<byte[]> getStateData(Optional<Long> timeoutNanos) {
+                read = buckets.get(id);
+                if (read != null && read.expiresAtMillis() <= System.currentTimeMillis()) {
+                    buckets.remove(id, read);
+                    read = null;
+                }
+                return Optional.ofNullable(read).map(StoredBucket::state);
+            }
+
+            @Override
+            public boolean compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState,
+                                          Optional<Long> timeoutNanos) {
+                long now = System.currentTimeMillis();
+                StoredBucket updated = new StoredBucket(newData,
+                        now + expiration.calculateTimeToLiveMillis(newState, TimeUnit.MILLISECONDS.toNanos(now)));
+                return read == null
+                        ? buckets.putIfAbsent(id, updated) == null
+                        : buckets.replace(id, read, updated);
+            }
+        };
+    }
+
+    @Override
+    protected AsyncCompareAndSwapOperation beginAsyncCompareAndSwapOperation(byte[] key) {
+        CompareAndSwapOperation operation = beginCompareAndSwapOperation(key);
+        return new AsyncCompareAndSwapOperation() {
+            @Override
+            public CompletableFuture<Optional<byte[]>> getStateData(Optional<Long> timeoutNanos) {
+                return CompletableFuture.completedFuture(operation.getStateData(timeoutNanos));
+            }
+
+            @Override
+            public CompletableFuture<Boolean> compareAndSwap(byte[] originalData, byte[] newData,
+                                                             RemoteBucketState newState, Optional<Long> timeoutNanos) {
+                return CompletableFuture.completedFuture(
+                        operation.compareAndSwap(originalData, newData, newState, timeoutNanos));
+            }
+        };
+    }
+
+    @Override
+    public void removeProxy(byte[] key) {
+        buckets.remove(new String(key, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected CompletableFuture<Void> removeAsync(byte[] key) {
+        removeProxy(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public boolean isAsyncModeSupported() {
+        return true;
+    }
+
+    private void sweepIfDue() {
+        long now = System.currentTimeMillis();
+        long due = nextSweepMillis.get();
+        if (now >= due && nextSweepMillis.compareAndSet(due, now + SWEEP_INTERVAL_MILLIS)) {
+            buckets.values().removeIf(bucket -> bucket.expiresAtMillis() <= now);
+        }
+    }
+}
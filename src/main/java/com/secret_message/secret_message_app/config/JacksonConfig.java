@@ -0,0 +1,29 @@
+package com.secret_message.secret_message_app.config;
+
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Lets the JSON reader accept a message as long as
+ * {@code app.max-message-size}. Jackson refuses strings over 20 million
+ * characters by default, which would reject a valid message once the size
+ * limit is raised past that; the limit itself is still enforced, with a
+ * 413, by the controllers.
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Value("${app.max-message-size:1048576}")
+    private long maxMessageSize;
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer messageSizeStreamReadConstraints() {
+        int maxStringLength = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(StreamReadConstraints.DEFAULT_MAX_STRING_LEN, maxMessageSize));
+        return builder -> builder.postConfigurer(mapper -> mapper.getFactory().setStreamReadConstraints(
+                StreamReadConstraints.builder().maxStringLength(maxStringLength).build()));
+    }
+}
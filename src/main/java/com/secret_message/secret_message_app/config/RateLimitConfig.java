@@ -3,12 +3,15 @@ package com.secret_message.secret_message_app.config;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.BucketConfiguration;
 import io.github.bucket4j.distributed.proxy.ProxyManager;
-import io.github.bucket4j.redis.jedis.cas.JedisBasedProxyManager;
+import io.github.bucket4j.redis.lettuce.cas.LettuceBasedProxyManager;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import redis.clients.jedis.JedisPool;
-import redis.clients.jedis.JedisPoolConfig;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 
 import java.time.Duration;
 import java.util.function.Supplier;
@@ -16,21 +19,37 @@ import java.util.function.Supplier;
 @Configuration
 public class RateLimitConfig {
 
+    /**
+     * One multiplexed connection on the primary's Lettuce client, shared by
+     * every bucket. Bucket4j's compare-and-swap round trips from concurrent
+     * requests are pipelined on it instead of queueing for a pooled
+     * connection.
+     */
     @Bean(destroyMethod = "close")
-    public JedisPool rateLimitJedisPool(
-            @Value("${spring.redis.host}") String host,
-            @Value("${spring.redis.port}") int port,
-            @Value("${spring.redis.password:#{null}}") String password) {
-
-        if (password != null && !password.isEmpty()) {
-            return new JedisPool(new JedisPoolConfig(), host, port, 2000, password);
-        }
-        return new JedisPool(new JedisPoolConfig(), host, port);
+    @ConditionalOnProperty(name = "app.storage.backend", havingValue = "redis", matchIfMissing = true)
+    public StatefulRedisConnection<byte[], byte[]> rateLimitRedisConnection(
+            LettuceConnectionFactory redisConnectionFactory) {
+        return ((RedisClient) redisConnectionFactory.getNativeClient()).connect(ByteArrayCodec.INSTANCE);
     }
 
+    /**
+     * Supports both the blocking {@code builder()} and
+     * {@code asAsync().builder()}, whose buckets return
+     * {@code CompletableFuture}s.
+     */
     @Bean
-    public ProxyManager<byte[]> rateLimitProxyManager(JedisPool rateLimitJedisPool) {
-        return JedisBasedProxyManager.builderFor(rateLimitJedisPool).build();
+    @ConditionalOnProperty(name = "app.storage.backend", havingValue = "redis", matchIfMissing = true)
+    public ProxyManager<byte[]> rateLimitProxyManager(StatefulRedisConnection<byte[], byte[]> rateLimitRedisConnection) {
+        return LettuceBasedProxyManager.builderFor(rateLimitRedisConnection).build();
+    }
+
+    /**
+     * Single-node buckets for {@code app.storage.backend=memory}.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.backend", havingValue = "memory")
+    public ProxyManager<byte[]> inMemoryRateLimitProxyManager() {
+        return new InMemoryRateLimitProxyManager();
     }
 
     @Bean
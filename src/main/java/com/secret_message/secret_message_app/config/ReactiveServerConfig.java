@@ -0,0 +1,58 @@
+package com.secret_message.secret_message_app.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Reactive server mode, selected at startup with
+ * {@code spring.main.web-application-type=reactive}: the message API runs
+ * on WebFlux over Netty event loops instead of Tomcat's thread per request.
+ *
+ * <p>Tomcat stays on the classpath for the default servlet mode, and Boot
+ * would prefer it for a reactive server too; declaring the Netty factory
+ * here pins the reactive mode to Netty.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveServerConfig implements WebFluxConfigurer {
+
+    /**
+     * Worst-case JSON escaping turns each message byte into a six-character
+     * unicode escape; anything larger is rejected while decoding rather
+     * than buffered. The servlet mode has no equivalent cap.
+     */
+    @Value("${app.max-message-size:1048576}")
+    private long maxMessageSize;
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory(
+            ObjectProvider<NettyServerCustomizer> serverCustomizers) {
+        NettyReactiveWebServerFactory factory = new NettyReactiveWebServerFactory();
+        serverCustomizers.orderedStream().forEach(factory::addServerCustomizers);
+        return factory;
+    }
+
+    /**
+     * Unordered, so it runs after Boot's customizers. Netty's forwarded-header
+     * support would trust {@code X-Forwarded-For} from any peer;
+     * ReactiveClientIpFilter applies
+     * {@code server.tomcat.remoteip.internal-proxies} instead.
+     */
+    @Bean
+    public WebServerFactoryCustomizer<NettyReactiveWebServerFactory> untrustedForwardHeadersCustomizer() {
+        return factory -> factory.setUseForwardHeaders(false);
+    }
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configurer.defaultCodecs().maxInMemorySize((int) Math.min(Integer.MAX_VALUE, maxMessageSize * 6 + 1024));
+    }
+}
@@ -1,19 +1,51 @@
 package com.secret_message.secret_message_app.config;
 
+import com.secret_message.secret_message_app.cache.RedisShard;
+import com.secret_message.secret_message_app.cache.RedisShardRouter;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
-import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
-import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Configuration for Redis connection.
- * Supports both authenticated and unauthenticated connections.
+ * Supports both authenticated and unauthenticated connections, and
+ * optionally several independent primaries ({@code app.redis.shards}).
+ *
+ * <p>All Redis access goes through Lettuce. Each primary gets one client
+ * whose connections are multiplexed: commands from any number of request
+ * threads are written back to back on the same socket without waiting for
+ * earlier replies (automatic pipelining), so no caller ever holds a pooled
+ * connection while it waits. The templates share the factory's native
+ * connection; {@link RedisShard#commands()} is a second connection on the
+ * same client for the non-blocking data path, and the rate limiter has a
+ * third on the primary (see {@link RateLimitConfig}).
  */
 @Configuration
-public class RedisConfig {
+public class RedisConfig implements DisposableBean {
+
+    private static final Pattern SHARD_ENTRY = Pattern.compile("([A-Za-z0-9]{1,16})=([^:\\s]+):(\\d+)");
 
     @Value("${spring.redis.host}")
     private String redisHost;
@@ -24,28 +56,129 @@ public class RedisConfig {
     @Value("${spring.redis.password:#{null}}")
     private String redisPassword;
 
+    /**
+     * Additional Redis primaries as {@code id=host:port} pairs, comma
+     * separated (e.g. {@code 1=redis-1:6379,2=redis-2:6379}). Empty means a
+     * single shard: the {@code spring.redis.*} primary, which is always
+     * shard {@code 0}. Ids are encoded in message ids, so never reuse or
+     * renumber one while its messages can still exist.
+     */
+    @Value("${app.redis.shards:}")
+    private String additionalShards;
+
+    /** Shard ids that keep serving existing messages but take no new ones. */
+    @Value("${app.redis.draining-shards:}")
+    private Set<String> drainingShards;
+
+    /**
+     * How long a command may wait for its reply before it fails. With
+     * multiplexed connections this bounds the caller's wait, not a pool
+     * checkout.
+     */
+    @Value("${app.redis.command-timeout:2s}")
+    private Duration commandTimeout;
+
+    private final List<LettuceConnectionFactory> shardConnectionFactories = new ArrayList<>();
+
+    private final List<StatefulRedisConnection<?, ?>> nativeConnections = new ArrayList<>();
+
     /**
      * Creates a Redis connection factory with optional password authentication.
      * 
-     * @return JedisConnectionFactory configured for Redis connection
+     * @return LettuceConnectionFactory configured for Redis connection
      */
     @Bean
-    public JedisConnectionFactory redisConnectionFactory() {
-        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(redisHost, redisPort);
+    public LettuceConnectionFactory redisConnectionFactory() {
+        return connectionFactory(redisHost, redisPort);
+    }
+
+    @Bean
+    public RedisTemplate<String, Object> redisTemplate() {
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(redisConnectionFactory());
+        return template;
+    }
+
+    /**
+     * String keys, raw {@code byte[]} values. Used for encrypted message
+     * payloads so ciphertext is stored without a Base64 text layer.
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> binaryRedisTemplate() {
+        return binaryTemplate(redisConnectionFactory());
+    }
+
+    /**
+     * Router over the primary plus every shard in {@code app.redis.shards}.
+     * Shards share the primary's password. The rate limiter is not sharded
+     * and stays on the primary. Only built for the Redis backend, since it
+     * connects eagerly.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.backend", havingValue = "redis", matchIfMissing = true)
+    public RedisShardRouter redisShardRouter(StringRedisTemplate stringRedisTemplate,
+                                             RedisTemplate<String, byte[]> binaryRedisTemplate,
+                                             MeterRegistry meterRegistry) {
+        List<RedisShard> shards = new ArrayList<>();
+        shards.add(new RedisShard(RedisShardRouter.PRIMARY_SHARD, stringRedisTemplate, binaryRedisTemplate,
+                connect(redisConnectionFactory(), RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE)).async()));
+        for (String entry : additionalShards.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            Matcher matcher = SHARD_ENTRY.matcher(entry.trim());
+            if (!matcher.matches()) {
+                throw new IllegalStateException("app.redis.shards entries must look like id=host:port, got: " + entry);
+            }
+            LettuceConnectionFactory factory = connectionFactory(matcher.group(2), Integer.parseInt(matcher.group(3)));
+            factory.afterPropertiesSet();
+            factory.start();
+            shardConnectionFactories.add(factory);
+            shards.add(new RedisShard(matcher.group(1), new StringRedisTemplate(factory), binaryTemplate(factory),
+                    connect(factory, RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE)).async()));
+        }
+        return new RedisShardRouter(shards, drainingShards, meterRegistry);
+    }
+
+    /**
+     * Opens another multiplexed connection on the factory's Lettuce client
+     * (same event loops, same timeout and password) and closes it on
+     * shutdown.
+     */
+    private <K, V> StatefulRedisConnection<K, V> connect(LettuceConnectionFactory factory, RedisCodec<K, V> codec) {
+        StatefulRedisConnection<K, V> connection = ((RedisClient) factory.getNativeClient()).connect(codec);
+        nativeConnections.add(connection);
+        return connection;
+    }
+
+    @Override
+    public void destroy() {
+        nativeConnections.forEach(StatefulRedisConnection::close);
+        shardConnectionFactories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    private LettuceConnectionFactory connectionFactory(String host, int port) {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(host, port);
         
         // Set password if provided
         if (redisPassword != null && !redisPassword.isEmpty()) {
             config.setPassword(redisPassword);
         }
         
-        JedisClientConfiguration jedisClientConfiguration = JedisClientConfiguration.builder().usePooling().build();
-        return new JedisConnectionFactory(config, jedisClientConfiguration);
+        LettuceClientConfiguration clientConfiguration = LettuceClientConfiguration.builder()
+                .commandTimeout(commandTimeout)
+                .build();
+        return new LettuceConnectionFactory(config, clientConfiguration);
     }
 
-    @Bean
-    public RedisTemplate<String, Object> redisTemplate() {
-        RedisTemplate<String, Object> template = new RedisTemplate<>();
-        template.setConnectionFactory(redisConnectionFactory());
+    private static RedisTemplate<String, byte[]> binaryTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.setHashKeySerializer(RedisSerializer.string());
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
         return template;
     }
 }
@@ -0,0 +1,102 @@
+package com.secret_message.secret_message_app.controller;
+
+import com.secret_message.secret_message_app.dto.CreateMessageResponse;
+import com.secret_message.secret_message_app.dto.RevealRequest;
+import com.secret_message.secret_message_app.exception.MessageNotAvailableException;
+import com.secret_message.secret_message_app.exception.PayloadTooLargeException;
+import com.secret_message.secret_message_app.model.SecretMessageIdentifier;
+import com.secret_message.secret_message_app.service.SecretMessageService;
+import com.secret_message.secret_message_app.service.StreamingReveal;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * One-shot secret files: the upload is the raw request body, encrypted as
+ * it is read, and the reveal writes the decrypted bytes straight to the
+ * response, so neither side ever holds the whole file. Same id and key
+ * handling, rate limit and uniform 404 as {@link MessageController}; a
+ * file is only revealed here and a text message only there.
+ *
+ * <p>Servlet (Tomcat) mode only, like {@code app.reveal.stream-response}.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/v1/files")
+@RequiredArgsConstructor
+public class FileController {
+
+    private final SecretMessageService secretMessageService;
+
+    @Value("${app.files.max-size:10485760}")
+    private long maxFileSize;
+
+    /**
+     * Stores the request body ({@code application/octet-stream}) as a
+     * one-shot file. A declared Content-Length over {@code app.files.max-size}
+     * is refused before anything is read; a chunked body is refused with the
+     * same 413 once it crosses the limit.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<CreateMessageResponse> upload(HttpServletRequest request) throws IOException {
+        if (request.getContentLengthLong() > maxFileSize) {
+            throw new PayloadTooLargeException(maxFileSize);
+        }
+        SecretMessageIdentifier identifier;
+        try (InputStream content = request.getInputStream()) {
+            identifier = secretMessageService.createSecretFile(content, maxFileSize);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header("Cache-Control", "no-store")
+                .body(new CreateMessageResponse(identifier.getMessageId(), identifier.getAeskey()));
+    }
+
+    /**
+     * Reveals a file exactly once, as {@code application/octet-stream}. The
+     * key is checked before the 200 is committed; every failure is the same
+     * 404 as a message reveal. The body is written here and this returns
+     * null.
+     */
+    @PostMapping("/reveal")
+    public ResponseEntity<Void> reveal(@Valid @RequestBody RevealRequest body,
+                                       HttpServletResponse response) throws IOException {
+        // Files have no passphrase form: the key is always required.
+        MessageRequests.checkRevealKey(body.aesKey(), null);
+        byte[] keyBytes = MessageRequests.decodeKeyOrNull(body.aesKey());
+        StreamingReveal streamingReveal;
+        try {
+            streamingReveal = secretMessageService.openFileReveal(body.messageId(), keyBytes);
+        } catch (MessageNotAvailableException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MessageNotAvailableException(MessageNotAvailableException.Reason.WRONG_KEY);
+        } finally {
+            if (keyBytes != null) {
+                Arrays.fill(keyBytes, (byte) 0);
+            }
+        }
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader("Cache-Control", "no-store");
+        response.setHeader("Content-Disposition", "attachment");
+        OutputStream out = response.getOutputStream();
+        streamingReveal.writeTo(out);
+        out.flush();
+        return null;
+    }
+}
@@ -0,0 +1,88 @@
+package com.secret_message.secret_message_app.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes UTF-8 bytes as the inside of a JSON string, escaped exactly as
+ * Jackson escapes a {@link String} field: quote, backslash and control
+ * characters only, everything else (including multi-byte UTF-8) as is.
+ * Output goes through one bounded buffer that is zeroed each time it is
+ * flushed, since what passes through here is plaintext. Closing does not
+ * close the underlying stream.
+ */
+final class JsonStringOutputStream extends OutputStream {
+
+    private static final int BUFFER_BYTES = 8 * 1024;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    private final OutputStream out;
+    /** Room for one more six-byte escape after the buffer is nearly full. */
+    private final byte[] buffer = new byte[BUFFER_BYTES + 6];
+    private int count;
+
+    JsonStringOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count >= BUFFER_BYTES) {
+            drain();
+        }
+        switch (b & 0xFF) {
+            case '"' -> escape('"');
+            case '\\' -> escape('\\');
+            case '\b' -> escape('b');
+            case '\f' -> escape('f');
+            case '\n' -> escape('n');
+            case '\r' -> escape('r');
+            case '\t' -> escape('t');
+            default -> {
+                if ((b & 0xFF) < 0x20) {
+                    buffer[count++] = '\\';
+                    buffer[count++] = 'u';
+                    buffer[count++] = '0';
+                    buffer[count++] = '0';
+                    buffer[count++] = HEX[(b >> 4) & 0x0F];
+                    buffer[count++] = HEX[b & 0x0F];
+                } else {
+                    buffer[count++] = (byte) b;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            write(bytes[i]);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+    }
+
+    private void escape(char c) {
+        buffer[count++] = '\\';
+        buffer[count++] = (byte) c;
+    }
+
+    private void drain() throws IOException {
+        try {
+            out.write(buffer, 0, count);
+        } finally {
+            Arrays.fill(buffer, 0, count, (byte) 0);
+            count = 0;
+        }
+    }
+}
@@ -2,20 +2,27 @@ package com.secret_message.secret_message_app.controller;
 
 import com.secret_message.secret_message_app.dto.CreateMessageRequest;
 import com.secret_message.secret_message_app.dto.CreateMessageResponse;
+import com.secret_message.secret_message_app.dto.CreateMessagesRequest;
+import com.secret_message.secret_message_app.dto.CreateMessagesResponse;
 import com.secret_message.secret_message_app.dto.RevealRequest;
 import com.secret_message.secret_message_app.dto.RevealResponse;
-import com.secret_message.secret_message_app.exception.InvalidRequestException;
 import com.secret_message.secret_message_app.exception.MessageNotAvailableException;
-import com.secret_message.secret_message_app.exception.PayloadTooLargeException;
+import com.secret_message.secret_message_app.filter.RateLimiter;
 import com.secret_message.secret_message_app.idempotency.IdempotencyRecord;
 import com.secret_message.secret_message_app.idempotency.IdempotencyService;
+import com.secret_message.secret_message_app.idempotency.IdempotentCreateResult;
 import com.secret_message.secret_message_app.model.SecretMessageIdentifier;
+import com.secret_message.secret_message_app.service.PassphraseKeyDerivation;
 import com.secret_message.secret_message_app.service.SecretMessageService;
+import com.secret_message.secret_message_app.service.StreamingReveal;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -23,11 +30,12 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 
 /**
  * Public HTTP API for the secret-message service.
@@ -36,18 +44,38 @@ import java.util.UUID;
  * - Message ID never appears in the URI — only in JSON bodies.
  * - Reveal is POST (not GET) because it is destructive.
  * - All reveal-failure cases return a uniform 404; see GlobalExceptionHandler.
+ *
+ * <p>Servlet (Tomcat) mode only; {@link ReactiveMessageController} serves
+ * the same API when {@code spring.main.web-application-type=reactive}.
  */
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/v1/messages")
 @RequiredArgsConstructor
 public class MessageController {
 
+    private static final byte[] REVEAL_PREFIX = "{\"message\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] REVEAL_SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+
     private final SecretMessageService secretMessageService;
     private final IdempotencyService idempotencyService;
+    private final RateLimiter rateLimiter;
+    private final PassphraseKeyDerivation passphraseKeyDerivation;
 
     @Value("${app.max-message-size:1048576}")
     private long maxMessageSize;
 
+    @Value("${app.batch.max-messages:100}")
+    private int maxBatchMessages;
+
+    /**
+     * Decrypt the revealed message straight into the response body instead
+     * of building it as a {@code String} and serializing that; see
+     * {@link SecretMessageService#openReveal}.
+     */
+    @Value("${app.reveal.stream-response:false}")
+    private boolean streamResponse;
+
     /**
      * Creates a new one-shot secret message.
      *
@@ -55,6 +83,9 @@ public class MessageController {
      * request with the same body, returns the original response (HTTP 200 with
      * {@code duplicate:true}) without creating a second message. If the key is
      * reused with a different body, returns HTTP 409.
+     *
+     * <p>With a {@code passphrase} the key is derived from it and left out
+     * of the response; Idempotency-Key is then refused with 400.
      */
     @PostMapping
     public ResponseEntity<CreateMessageResponse> create(
@@ -62,47 +93,75 @@ public class MessageController {
             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             HttpServletRequest request) {
 
-        long contentLength = request.getContentLengthLong();
-        if (contentLength > maxMessageSize
-                || body.message().getBytes(StandardCharsets.UTF_8).length > maxMessageSize) {
-            throw new PayloadTooLargeException(maxMessageSize);
-        }
+        MessageRequests.checkSize(request.getContentLengthLong(), body.message(), maxMessageSize);
+
+        String normalizedIdempotencyKey = MessageRequests.normalizeIdempotencyKey(idempotencyKey);
+        MessageRequests.checkPassphraseCreate(body.passphrase(), normalizedIdempotencyKey);
 
-        String normalizedIdempotencyKey = normalizeIdempotencyKey(idempotencyKey);
+        if (body.passphrase() != null) {
+            String messageId = secretMessageService.createPassphraseMessage(body.message(), body.passphrase());
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header("Cache-Control", "no-store")
+                    .body(new CreateMessageResponse(messageId, null));
+        }
 
+        SecretMessageIdentifier identifier;
         if (normalizedIdempotencyKey != null) {
             String bodyHash = idempotencyService.hashBody(body.message());
             Optional<IdempotencyRecord> existing = idempotencyService.findExisting(normalizedIdempotencyKey, bodyHash);
             if (existing.isPresent()) {
-                // recoverAesKey returns a fresh buffer; the response serializer wipes it.
-                byte[] recoveredKey = idempotencyService.recoverAesKey(existing.get());
-                return ResponseEntity.ok()
-                        .header("Cache-Control", "no-store")
-                        .body(new CreateMessageResponse(existing.get().messageId(), recoveredKey, true));
+                return duplicate(existing.get());
+            }
+            // Lost races are settled inside Redis: no second message is written.
+            IdempotentCreateResult result = secretMessageService.createSecretMessage(
+                    body.message(), normalizedIdempotencyKey, bodyHash);
+            if (result.isReplay()) {
+                return duplicate(result.existing());
             }
+            identifier = result.created();
+        } else {
+            identifier = secretMessageService.createSecretMessage(body.message());
         }
 
-        SecretMessageIdentifier identifier = secretMessageService.createSecretMessage(body.message());
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header("Cache-Control", "no-store")
+                .body(new CreateMessageResponse(identifier.getMessageId(), identifier.getAeskey()));
+    }
 
-        if (normalizedIdempotencyKey != null) {
-            String bodyHash = idempotencyService.hashBody(body.message());
-            boolean stored = idempotencyService.store(
-                    normalizedIdempotencyKey, bodyHash, identifier.getMessageId(), identifier.getAeskey());
-            if (!stored) {
-                secretMessageService.discardSecretMessage(identifier.getMessageId());
-                identifier.wipe();
-                IdempotencyRecord existing = idempotencyService.findExisting(
-                        normalizedIdempotencyKey, bodyHash).orElseThrow();
-                byte[] recoveredKey = idempotencyService.recoverAesKey(existing);
-                return ResponseEntity.ok()
-                        .header("Cache-Control", "no-store")
-                        .body(new CreateMessageResponse(existing.messageId(), recoveredKey, true));
-            }
+    /**
+     * Creates up to {@code app.batch.max-messages} messages in one request,
+     * encrypted in parallel and written together; the response lists their
+     * ids and keys in request order. The rate-limit filter took one token
+     * for the request and each further message takes one more; a batch the
+     * bucket cannot cover is refused whole with 429. Idempotency-Key is not
+     * supported here: a retried batch creates new messages.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<CreateMessagesResponse> createBatch(@Valid @RequestBody CreateMessagesRequest body,
+                                                              HttpServletRequest request,
+                                                              HttpServletResponse response) {
+        MessageRequests.checkBatch(request.getContentLengthLong(), body.messages(), maxBatchMessages, maxMessageSize);
+
+        byte[] bucketKey = (byte[]) request.getAttribute(RateLimiter.BUCKET_KEY_ATTRIBUTE);
+        if (bucketKey != null && body.messages().size() > 1) {
+            long remaining = rateLimiter.consumeMore(bucketKey, body.messages().size() - 1);
+            response.setHeader("X-RateLimit-Remaining", String.valueOf(remaining));
         }
 
+        List<SecretMessageIdentifier> identifiers = secretMessageService.createSecretMessages(body.messages());
         return ResponseEntity.status(HttpStatus.CREATED)
                 .header("Cache-Control", "no-store")
-                .body(new CreateMessageResponse(identifier.getMessageId(), identifier.getAeskey()));
+                .body(new CreateMessagesResponse(identifiers.stream()
+                        .map(identifier -> new CreateMessageResponse(identifier.getMessageId(), identifier.getAeskey()))
+                        .toList()));
+    }
+
+    private ResponseEntity<CreateMessageResponse> duplicate(IdempotencyRecord existing) {
+        // recoverAesKey returns a fresh buffer; the response serializer wipes it.
+        byte[] recoveredKey = idempotencyService.recoverAesKey(existing);
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-store")
+                .body(new CreateMessageResponse(existing.messageId(), recoveredKey, true));
     }
 
     /**
@@ -112,20 +171,32 @@ public class MessageController {
      * Concurrent reveal losers and all other failure conditions (not found,
      * wrong key, attempts exhausted) return the same HTTP 404 with the same
      * body — see GlobalExceptionHandler.
+     *
+     * <p>With {@code app.reveal.stream-response} the body is written here,
+     * decrypted as it goes out, and this returns null.
+     *
+     * <p>A {@code passphrase} is turned into the key on the derivation pool
+     * first; a full queue answers 503, not the 404 of a failed reveal.
      */
     @PostMapping("/reveal")
-    public ResponseEntity<RevealResponse> reveal(@Valid @RequestBody RevealRequest body) {
+    public ResponseEntity<RevealResponse> reveal(@Valid @RequestBody RevealRequest body,
+                                                 HttpServletResponse response) throws IOException {
+        MessageRequests.checkRevealKey(body.aesKey(), body.passphrase());
         // The client-supplied key unavoidably arrives as a String in the request
         // body; decode it once here and pass only bytes to the service layer.
-        // Undecodable Base64 becomes null, which the service counts as a failed
-        // attempt like any other wrong key.
-        byte[] keyBytes = decodeKeyOrNull(body.aesKey());
+        byte[] keyBytes = body.passphrase() != null
+                ? passphraseKeyDerivation.derive(body.passphrase(), body.messageId())
+                : MessageRequests.decodeKeyOrNull(body.aesKey());
+        StreamingReveal streamingReveal;
         try {
-            String plaintext = secretMessageService.getEncryptedMessageById(
-                    body.messageId(), keyBytes);
-            return ResponseEntity.ok()
-                    .header("Cache-Control", "no-store")
-                    .body(new RevealResponse(plaintext));
+            if (!streamResponse) {
+                String plaintext = secretMessageService.getEncryptedMessageById(
+                        body.messageId(), keyBytes);
+                return ResponseEntity.ok()
+                        .header("Cache-Control", "no-store")
+                        .body(new RevealResponse(plaintext));
+            }
+            streamingReveal = secretMessageService.openReveal(body.messageId(), keyBytes);
         } catch (MessageNotAvailableException e) {
             throw e;
         } catch (Exception e) {
@@ -136,29 +207,27 @@ public class MessageController {
                 Arrays.fill(keyBytes, (byte) 0);
             }
         }
+        writeRevealResponse(streamingReveal, response);
+        return null;
     }
 
-    private static byte[] decodeKeyOrNull(String aesKeyBase64) {
-        try {
-            return Base64.getDecoder().decode(aesKeyBase64);
-        } catch (IllegalArgumentException e) {
-            return null;
-        }
-    }
-
-    private String normalizeIdempotencyKey(String idempotencyKey) {
-        if (idempotencyKey == null || idempotencyKey.isBlank()) {
-            return null;
-        }
-        String normalized = idempotencyKey.trim();
-        try {
-            UUID uuid = UUID.fromString(normalized);
-            if (uuid.version() != 4) {
-                throw new InvalidRequestException("idempotency key must be a UUIDv4");
-            }
-        } catch (IllegalArgumentException e) {
-            throw new InvalidRequestException("idempotency key must be a UUIDv4");
+    /**
+     * Writes the same body a {@link RevealResponse} serializes to, with the
+     * message decrypted and JSON-escaped on the way out. The message is
+     * already consumed, so a failure from here on can only abort the
+     * response; it cannot turn into a 404.
+     */
+    private static void writeRevealResponse(StreamingReveal streamingReveal, HttpServletResponse response)
+            throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader("Cache-Control", "no-store");
+        OutputStream body = response.getOutputStream();
+        body.write(REVEAL_PREFIX);
+        try (JsonStringOutputStream message = new JsonStringOutputStream(body)) {
+            streamingReveal.writeTo(message);
         }
-        return normalized;
+        body.write(REVEAL_SUFFIX);
+        body.flush();
     }
 }
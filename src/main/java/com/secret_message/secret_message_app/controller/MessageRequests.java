@@ -0,0 +1,116 @@
+package com.secret_message.secret_message_app.controller;
+
+import com.secret_message.secret_message_app.dto.GeneratePasswordsRequest;
+import com.secret_message.secret_message_app.exception.InvalidRequestException;
+import com.secret_message.secret_message_app.exception.PayloadTooLargeException;
+import com.secret_message.secret_message_app.utils.CryptoUtil;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Request checks shared by the servlet and reactive message controllers,
+ * so both server modes accept and reject exactly the same input.
+ */
+final class MessageRequests {
+
+    private MessageRequests() {
+    }
+
+    /**
+     * Rejects a body whose declared length or UTF-8 message size exceeds
+     * {@code maxMessageSize}. {@code contentLength} is -1 when unknown. The
+     * UTF-8 size is counted, not encoded, so a large message is not copied
+     * just to be measured.
+     */
+    static void checkSize(long contentLength, String message, long maxMessageSize) {
+        if (contentLength > maxMessageSize
+                || CryptoUtil.utf8Length(message) > maxMessageSize) {
+            throw new PayloadTooLargeException(maxMessageSize);
+        }
+    }
+
+    /**
+     * Rejects a batch of more than {@code maxMessages} messages, or one whose
+     * body or combined UTF-8 message size exceeds {@code maxMessageSize}: a
+     * batch never buffers more than a single create may.
+     */
+    static void checkBatch(long contentLength, List<String> messages, int maxMessages, long maxMessageSize) {
+        if (messages.size() > maxMessages) {
+            throw new InvalidRequestException("a batch holds at most " + maxMessages + " messages");
+        }
+        long totalLength = 0;
+        for (String message : messages) {
+            totalLength += CryptoUtil.utf8Length(message);
+        }
+        if (contentLength > maxMessageSize || totalLength > maxMessageSize) {
+            throw new PayloadTooLargeException(maxMessageSize);
+        }
+    }
+
+    /**
+     * Rejects a password request with no character class, more than
+     * {@code maxCount} passwords, or, when they are to be stored, more than
+     * a batch create may hold.
+     */
+    static void checkPasswords(GeneratePasswordsRequest request, int maxCount, int maxBatchMessages) {
+        if (request.characterClasses().isEmpty()) {
+            throw new InvalidRequestException("at least one character class is required");
+        }
+        int limit = request.store() ? Math.min(maxCount, maxBatchMessages) : maxCount;
+        if (request.count() > limit) {
+            throw new InvalidRequestException("a request generates at most " + limit + " passwords");
+        }
+    }
+
+    /**
+     * A reveal sends either the message key or the passphrase it was
+     * created with, never both.
+     */
+    static void checkRevealKey(String aesKey, String passphrase) {
+        boolean hasKey = aesKey != null && !aesKey.isBlank();
+        if (hasKey == (passphrase != null)) {
+            throw new InvalidRequestException("exactly one of aesKey and passphrase is required");
+        }
+    }
+
+    /**
+     * A passphrase message hands out no key, so an idempotent replay would
+     * have nothing to return; reject the combination instead of silently
+     * ignoring the header.
+     */
+    static void checkPassphraseCreate(String passphrase, String idempotencyKey) {
+        if (passphrase != null && idempotencyKey != null) {
+            throw new InvalidRequestException("Idempotency-Key is not supported with a passphrase");
+        }
+    }
+
+    /**
+     * Undecodable Base64 becomes null, which the service counts as a failed
+     * attempt like any other wrong key.
+     */
+    static byte[] decodeKeyOrNull(String aesKeyBase64) {
+        try {
+            return Base64.getDecoder().decode(aesKeyBase64);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static String normalizeIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return null;
+        }
+        String normalized = idempotencyKey.trim();
+        try {
+            UUID uuid = UUID.fromString(normalized);
+            if (uuid.version() != 4) {
+                throw new InvalidRequestException("idempotency key must be a UUIDv4");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("idempotency key must be a UUIDv4");
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,64 @@
+package com.secret_message.secret_message_app.controller;
+
+import com.secret_message.secret_message_app.dto.GeneratePasswordsRequest;
+import com.secret_message.secret_message_app.dto.GeneratePasswordsResponse;
+import com.secret_message.secret_message_app.filter.RateLimiter;
+import com.secret_message.secret_message_app.service.PasswordService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Generates batches of random passwords for provisioning, each written to
+ * the response from a {@code char[]} that is wiped as it goes out. With
+ * {@code store} every password is also created as a secret message and
+ * comes back with its id and key, ready to hand over.
+ *
+ * <p>Servlet (Tomcat) mode only; {@link ReactivePasswordController} serves
+ * the same API in reactive mode.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/v1/passwords")
+@RequiredArgsConstructor
+public class PasswordController {
+
+    private final PasswordService passwordService;
+    private final RateLimiter rateLimiter;
+
+    @Value("${app.passwords.max-count:1000}")
+    private int maxCount;
+
+    @Value("${app.batch.max-messages:100}")
+    private int maxBatchMessages;
+
+    /**
+     * Generating costs one rate-limit token per request however many
+     * passwords it asks for; storing them costs what a batch create of the
+     * same size would.
+     */
+    @PostMapping
+    public ResponseEntity<GeneratePasswordsResponse> generate(@Valid @RequestBody GeneratePasswordsRequest body,
+                                                              HttpServletRequest request,
+                                                              HttpServletResponse response) {
+        MessageRequests.checkPasswords(body, maxCount, maxBatchMessages);
+
+        byte[] bucketKey = (byte[]) request.getAttribute(RateLimiter.BUCKET_KEY_ATTRIBUTE);
+        if (bucketKey != null && body.store() && body.count() > 1) {
+            long remaining = rateLimiter.consumeMore(bucketKey, body.count() - 1);
+            response.setHeader("X-RateLimit-Remaining", String.valueOf(remaining));
+        }
+
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-store")
+                .body(new GeneratePasswordsResponse(passwordService.generatePasswords(body)));
+    }
+}
@@ -0,0 +1,177 @@
+package com.secret_message.secret_message_app.controller;
+
+import com.secret_message.secret_message_app.dto.CreateMessageRequest;
+import com.secret_message.secret_message_app.dto.CreateMessageResponse;
+import com.secret_message.secret_message_app.dto.CreateMessagesRequest;
+import com.secret_message.secret_message_app.dto.CreateMessagesResponse;
+import com.secret_message.secret_message_app.dto.RevealRequest;
+import com.secret_message.secret_message_app.dto.RevealResponse;
+import com.secret_message.secret_message_app.exception.MessageNotAvailableException;
+import com.secret_message.secret_message_app.filter.RateLimiter;
+import com.secret_message.secret_message_app.idempotency.IdempotencyRecord;
+import com.secret_message.secret_message_app.idempotency.IdempotencyService;
+import com.secret_message.secret_message_app.model.SecretMessageIdentifier;
+import com.secret_message.secret_message_app.service.PassphraseKeyDerivation;
+import com.secret_message.secret_message_app.service.SecretMessageService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@link MessageController} API for the reactive server mode
+ * ({@code spring.main.web-application-type=reactive}, Netty). Same paths,
+ * bodies, status codes and headers; every store call is a non-blocking
+ * future, so an event-loop thread is never parked on Redis.
+ *
+ * <p>Errors reach GlobalExceptionHandler exactly as in servlet mode, which
+ * keeps the uniform reveal 404.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/v1/messages")
+@RequiredArgsConstructor
+public class ReactiveMessageController {
+
+    private final SecretMessageService secretMessageService;
+    private final IdempotencyService idempotencyService;
+    private final RateLimiter rateLimiter;
+    private final PassphraseKeyDerivation passphraseKeyDerivation;
+
+    @Value("${app.max-message-size:1048576}")
+    private long maxMessageSize;
+
+    @Value("${app.batch.max-messages:100}")
+    private int maxBatchMessages;
+
+    /**
+     * Creates a new one-shot secret message; idempotency behaves as in
+     * {@link MessageController#create}.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<CreateMessageResponse>> create(
+            @Valid @RequestBody CreateMessageRequest body,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            ServerHttpRequest request) {
+
+        MessageRequests.checkSize(request.getHeaders().getContentLength(), body.message(), maxMessageSize);
+
+        String normalizedIdempotencyKey = MessageRequests.normalizeIdempotencyKey(idempotencyKey);
+        MessageRequests.checkPassphraseCreate(body.passphrase(), normalizedIdempotencyKey);
+        if (body.passphrase() != null) {
+            return Mono.fromFuture(() -> secretMessageService.createPassphraseMessageAsync(
+                            body.message(), body.passphrase()))
+                    .map(messageId -> ResponseEntity.status(HttpStatus.CREATED)
+                            .header("Cache-Control", "no-store")
+                            .body(new CreateMessageResponse(messageId, null)));
+        }
+        if (normalizedIdempotencyKey == null) {
+            return Mono.fromFuture(() -> secretMessageService.createSecretMessageAsync(body.message()))
+                    .map(this::created);
+        }
+
+        String bodyHash = idempotencyService.hashBody(body.message());
+        return Mono.fromFuture(() -> idempotencyService.findExistingAsync(normalizedIdempotencyKey, bodyHash))
+                .flatMap(existing -> existing.isPresent()
+                        ? Mono.just(duplicate(existing.get()))
+                        : Mono.fromFuture(() -> secretMessageService.createSecretMessageAsync(
+                                        body.message(), normalizedIdempotencyKey, bodyHash))
+                                .map(result -> result.isReplay()
+                                        ? duplicate(result.existing())
+                                        : created(result.created())));
+    }
+
+    /**
+     * Creates several messages in one request; limits, rate-limit charging
+     * and response as in {@link MessageController#createBatch}.
+     */
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<CreateMessagesResponse>> createBatch(@Valid @RequestBody CreateMessagesRequest body,
+                                                                    ServerWebExchange exchange) {
+        MessageRequests.checkBatch(exchange.getRequest().getHeaders().getContentLength(), body.messages(),
+                maxBatchMessages, maxMessageSize);
+
+        byte[] bucketKey = exchange.getAttribute(RateLimiter.BUCKET_KEY_ATTRIBUTE);
+        Mono<Void> charged = bucketKey == null || body.messages().size() <= 1
+                ? Mono.empty()
+                : Mono.fromFuture(() -> rateLimiter.consumeMoreAsync(bucketKey, body.messages().size() - 1))
+                        .doOnNext(remaining -> exchange.getResponse().getHeaders()
+                                .set("X-RateLimit-Remaining", String.valueOf(remaining)))
+                        .then();
+        return charged
+                .then(Mono.fromFuture(() -> secretMessageService.createSecretMessagesAsync(body.messages())))
+                .map(this::createdBatch);
+    }
+
+    private ResponseEntity<CreateMessagesResponse> createdBatch(List<SecretMessageIdentifier> identifiers) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header("Cache-Control", "no-store")
+                .body(new CreateMessagesResponse(identifiers.stream()
+                        .map(identifier -> new CreateMessageResponse(identifier.getMessageId(), identifier.getAeskey()))
+                        .toList()));
+    }
+
+    private ResponseEntity<CreateMessageResponse> created(SecretMessageIdentifier identifier) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header("Cache-Control", "no-store")
+                .body(new CreateMessageResponse(identifier.getMessageId(), identifier.getAeskey()));
+    }
+
+    private ResponseEntity<CreateMessageResponse> duplicate(IdempotencyRecord existing) {
+        // recoverAesKey returns a fresh buffer; the response serializer wipes it.
+        byte[] recoveredKey = idempotencyService.recoverAesKey(existing);
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-store")
+                .body(new CreateMessageResponse(existing.messageId(), recoveredKey, true));
+    }
+
+    /**
+     * Reveals a secret message exactly once; every failure is the same 404
+     * as in {@link MessageController#reveal}. The decoded key is wiped once
+     * the reveal has finished with it. A client that disconnects does not
+     * cancel the reveal: wiping the key under a running decrypt would count
+     * a wrong-key attempt against the message.
+     *
+     * <p>A {@code passphrase} is turned into the key on the derivation pool,
+     * and the reveal starts when it completes; a full queue answers 503.
+     */
+    @PostMapping("/reveal")
+    public Mono<ResponseEntity<RevealResponse>> reveal(@Valid @RequestBody RevealRequest body) {
+        MessageRequests.checkRevealKey(body.aesKey(), body.passphrase());
+        if (body.passphrase() != null) {
+            return Mono.fromFuture(() -> passphraseKeyDerivation.deriveAsync(body.passphrase(), body.messageId()),
+                            true)
+                    .flatMap(keyBytes -> reveal(body.messageId(), keyBytes));
+        }
+        return reveal(body.messageId(), MessageRequests.decodeKeyOrNull(body.aesKey()));
+    }
+
+    private Mono<ResponseEntity<RevealResponse>> reveal(String messageId, byte[] keyBytes) {
+        return Mono.fromFuture(() -> secretMessageService.getEncryptedMessageByIdAsync(messageId, keyBytes)
+                                .whenComplete((plaintext, failure) -> {
+                                    if (keyBytes != null) {
+                                        Arrays.fill(keyBytes, (byte) 0);
+                                    }
+                                }),
+                        true)
+                .map(plaintext -> ResponseEntity.ok()
+                        .header("Cache-Control", "no-store")
+                        .body(new RevealResponse(plaintext)))
+                // Crypto exceptions (wrong key) -> same uniform 404
+                .onErrorMap(e -> !(e instanceof MessageNotAvailableException),
+                        e -> new MessageNotAvailableException(MessageNotAvailableException.Reason.WRONG_KEY));
+    }
+}
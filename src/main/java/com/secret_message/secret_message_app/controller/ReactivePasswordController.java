@@ -0,0 +1,59 @@
+package com.secret_message.secret_message_app.controller;
+
+import com.secret_message.secret_message_app.dto.GeneratePasswordsRequest;
+import com.secret_message.secret_message_app.dto.GeneratePasswordsResponse;
+import com.secret_message.secret_message_app.filter.RateLimiter;
+import com.secret_message.secret_message_app.service.PasswordService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * The {@link PasswordController} API for the reactive server mode; stored
+ * passwords are written with the non-blocking batch create.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/api/v1/passwords")
+@RequiredArgsConstructor
+public class ReactivePasswordController {
+
+    private final PasswordService passwordService;
+    private final RateLimiter rateLimiter;
+
+    @Value("${app.passwords.max-count:1000}")
+    private int maxCount;
+
+    @Value("${app.batch.max-messages:100}")
+    private int maxBatchMessages;
+
+    /**
+     * Limits and rate-limit charging as in {@link PasswordController#generate}.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<GeneratePasswordsResponse>> generate(@Valid @RequestBody GeneratePasswordsRequest body,
+                                                                    ServerWebExchange exchange) {
+        MessageRequests.checkPasswords(body, maxCount, maxBatchMessages);
+
+        byte[] bucketKey = exchange.getAttribute(RateLimiter.BUCKET_KEY_ATTRIBUTE);
+        Mono<Void> charged = bucketKey == null || !body.store() || body.count() <= 1
+                ? Mono.empty()
+                : Mono.fromFuture(() -> rateLimiter.consumeMoreAsync(bucketKey, body.count() - 1))
+                        .doOnNext(remaining -> exchange.getResponse().getHeaders()
+                                .set("X-RateLimit-Remaining", String.valueOf(remaining)))
+                        .then();
+        return charged
+                .then(Mono.fromFuture(() -> passwordService.generatePasswordsAsync(body)))
+                .map(passwords -> ResponseEntity.ok()
+                        .header("Cache-Control", "no-store")
+                        .body(new GeneratePasswordsResponse(passwords)));
+    }
+}
@@ -1,8 +1,17 @@
 package com.secret_message.secret_message_app.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 
+/**
+ * With a {@code passphrase} the message key is derived from it and the
+ * response carries no {@code aesKey}; the passphrase reveals the message.
+ */
 public record CreateMessageRequest(
-        @NotBlank(message = "message must not be blank") String message
+        @NotBlank(message = "message must not be blank") String message,
+        @Size(min = 8, max = 1024, message = "passphrase must be 8 to 1024 characters") String passphrase
 ) {
+    public CreateMessageRequest(String message) {
+        this(message, null);
+    }
 }
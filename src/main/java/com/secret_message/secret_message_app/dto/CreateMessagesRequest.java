@@ -0,0 +1,12 @@
+package com.secret_message.secret_message_app.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public record CreateMessagesRequest(
+        @NotEmpty(message = "messages must not be empty")
+        List<@NotBlank(message = "message must not be blank") String> messages
+) {
+}
@@ -0,0 +1,10 @@
+package com.secret_message.secret_message_app.dto;
+
+import java.util.List;
+
+/**
+ * Batch create-response body: one {@link CreateMessageResponse} per
+ * requested message, in request order. Each key is wiped as it is written.
+ */
+public record CreateMessagesResponse(List<CreateMessageResponse> messages) {
+}
@@ -0,0 +1,44 @@
+package com.secret_message.secret_message_app.dto;
+
+import com.secret_message.secret_message_app.utils.PasswordGenerator.CharacterClass;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+import java.util.EnumSet;
+
+/**
+ * Password-generation request. Absent fields take their defaults: one
+ * password of 20 characters from all four classes, not stored. With
+ * {@code store} each password is also created as a secret message, as a
+ * batch create would.
+ */
+public record GeneratePasswordsRequest(
+        @Min(value = 1, message = "count must be at least 1") Integer count,
+        @Min(value = 4, message = "length must be at least 4")
+        @Max(value = 1024, message = "length must be at most 1024") Integer length,
+        Boolean lower,
+        Boolean upper,
+        Boolean digits,
+        Boolean symbols,
+        Boolean store
+) {
+    public GeneratePasswordsRequest {
+        count = count == null ? 1 : count;
+        length = length == null ? 20 : length;
+        lower = lower == null || lower;
+        upper = upper == null || upper;
+        digits = digits == null || digits;
+        symbols = symbols == null || symbols;
+        store = store != null && store;
+    }
+
+    /** The classes switched on; empty if the request switched them all off. */
+    public EnumSet<CharacterClass> characterClasses() {
+        EnumSet<CharacterClass> classes = EnumSet.noneOf(CharacterClass.class);
+        if (lower) classes.add(CharacterClass.LOWER);
+        if (upper) classes.add(CharacterClass.UPPER);
+        if (digits) classes.add(CharacterClass.DIGITS);
+        if (symbols) classes.add(CharacterClass.SYMBOLS);
+        return classes;
+    }
+}
@@ -0,0 +1,10 @@
+package com.secret_message.secret_message_app.dto;
+
+import java.util.List;
+
+/**
+ * Password-generation response body, one {@link GeneratedPassword} per
+ * password requested.
+ */
+public record GeneratePasswordsResponse(List<GeneratedPassword> passwords) {
+}
@@ -0,0 +1,23 @@
+package com.secret_message.secret_message_app.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.secret_message.secret_message_app.utils.WipingBase64Serializer;
+import com.secret_message.secret_message_app.utils.WipingCharsSerializer;
+
+/**
+ * One generated password. The password and, when it was stored as a secret
+ * message, that message's key are wiped as they are written to JSON; the
+ * JSON shape is {@code {"password":"...","messageId":"...","aesKey":"..."}},
+ * the last two only with {@code store}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record GeneratedPassword(
+        @JsonSerialize(using = WipingCharsSerializer.class) char[] password,
+        String messageId,
+        @JsonSerialize(using = WipingBase64Serializer.class) byte[] aesKey
+) {
+    public GeneratedPassword(char[] password) {
+        this(password, null, null);
+    }
+}
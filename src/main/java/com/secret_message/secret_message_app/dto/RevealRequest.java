@@ -1,9 +1,18 @@
 package com.secret_message.secret_message_app.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 
+/**
+ * Exactly one of {@code aesKey} and {@code passphrase} is set: the key the
+ * create returned, or the passphrase the message was created with.
+ */
 public record RevealRequest(
         @NotBlank(message = "messageId must not be blank") String messageId,
-        @NotBlank(message = "aesKey must not be blank") String aesKey
+        String aesKey,
+        @Size(max = 1024, message = "passphrase must be at most 1024 characters") String passphrase
 ) {
+    public RevealRequest(String messageId, String aesKey) {
+        this(messageId, aesKey, null);
+    }
 }
@@ -4,14 +4,24 @@ import com.secret_message.secret_message_app.dto.ErrorResponse;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebInputException;
 import org.springframework.web.servlet.resource.NoResourceFoundException;
 
+/**
+ * Error responses for both server modes. Spring MVC and WebFlux each apply
+ * this advice to their own controllers, so the uniform reveal 404 and every
+ * other status is produced by the same code either way; only the framework
+ * exceptions for invalid and unroutable requests differ per stack.
+ */
 @RestControllerAdvice
 @RequiredArgsConstructor
 @Slf4j
@@ -43,7 +53,34 @@ public class GlobalExceptionHandler {
                 .body(new ErrorResponse("idempotency key conflict"));
     }
 
-    @ExceptionHandler(PayloadTooLargeException.class)
+    /**
+     * Same status, headers and body as the rate-limit filters' own 429.
+     */
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ErrorResponse> handleRateLimitExceeded(RateLimitExceededException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+                .header("Cache-Control", CACHE_NO_STORE)
+                .body(new ErrorResponse("rate limit exceeded"));
+    }
+
+    /**
+     * The passphrase key-derivation queue is full. Only passphrase requests
+     * get this; the client may retry shortly.
+     */
+    @ExceptionHandler(KeyDerivationBusyException.class)
+    public ResponseEntity<ErrorResponse> handleKeyDerivationBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .header("Cache-Control", CACHE_NO_STORE)
+                .body(new ErrorResponse("key derivation busy"));
+    }
+
+    /**
+     * Reactive mode also rejects a body above the decoder's in-memory cap
+     * before the controller can check it.
+     */
+    @ExceptionHandler({PayloadTooLargeException.class, DataBufferLimitException.class})
     public ResponseEntity<ErrorResponse> handlePayloadTooLarge() {
         return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
                 .header("Cache-Control", CACHE_NO_STORE)
@@ -59,7 +96,17 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handleValidation(MethodArgumentNotValidException ex) {
-        String detail = ex.getBindingResult().getFieldErrors().stream()
+        return validationFailed(ex.getBindingResult());
+    }
+
+    /** Reactive mode's {@link MethodArgumentNotValidException}. */
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<ErrorResponse> handleReactiveValidation(WebExchangeBindException ex) {
+        return validationFailed(ex.getBindingResult());
+    }
+
+    private ResponseEntity<ErrorResponse> validationFailed(BindingResult bindingResult) {
+        String detail = bindingResult.getFieldErrors().stream()
                 .map(f -> f.getField() + ": " + f.getDefaultMessage())
                 .findFirst()
                 .orElse("invalid request");
@@ -68,7 +115,11 @@ public class GlobalExceptionHandler {
                 .body(new ErrorResponse(detail));
     }
 
-    @ExceptionHandler(HttpMessageNotReadableException.class)
+    /**
+     * Unreadable body in either mode; reactive mode raises
+     * ServerWebInputException for malformed JSON and missing bodies.
+     */
+    @ExceptionHandler({HttpMessageNotReadableException.class, ServerWebInputException.class})
     public ResponseEntity<ErrorResponse> handleUnreadable() {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .header("Cache-Control", CACHE_NO_STORE)
@@ -80,7 +131,8 @@ public class GlobalExceptionHandler {
      * NoResourceFoundException falls into the generic handler and every
      * unknown path answers 503 — which reads as "service down" to monitors.
      */
-    @ExceptionHandler(NoResourceFoundException.class)
+    @ExceptionHandler({NoResourceFoundException.class,
+            org.springframework.web.reactive.resource.NoResourceFoundException.class})
     public ResponseEntity<ErrorResponse> handleNoResource() {
         return ResponseEntity.status(HttpStatus.NOT_FOUND)
                 .header("Cache-Control", CACHE_NO_STORE)
@@ -0,0 +1,12 @@
+package com.secret_message.secret_message_app.exception;
+
+/**
+ * A passphrase create or reveal refused because every key-derivation
+ * thread is busy and the queue in front of them is full.
+ */
+public class KeyDerivationBusyException extends RuntimeException {
+
+    public KeyDerivationBusyException() {
+        super("key derivation busy");
+    }
+}
@@ -0,0 +1,19 @@
+package com.secret_message.secret_message_app.exception;
+
+/**
+ * A request the rate-limit filter let through that still needs more tokens
+ * than the client's bucket holds (a batch create).
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(long retryAfterSeconds) {
+        super("rate limit exceeded");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
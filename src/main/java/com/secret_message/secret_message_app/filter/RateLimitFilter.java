@@ -1,22 +1,18 @@
 package com.secret_message.secret_message_app.filter;
 
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.BucketConfiguration;
 import io.github.bucket4j.ConsumptionProbe;
-import io.github.bucket4j.distributed.proxy.ProxyManager;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.function.Supplier;
 
 /**
  * Per-IP rate limiter for {@code /api/**}.
@@ -24,20 +20,21 @@ import java.util.function.Supplier;
  * <p>One bucket per resolved client IP, shared across all API endpoints.
  * Backed by Redis via Bucket4j so multiple application replicas share state.
  * Default limit: 100 requests / 24-hour rolling window
- * (configurable via {@code app.rate-limit.requests-per-day}).
+ * (configurable via {@code app.rate-limit.requests-per-day}). A batch
+ * create takes one more token per extra message; see {@link RateLimiter}.
  *
  * <p>On exceed: returns HTTP 429 with a {@code Retry-After} header
  * (in seconds, derived from the bucket's nano-precision refill estimate).
  */
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Order(Ordered.HIGHEST_PRECEDENCE + 100)
 @RequiredArgsConstructor
 public class RateLimitFilter extends OncePerRequestFilter {
 
     private static final String PATH_PREFIX = "/api/";
 
-    private final ProxyManager<byte[]> rateLimitProxyManager;
-    private final Supplier<BucketConfiguration> rateLimitBucketConfiguration;
+    private final RateLimiter rateLimiter;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
@@ -53,19 +50,17 @@ public class RateLimitFilter extends OncePerRequestFilter {
             clientIp = request.getRemoteAddr();
         }
 
-        byte[] bucketKey = ("ratelimit:" + clientIp).getBytes(StandardCharsets.UTF_8);
-        Bucket bucket = rateLimitProxyManager.builder().build(bucketKey, rateLimitBucketConfiguration);
-
-        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+        byte[] bucketKey = RateLimiter.bucketKey(clientIp);
+        ConsumptionProbe probe = rateLimiter.tryConsume(bucketKey, 1);
         if (probe.isConsumed()) {
+            request.setAttribute(RateLimiter.BUCKET_KEY_ATTRIBUTE, bucketKey);
             response.setHeader("X-RateLimit-Remaining", String.valueOf(probe.getRemainingTokens()));
             chain.doFilter(request, response);
             return;
         }
 
-        long retryAfterSeconds = Math.max(1, probe.getNanosToWaitForRefill() / 1_000_000_000L);
         response.setStatus(429);
-        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setHeader("Retry-After", String.valueOf(RateLimiter.retryAfterSeconds(probe)));
         response.setHeader("Cache-Control", "no-store");
         response.setContentType("application/json");
         response.getWriter().write("{\"error\":\"rate limit exceeded\"}");
@@ -0,0 +1,85 @@
+package com.secret_message.secret_message_app.filter;
+
+import com.secret_message.secret_message_app.exception.RateLimitExceededException;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * The per-IP buckets behind {@link RateLimitFilter} and
+ * {@link ReactiveRateLimitFilter}. The filters take one token per request
+ * and leave the bucket key in {@link #BUCKET_KEY_ATTRIBUTE}, so a handler
+ * whose request stands for several operations (the batch create) can take
+ * the rest from the same bucket.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimiter {
+
+    /** Request attribute holding the bucket key ({@code byte[]}) the filter charged. */
+    public static final String BUCKET_KEY_ATTRIBUTE = "secret_message.rateLimitBucket";
+
+    private final ProxyManager<byte[]> rateLimitProxyManager;
+    private final Supplier<BucketConfiguration> rateLimitBucketConfiguration;
+
+    static byte[] bucketKey(String clientIp) {
+        return ("ratelimit:" + clientIp).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Takes {@code tokens} from the bucket, or none at all when it holds
+     * fewer.
+     */
+    public ConsumptionProbe tryConsume(byte[] bucketKey, long tokens) {
+        return rateLimitProxyManager.builder()
+                .build(bucketKey, rateLimitBucketConfiguration)
+                .tryConsumeAndReturnRemaining(tokens);
+    }
+
+    /**
+     * {@link #tryConsume} through Bucket4j's async proxy, so the caller's
+     * thread moves on while the compare-and-swap round trips are in flight.
+     */
+    public CompletableFuture<ConsumptionProbe> tryConsumeAsync(byte[] bucketKey, long tokens) {
+        return rateLimitProxyManager.asAsync().builder()
+                .build(bucketKey, () -> CompletableFuture.completedFuture(rateLimitBucketConfiguration.get()))
+                .tryConsumeAndReturnRemaining(tokens);
+    }
+
+    /**
+     * Takes {@code tokens} more for a request the filter has already let
+     * through, or takes none and throws RateLimitExceededException (a 429
+     * like the filter's own).
+     *
+     * @return the tokens left in the bucket
+     */
+    public long consumeMore(byte[] bucketKey, long tokens) {
+        return remainingOrThrow(tryConsume(bucketKey, tokens));
+    }
+
+    /**
+     * {@link #consumeMore} without blocking; the future fails with
+     * RateLimitExceededException.
+     */
+    public CompletableFuture<Long> consumeMoreAsync(byte[] bucketKey, long tokens) {
+        return tryConsumeAsync(bucketKey, tokens).thenApply(RateLimiter::remainingOrThrow);
+    }
+
+    /** Whole seconds until a rejected probe's tokens are back, at least 1. */
+    public static long retryAfterSeconds(ConsumptionProbe probe) {
+        return Math.max(1, probe.getNanosToWaitForRefill() / 1_000_000_000L);
+    }
+
+    private static long remainingOrThrow(ConsumptionProbe probe) {
+        if (!probe.isConsumed()) {
+            throw new RateLimitExceededException(retryAfterSeconds(probe));
+        }
+        return probe.getRemainingTokens();
+    }
+}
@@ -0,0 +1,115 @@
+package com.secret_message.secret_message_app.filter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * {@link ClientIpFilter} for the reactive server mode: resolves the client
+ * IP and stores it as the {@link ClientIpFilter#CLIENT_IP_ATTRIBUTE}
+ * exchange attribute for {@link ReactiveRateLimitFilter}. Same profile
+ * behaviour: 400 in prod when no IP can be resolved, 127.0.0.1 elsewhere.
+ *
+ * <p>Netty has no RemoteIpValve, and its own forwarded-header support
+ * believes any peer. With {@code server.forward-headers-strategy=NATIVE}
+ * this filter therefore applies the valve's rule itself:
+ * {@code X-Forwarded-For} is only read when the direct peer matches
+ * {@code server.tomcat.remoteip.internal-proxies}, and the client is the
+ * right-most entry that is not such a proxy. Netty's own handling is
+ * switched off in ReactiveServerConfig.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveClientIpFilter implements WebFilter, Ordered {
+
+    private static final String PATH_PREFIX = "/api/";
+
+    private static final byte[] UNRESOLVABLE_BODY =
+            "{\"error\":\"client IP not resolvable\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Value("${spring.profiles.active:default}")
+    private String activeProfile;
+
+    @Value("${server.forward-headers-strategy:none}")
+    private String forwardHeadersStrategy;
+
+    private final Pattern internalProxies;
+
+    public ReactiveClientIpFilter(@Value("${server.tomcat.remoteip.internal-proxies:}") String internalProxies) {
+        this.internalProxies = internalProxies.isBlank() ? null : Pattern.compile(internalProxies);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 50;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!request.getPath().value().startsWith(PATH_PREFIX)) {
+            return chain.filter(exchange);
+        }
+
+        String ip = resolveClientIp(request);
+
+        if (ip == null || ip.isEmpty() || "0.0.0.0".equals(ip)) {
+            if (isProductionProfile()) {
+                ServerHttpResponse response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.BAD_REQUEST);
+                response.getHeaders().set("Cache-Control", "no-store");
+                response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                return response.writeWith(Mono.just(response.bufferFactory().wrap(UNRESOLVABLE_BODY)));
+            }
+            ip = "127.0.0.1";
+        }
+
+        exchange.getAttributes().put(ClientIpFilter.CLIENT_IP_ATTRIBUTE, ip);
+        return chain.filter(exchange);
+    }
+
+    private String resolveClientIp(ServerHttpRequest request) {
+        InetSocketAddress remote = request.getRemoteAddress();
+        String peer = remote == null || remote.getAddress() == null ? null : remote.getAddress().getHostAddress();
+        if (peer == null || !"native".equalsIgnoreCase(forwardHeadersStrategy) || !isInternalProxy(peer)) {
+            return peer;
+        }
+        List<String> forwardedFor = request.getHeaders().get("X-Forwarded-For");
+        if (forwardedFor == null || forwardedFor.isEmpty()) {
+            return peer;
+        }
+        String[] hops = String.join(",", forwardedFor).split(",");
+        String client = peer;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            client = hops[i].trim();
+            if (!isInternalProxy(client)) {
+                break;
+            }
+        }
+        return client;
+    }
+
+    private boolean isInternalProxy(String ip) {
+        return internalProxies != null && internalProxies.matcher(ip).matches();
+    }
+
+    private boolean isProductionProfile() {
+        return activeProfile != null
+                && (activeProfile.equalsIgnoreCase("prod")
+                || activeProfile.equalsIgnoreCase("production"));
+    }
+}
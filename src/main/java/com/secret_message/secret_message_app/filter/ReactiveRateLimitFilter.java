@@ -0,0 +1,68 @@
+package com.secret_message.secret_message_app.filter;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link RateLimitFilter} for the reactive server mode: same buckets, keys,
+ * headers and 429 body. The bucket is consumed with
+ * {@link RateLimiter#tryConsumeAsync}, so the event loop is never parked on
+ * Redis.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveRateLimitFilter implements WebFilter, Ordered {
+
+    private static final String PATH_PREFIX = "/api/";
+
+    private static final byte[] EXCEEDED_BODY = "{\"error\":\"rate limit exceeded\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final RateLimiter rateLimiter;
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 100;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!exchange.getRequest().getPath().value().startsWith(PATH_PREFIX)) {
+            return chain.filter(exchange);
+        }
+
+        String clientIp = exchange.getAttribute(ClientIpFilter.CLIENT_IP_ATTRIBUTE);
+        if (clientIp == null) {
+            InetSocketAddress remote = exchange.getRequest().getRemoteAddress();
+            clientIp = remote == null ? null : remote.getHostString();
+        }
+
+        byte[] bucketKey = RateLimiter.bucketKey(clientIp);
+        return Mono.fromFuture(() -> rateLimiter.tryConsumeAsync(bucketKey, 1)).flatMap(probe -> {
+            ServerHttpResponse response = exchange.getResponse();
+            if (probe.isConsumed()) {
+                exchange.getAttributes().put(RateLimiter.BUCKET_KEY_ATTRIBUTE, bucketKey);
+                response.getHeaders().set("X-RateLimit-Remaining", String.valueOf(probe.getRemainingTokens()));
+                return chain.filter(exchange);
+            }
+
+            response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            response.getHeaders().set("Retry-After", String.valueOf(RateLimiter.retryAfterSeconds(probe)));
+            response.getHeaders().set("Cache-Control", "no-store");
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(EXCEEDED_BODY)));
+        });
+    }
+}
@@ -1,5 +1,6 @@
 package com.secret_message.secret_message_app.idempotency;
 
+import com.secret_message.secret_message_app.utils.CipherContext;
 import com.secret_message.secret_message_app.utils.CryptoUtil;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
@@ -12,31 +13,41 @@ import java.util.Base64;
 
 /**
  * Holds the Master Idempotency Encryption Key (MIEK) and exposes
- * AES-256-CBC encrypt/decrypt for per-message AES keys stored in
- * idempotency records.
+ * encrypt/decrypt for per-message AES keys stored in idempotency records.
  *
  * <p>Memory hardening (per docs/MEMORY_HARDENING.md):
  * - Master key is stored as byte[], never copied to String.
- * - Buffer is zeroed on application shutdown via @PreDestroy.
+ * - Buffer is zeroed on application shutdown via @PreDestroy, and the
+ *   {@link CipherContext} holding the key's ciphers is closed.
  * - The accessor methods accept and return byte[] only; callers are
  *   expected to zero their own buffers after use.
  *
- * <p>The encryption mode is intentionally CBC (no authenticity) — this is
- * the deliberate trade-off documented in HTTP_API_DESIGN.md §8. Tampering
- * with stored ciphertext produces a garbage key on decrypt; the resulting
- * three failed reveal attempts are bounded by the existing 3-strike counter.
+ * <p>Keys are sealed with AES-256-GCM ({@code app.storage.cipher=gcm}, the
+ * default), so a tampered record fails to decrypt instead of yielding a
+ * garbage key. Records written with CBC ({@code IV || ciphertext}, and
+ * {@code app.storage.cipher=cbc} during a rolling upgrade) still decrypt;
+ * they expire with their messages rather than being rewritten (see
+ * HTTP_API_DESIGN.md §8).
+ *
+ * <p>Every create and replay wraps or unwraps a key here, so the master key
+ * is opened once as a {@link CipherContext}: its ciphers stay initialized
+ * under it instead of being looked up and keyed on each call.
  */
 @Component
 @Slf4j
 public class IdempotencyKeyVault {
 
     private static final int REQUIRED_KEY_BYTES = 32;
+    private static final int CBC_BLOCK_BYTES = 16;
 
     private final byte[] masterKey;
+    private final CipherContext masterKeyContext;
+    private final boolean authenticated;
     private final CryptoUtil cryptoUtil;
 
     public IdempotencyKeyVault(
             @Value("${app.idempotency.master-key}") String masterKeyBase64,
+            @Value("${app.storage.cipher:gcm}") String cipher,
             CryptoUtil cryptoUtil) {
 
         if (masterKeyBase64 == null || masterKeyBase64.isBlank()) {
@@ -60,28 +71,45 @@ public class IdempotencyKeyVault {
         }
 
         this.masterKey = decoded;
+        this.masterKeyContext = cryptoUtil.openContext(decoded);
+        this.authenticated = !"cbc".equalsIgnoreCase(cipher);
         this.cryptoUtil = cryptoUtil;
         log.info("IdempotencyKeyVault initialized with a {}-byte master key", REQUIRED_KEY_BYTES);
     }
 
     public byte[] encrypt(byte[] plaintext) {
         try {
-            return cryptoUtil.encrypt(plaintext, masterKey);
+            return authenticated
+                    ? cryptoUtil.encryptAuthenticated(plaintext, masterKeyContext)
+                    : cryptoUtil.encrypt(plaintext, masterKeyContext);
         } catch (GeneralSecurityException e) {
             throw new IllegalStateException("idempotency encryption failed", e);
         }
     }
 
-    public byte[] decrypt(byte[] ivAndCiphertext) {
+    public byte[] decrypt(byte[] ciphertext) {
         try {
-            return cryptoUtil.decrypt(ivAndCiphertext, masterKey);
+            return sealed(ciphertext)
+                    ? cryptoUtil.decryptAuthenticated(ciphertext, masterKeyContext)
+                    : cryptoUtil.decrypt(ciphertext, masterKeyContext);
         } catch (GeneralSecurityException e) {
             throw new IllegalStateException("idempotency decryption failed", e);
         }
     }
 
+    /**
+     * A sealed 32-byte key is 61 bytes (marker, nonce, key, tag), while a
+     * CBC blob is always whole 16-byte blocks, so a legacy IV that happens to
+     * start with the marker byte is never mistaken for one.
+     */
+    private static boolean sealed(byte[] ciphertext) {
+        return ciphertext.length % CBC_BLOCK_BYTES != 0
+                && ciphertext[0] == CryptoUtil.GCM_PAYLOAD_MARKER;
+    }
+
     @PreDestroy
     void zeroize() {
+        masterKeyContext.close();
         Arrays.fill(masterKey, (byte) 0);
     }
 }
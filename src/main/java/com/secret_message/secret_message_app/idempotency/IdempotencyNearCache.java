@@ -0,0 +1,118 @@
+package com.secret_message.secret_message_app.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-replica cache of parsed idempotency records, so a client retrying
+ * with the same Idempotency-Key within seconds is answered without a Redis
+ * GET and a JSON parse. Records hold the AES key only in its MIEK-encrypted
+ * form, exactly as Redis does; nothing here is plaintext key material.
+ *
+ * <p>No invalidation messages are needed: a record is written once
+ * (SET NX) and never changed, and only disappears by expiring. An entry
+ * therefore lives until the earlier of the record's own expiry and
+ * {@code app.idempotency.near-cache.ttl}, which bounds how long a replica
+ * can keep answering from a record Redis has lost (a restart or flush).
+ * Misses are never cached, since another replica may create the record at
+ * any moment. Holds at most {@code app.idempotency.near-cache.max-entries}
+ * records; a TTL of 0 turns the cache off.
+ */
+@Component
+public class IdempotencyNearCache {
+
+    private record Entry(IdempotencyRecord record, long expiresAtMillis) {
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Clock clock;
+    private final long ttlMillis;
+    private final long recordTtlMillis;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+
+    public IdempotencyNearCache(@Value("${app.idempotency.near-cache.ttl:30s}") Duration ttl,
+                                @Value("${app.idempotency.near-cache.max-entries:10000}") int maxEntries,
+                                @Value("${app.auto-delete-days}") long messageExpiryTime,
+                                MeterRegistry meterRegistry) {
+        this(Clock.systemUTC(), ttl, maxEntries, TimeUnit.DAYS.toMillis(messageExpiryTime), meterRegistry);
+    }
+
+    IdempotencyNearCache(Clock clock, Duration ttl, int maxEntries, long recordTtlMillis,
+                         MeterRegistry meterRegistry) {
+        this.clock = clock;
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.recordTtlMillis = recordTtlMillis;
+        this.hits = Counter.builder("idempotency.near-cache.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("idempotency.near-cache.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The cached record for {@code idempotencyKey}, or null on a miss.
+     */
+    public IdempotencyRecord get(String idempotencyKey) {
+        if (!enabled()) {
+            return null;
+        }
+        Entry entry = entries.get(idempotencyKey);
+        if (entry != null && entry.expiresAtMillis() > clock.millis()) {
+            hits.increment();
+            return entry.record();
+        }
+        if (entry != null) {
+            entries.remove(idempotencyKey, entry);
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String idempotencyKey, IdempotencyRecord record) {
+        if (!enabled()) {
+            return;
+        }
+        long now = clock.millis();
+        long expiresAt = Math.min(now + ttlMillis, record.createdAt() + recordTtlMillis);
+        if (expiresAt <= now) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            makeRoom(now);
+        }
+        entries.put(idempotencyKey, new Entry(record, expiresAt));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private boolean enabled() {
+        return ttlMillis > 0 && maxEntries > 0;
+    }
+
+    /**
+     * Drops expired entries, then arbitrary ones until there is room. With
+     * a TTL of seconds almost everything dropped is expired anyway.
+     */
+    private void makeRoom(long now) {
+        entries.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+        Iterator<String> keys = entries.keySet().iterator();
+        while (entries.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
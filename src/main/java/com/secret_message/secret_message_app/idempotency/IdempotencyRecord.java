@@ -4,9 +4,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * Persisted shape of an idempotency record in Redis.
- * The encrypted AES key is Base64-encoded ciphertext (IV || AES-CBC ciphertext)
- * produced by IdempotencyKeyVault.encrypt() and is decryptable only by the
- * server holding the matching master key.
+ * The encrypted AES key is Base64-encoded ciphertext produced by
+ * IdempotencyKeyVault.encrypt() (an AES-GCM envelope, or IV || AES-CBC
+ * ciphertext for older records) and is decryptable only by the server
+ * holding the matching master key.
  */
 public record IdempotencyRecord(
         @JsonProperty("body_hash") String bodyHash,
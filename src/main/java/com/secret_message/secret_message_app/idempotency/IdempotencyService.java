@@ -2,39 +2,36 @@ package com.secret_message.secret_message_app.idempotency;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.secret_message.secret_message_app.cache.KeyspaceMetrics;
+import com.secret_message.secret_message_app.cache.MessageStore;
 import com.secret_message.secret_message_app.exception.IdempotencyConflictException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.time.Duration;
 import java.util.Base64;
 import java.util.HexFormat;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Read/write idempotency records in Redis. The AES key inside each record
- * is encrypted with the master key (MIEK) via IdempotencyKeyVault before
- * storage; this service never persists the key in plaintext.
+ * Read/write idempotency records in the MessageStore (Redis by default).
+ * The AES key inside each record is encrypted with the master key (MIEK)
+ * via IdempotencyKeyVault before storage; this service never persists the
+ * key in plaintext. Records this replica has recently read or created are
+ * answered from {@link IdempotencyNearCache}.
  */
 @Service
 @RequiredArgsConstructor
 public class IdempotencyService {
 
-    private final StringRedisTemplate redisTemplate;
+    private final MessageStore messageStore;
     private final IdempotencyKeyVault vault;
     private final ObjectMapper mapper;
-
-    @Value("${app.auto-delete-days}")
-    private long ttlDays;
-
-    private String buildKey(String idempotencyKey) {
-        return "idempotency:" + idempotencyKey;
-    }
+    private final KeyspaceMetrics keyspaceMetrics;
+    private final IdempotencyNearCache nearCache;
 
     /**
      * Computes a stable hash of the request body for replay detection.
@@ -57,15 +54,34 @@ public class IdempotencyService {
      * if the key was used with a different body.
      */
     public Optional<IdempotencyRecord> findExisting(String idempotencyKey, String bodyHash) {
-        String json = redisTemplate.opsForValue().get(buildKey(idempotencyKey));
+        IdempotencyRecord cached = nearCache.get(idempotencyKey);
+        if (cached != null) {
+            return Optional.of(checkBody(cached, bodyHash));
+        }
+        String json = messageStore.getIdempotencyRecord(idempotencyKey);
         if (json == null) {
             return Optional.empty();
         }
-        IdempotencyRecord record = parse(json);
-        if (!record.bodyHash().equals(bodyHash)) {
-            throw new IdempotencyConflictException();
+        return Optional.of(checkBody(parseAndCache(idempotencyKey, json), bodyHash));
+    }
+
+    /**
+     * Non-blocking {@link #findExisting}; a body mismatch fails the future
+     * with IdempotencyConflictException.
+     */
+    public CompletableFuture<Optional<IdempotencyRecord>> findExistingAsync(String idempotencyKey, String bodyHash) {
+        IdempotencyRecord cached = nearCache.get(idempotencyKey);
+        if (cached != null) {
+            try {
+                return CompletableFuture.completedFuture(Optional.of(checkBody(cached, bodyHash)));
+            } catch (IdempotencyConflictException e) {
+                return CompletableFuture.failedFuture(e);
+            }
         }
-        return Optional.of(record);
+        return messageStore.getIdempotencyRecordAsync(idempotencyKey)
+                .thenApply(json -> json == null
+                        ? Optional.empty()
+                        : Optional.of(checkBody(parseAndCache(idempotencyKey, json), bodyHash)));
     }
 
     /**
@@ -78,28 +94,64 @@ public class IdempotencyService {
      *         another request already created it.
      */
     public boolean store(String idempotencyKey, String bodyHash, String messageId, byte[] aesKeyBytes) {
-        byte[] encrypted = vault.encrypt(aesKeyBytes);
+        IdempotencyRecord record = newRecord(bodyHash, messageId, aesKeyBytes);
+        boolean created = messageStore.storeIdempotencyRecordIfAbsent(idempotencyKey, toJson(record));
+        if (created) {
+            created(idempotencyKey, record);
+        }
+        return created;
+    }
 
-        IdempotencyRecord record = new IdempotencyRecord(
-                bodyHash,
+    /**
+     * Writes the encrypted message payload and its idempotency record in one
+     * atomic store operation. When a record already exists for this key (an
+     * earlier retry, or a concurrent request that won the race) nothing is
+     * written and that record is returned instead, so the caller never has
+     * to clean up a losing message. Same key-ownership rules as
+     * {@link #store}; throws IdempotencyConflictException if the existing
+     * record was created for a different body.
+     *
+     * @return empty when this call created the message, else the winning record
+     */
+    public Optional<IdempotencyRecord> storeWithMessage(String idempotencyKey, String bodyHash,
+                                                        String messageId, byte[] aesKeyBytes,
+                                                        byte[] encryptedPayload) {
+        IdempotencyRecord record = newRecord(bodyHash, messageId, aesKeyBytes);
+        String existing = messageStore.storeEncryptedPayloadWithIdempotencyRecord(
                 messageId,
-                Base64.getEncoder().encodeToString(encrypted),
-                System.currentTimeMillis()
+                encryptedPayload,
+                idempotencyKey,
+                toJson(record)
         );
-
-        String json;
-        try {
-            json = mapper.writeValueAsString(record);
-        } catch (JsonProcessingException e) {
-            throw new IllegalStateException("failed to serialize idempotency record", e);
+        if (existing == null) {
+            created(idempotencyKey, record);
+            return Optional.empty();
         }
+        return Optional.of(checkBody(parseAndCache(idempotencyKey, existing), bodyHash));
+    }
 
-        Boolean stored = redisTemplate.opsForValue().setIfAbsent(
-                buildKey(idempotencyKey),
-                json,
-                Duration.ofDays(ttlDays)
-        );
-        return Boolean.TRUE.equals(stored);
+    /**
+     * Non-blocking {@link #storeWithMessage}. The key is encrypted with MIEK
+     * on the calling thread, so {@code aesKeyBytes} may be wiped as soon as
+     * this returns; a conflicting body fails the future with
+     * IdempotencyConflictException.
+     */
+    public CompletableFuture<Optional<IdempotencyRecord>> storeWithMessageAsync(String idempotencyKey, String bodyHash,
+                                                                                String messageId, byte[] aesKeyBytes,
+                                                                                byte[] encryptedPayload) {
+        IdempotencyRecord record = newRecord(bodyHash, messageId, aesKeyBytes);
+        return messageStore.storeEncryptedPayloadWithIdempotencyRecordAsync(
+                messageId,
+                encryptedPayload,
+                idempotencyKey,
+                toJson(record)
+        ).thenApply(existing -> {
+            if (existing == null) {
+                created(idempotencyKey, record);
+                return Optional.empty();
+            }
+            return Optional.of(checkBody(parseAndCache(idempotencyKey, existing), bodyHash));
+        });
     }
 
     /**
@@ -112,6 +164,47 @@ public class IdempotencyService {
         return vault.decrypt(ciphertext);
     }
 
+    private IdempotencyRecord newRecord(String bodyHash, String messageId, byte[] aesKeyBytes) {
+        byte[] encrypted = vault.encrypt(aesKeyBytes);
+
+        return new IdempotencyRecord(
+                bodyHash,
+                messageId,
+                Base64.getEncoder().encodeToString(encrypted),
+                System.currentTimeMillis()
+        );
+    }
+
+    /**
+     * The record this call wrote: counted, and cached for the client's
+     * retries.
+     */
+    private void created(String idempotencyKey, IdempotencyRecord record) {
+        keyspaceMetrics.idempotencyRecordStored();
+        nearCache.put(idempotencyKey, record);
+    }
+
+    private String toJson(IdempotencyRecord record) {
+        try {
+            return mapper.writeValueAsString(record);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("failed to serialize idempotency record", e);
+        }
+    }
+
+    private static IdempotencyRecord checkBody(IdempotencyRecord record, String bodyHash) {
+        if (!record.bodyHash().equals(bodyHash)) {
+            throw new IdempotencyConflictException();
+        }
+        return record;
+    }
+
+    private IdempotencyRecord parseAndCache(String idempotencyKey, String json) {
+        IdempotencyRecord record = parse(json);
+        nearCache.put(idempotencyKey, record);
+        return record;
+    }
+
     private IdempotencyRecord parse(String json) {
         try {
             return mapper.readValue(json, IdempotencyRecord.class);
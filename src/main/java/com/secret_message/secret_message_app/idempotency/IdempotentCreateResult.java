@@ -0,0 +1,27 @@
+package com.secret_message.secret_message_app.idempotency;
+
+import com.secret_message.secret_message_app.model.SecretMessageIdentifier;
+
+/**
+ * Outcome of an idempotent create: exactly one of the fields is set.
+ * {@code created} owns the new message's key bytes (the transport boundary
+ * wipes them); {@code existing} is the record of an earlier create with the
+ * same Idempotency-Key and body, whose key must be recovered via
+ * {@link IdempotencyService#recoverAesKey}.
+ */
+public record IdempotentCreateResult(
+        SecretMessageIdentifier created,
+        IdempotencyRecord existing
+) {
+    public static IdempotentCreateResult created(SecretMessageIdentifier identifier) {
+        return new IdempotentCreateResult(identifier, null);
+    }
+
+    public static IdempotentCreateResult replay(IdempotencyRecord record) {
+        return new IdempotentCreateResult(null, record);
+    }
+
+    public boolean isReplay() {
+        return existing != null;
+    }
+}
@@ -0,0 +1,58 @@
+package com.secret_message.secret_message_app.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Where the reactive paths, and batch creates in either mode, encrypt and
+ * decrypt. The reactive paths' store futures complete on the Lettuce I/O
+ * thread of a multiplexed connection, and a create starts on a Netty event
+ * loop; a 256 KiB decrypt on either stalls every other request sharing it.
+ * Callbacks that do cipher work hop here instead, with
+ * {@code thenApplyAsync}/{@code thenComposeAsync}.
+ *
+ * <p>A fork-join pool of {@code app.crypto.threads} workers (0 = one per
+ * core), separate from the common pool: a segmented payload sealed or
+ * opened on a worker forks its segments into this pool, so no I/O thread
+ * ever waits on them. Nothing blocking runs here; store calls, a batch's
+ * chunk appends included, are only issued, and their replies hop back.
+ */
+@Service
+public class CryptoExecutor implements Executor, DisposableBean {
+
+    private final ForkJoinPool pool;
+
+    public CryptoExecutor(MeterRegistry meterRegistry, @Value("${app.crypto.threads:0}") int threads) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("crypto-" + threadIndex.getAndIncrement());
+            return thread;
+        }, null, false);
+        Gauge.builder("crypto.executor.queued", pool, ForkJoinPool::getQueuedSubmissionCount)
+                .description("Crypto tasks waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("crypto.executor.active", pool, ForkJoinPool::getActiveThreadCount)
+                .description("Crypto workers running a task")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+}
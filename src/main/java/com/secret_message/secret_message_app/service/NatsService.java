@@ -1,12 +1,17 @@
 package com.secret_message.secret_message_app.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.secret_message.secret_message_app.dto.CreateMessagesRequest;
+import com.secret_message.secret_message_app.dto.GeneratePasswordsRequest;
+import com.secret_message.secret_message_app.dto.GeneratePasswordsResponse;
+import com.secret_message.secret_message_app.dto.GeneratedPassword;
 import com.secret_message.secret_message_app.exception.MessageNotAvailableException;
 import com.secret_message.secret_message_app.model.SecretMessageIdentifier;
 import io.nats.client.Connection;
 import io.nats.client.Dispatcher;
 import io.nats.client.Message;
 import io.nats.client.MessageHandler;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,7 +20,13 @@ import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 @Service
 @RequiredArgsConstructor
@@ -24,18 +35,51 @@ public class NatsService {
 
     private final Connection natsConnection;
     private final SecretMessageService secretMessageService;
+    private final PasswordService passwordService;
     private final ObjectMapper mapper;
 
     @Value("${app.max-message-size:1048576}")
     private int maxMessageSize;
 
+    /**
+     * Same switch that moves Tomcat onto virtual threads. When on, every
+     * message is handled on its own virtual thread rather than on its
+     * subject's dispatcher thread, so one reveal waiting on Redis no longer
+     * holds up every message queued behind it.
+     */
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Virtual-thread mode only: handlers running at once across both
+     * subjects. Beyond that the dispatcher waits for a permit and NATS
+     * buffers the backlog, as it does for a busy dispatcher thread.
+     */
+    @Value("${app.nats.max-concurrent-handlers:256}")
+    private int maxConcurrentHandlers;
+
+    @Value("${app.batch.max-messages:100}")
+    private int maxBatchMessages;
+
+    @Value("${app.passwords.max-count:1000}")
+    private int maxPasswords;
+
+    private ExecutorService handlerExecutor;
+    private Semaphore handlerPermits;
+
     private static final int MAX_MESSAGE_ID_LENGTH = 100;
     private static final int MAX_AES_KEY_BYTES = 64;
 
     @EventListener(ApplicationReadyEvent.class)
     public void startNatsSubscriptions() {
+        if (virtualThreads) {
+            handlerExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("nats-handler-", 0).factory());
+            handlerPermits = new Semaphore(maxConcurrentHandlers);
+        }
         createDispatcher(natsConnection, "save.msg", this::createSecretMessageSubscriber);
+        createDispatcher(natsConnection, "save.msg.batch", this::createSecretMessagesSubscriber);
         createDispatcher(natsConnection, "receive.msg", this::getSecretMessageSubscriber);
+        createDispatcher(natsConnection, "generate.passwords", this::generatePasswordsSubscriber);
     }
 
     // With multiple app replicas, a plain subscription would broadcast every
@@ -44,10 +88,46 @@ public class NatsService {
     static final String QUEUE_GROUP = "secret-message-workers";
 
     public void createDispatcher(Connection natsConnection, String subject, MessageHandler messageHandler) {
-        Dispatcher dispatcher = natsConnection.createDispatcher(messageHandler);
+        Dispatcher dispatcher = natsConnection.createDispatcher(onHandlerThread(messageHandler));
         dispatcher.subscribe(subject, QUEUE_GROUP);
     }
 
+    /**
+     * The handler as the dispatcher should call it: unchanged on platform
+     * threads, otherwise handed to a fresh virtual thread once a permit is
+     * free.
+     */
+    MessageHandler onHandlerThread(MessageHandler messageHandler) {
+        if (handlerExecutor == null) {
+            return messageHandler;
+        }
+        return msg -> {
+            handlerPermits.acquire();
+            try {
+                handlerExecutor.execute(() -> {
+                    try {
+                        messageHandler.onMessage(msg);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        handlerPermits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                handlerPermits.release();
+                throw e;
+            }
+        };
+    }
+
+    /** Lets handlers already running finish their reply before NATS closes. */
+    @PreDestroy
+    void stopHandlers() {
+        if (handlerExecutor != null) {
+            handlerExecutor.close();
+        }
+    }
+
     public void createSecretMessageSubscriber(Message msg) {
         try {
             if (msg.getData() == null || msg.getData().length == 0) {
@@ -89,6 +169,133 @@ public class NatsService {
         }
     }
 
+    /**
+     * Batch form of {@code save.msg}: the request is
+     * {@code {"messages":["...", ...]}} with at most
+     * {@code app.batch.max-messages} entries and at most
+     * {@code app.max-message-size} bytes in all, and the reply is a JSON
+     * array of the identifiers {@code save.msg} returns, in request order.
+     */
+    public void createSecretMessagesSubscriber(Message msg) {
+        try {
+            if (msg.getData() == null || msg.getData().length == 0) {
+                sendErrorResponse(msg.getReplyTo(), "Message cannot be empty");
+                return;
+            }
+            if (msg.getData().length > maxMessageSize) {
+                sendErrorResponse(msg.getReplyTo(), "Message size exceeds maximum allowed: " + maxMessageSize + " bytes");
+                return;
+            }
+
+            CreateMessagesRequest request;
+            try {
+                request = mapper.readValue(msg.getData(), CreateMessagesRequest.class);
+            } catch (Exception e) {
+                sendErrorResponse(msg.getReplyTo(), "Invalid batch format");
+                return;
+            }
+            List<String> messages = request == null ? null : request.messages();
+            if (messages == null || messages.isEmpty()) {
+                sendErrorResponse(msg.getReplyTo(), "Batch cannot be empty");
+                return;
+            }
+            if (messages.size() > maxBatchMessages) {
+                sendErrorResponse(msg.getReplyTo(), "Batch exceeds maximum of " + maxBatchMessages + " messages");
+                return;
+            }
+            if (messages.stream().anyMatch(message -> message == null || message.trim().isEmpty())) {
+                sendErrorResponse(msg.getReplyTo(), "Message cannot be empty or whitespace only");
+                return;
+            }
+
+            if (msg.getReplyTo() != null) {
+                List<SecretMessageIdentifier> identifiers = null;
+                try {
+                    identifiers = secretMessageService.createSecretMessages(messages);
+                    natsConnection.publish(msg.getReplyTo(), mapper.writeValueAsBytes(identifiers));
+                } catch (Exception e) {
+                    log.error("Error creating secret messages", e);
+                    sendErrorResponse(msg.getReplyTo(), "Failed to create secret messages: " + e.getMessage());
+                } finally {
+                    if (identifiers != null) {
+                        identifiers.forEach(SecretMessageIdentifier::wipe);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Unexpected error in createSecretMessagesSubscriber", e);
+            if (msg.getReplyTo() != null) {
+                sendErrorResponse(msg.getReplyTo(), "Internal server error");
+            }
+        }
+    }
+
+    /**
+     * {@code POST /api/v1/passwords} over NATS: the request and reply are
+     * the same JSON, and the same limits apply. An empty request asks for
+     * one password with the defaults. Each password (and stored key) is
+     * wiped as the reply is serialized.
+     */
+    public void generatePasswordsSubscriber(Message msg) {
+        try {
+            GeneratePasswordsRequest request;
+            try {
+                request = msg.getData() == null || msg.getData().length == 0
+                        ? new GeneratePasswordsRequest(null, null, null, null, null, null, null)
+                        : mapper.readValue(msg.getData(), GeneratePasswordsRequest.class);
+            } catch (Exception e) {
+                sendErrorResponse(msg.getReplyTo(), "Invalid password request format");
+                return;
+            }
+            if (request == null) {
+                sendErrorResponse(msg.getReplyTo(), "Invalid password request format");
+                return;
+            }
+            int limit = request.store() ? Math.min(maxPasswords, maxBatchMessages) : maxPasswords;
+            if (request.count() < 1 || request.count() > limit) {
+                sendErrorResponse(msg.getReplyTo(), "Count must be between 1 and " + limit);
+                return;
+            }
+            if (request.length() < 4 || request.length() > 1024) {
+                sendErrorResponse(msg.getReplyTo(), "Length must be between 4 and 1024");
+                return;
+            }
+            if (request.characterClasses().isEmpty()) {
+                sendErrorResponse(msg.getReplyTo(), "At least one character class is required");
+                return;
+            }
+
+            if (msg.getReplyTo() != null) {
+                List<GeneratedPassword> passwords = null;
+                try {
+                    passwords = passwordService.generatePasswords(request);
+                    natsConnection.publish(msg.getReplyTo(),
+                            mapper.writeValueAsBytes(new GeneratePasswordsResponse(passwords)));
+                } catch (Exception e) {
+                    log.error("Error generating passwords", e);
+                    sendErrorResponse(msg.getReplyTo(), "Failed to generate passwords: " + e.getMessage());
+                } finally {
+                    if (passwords != null) {
+                        // Already wiped by the serializer unless publishing failed first.
+                        passwords.forEach(NatsService::wipe);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Unexpected error in generatePasswordsSubscriber", e);
+            if (msg.getReplyTo() != null) {
+                sendErrorResponse(msg.getReplyTo(), "Internal server error");
+            }
+        }
+    }
+
+    private static void wipe(GeneratedPassword password) {
+        Arrays.fill(password.password(), '\0');
+        if (password.aesKey() != null) {
+            Arrays.fill(password.aesKey(), (byte) 0);
+        }
+    }
+
     public void getSecretMessageSubscriber(Message msg) {
         try {
             if (msg.getData() == null || msg.getData().length == 0) {
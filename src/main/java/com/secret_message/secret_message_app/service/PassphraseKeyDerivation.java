@@ -0,0 +1,137 @@
+package com.secret_message.secret_message_app.service;
+
+import com.secret_message.secret_message_app.exception.KeyDerivationBusyException;
+import com.secret_message.secret_message_app.utils.CryptoUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns a passphrase into the AES key of the message it protects. The key
+ * is PBKDF2 of the passphrase ({@link CryptoUtil#deriveKeyBytesFromPassword})
+ * salted with the message id, which is random and unique, so nothing beyond
+ * the message itself is stored, and a reveal goes through the same attempt
+ * counter and key commitment as one that sends the key.
+ *
+ * <p>Each derivation is tens of milliseconds of CPU, so they run on a pool
+ * of their own: {@code app.passphrase.kdf-threads} threads (0 = half the
+ * cores) behind a queue of {@code app.passphrase.kdf-queue-capacity}.
+ * Servlet request threads only wait on the result, reactive event loops
+ * not even that, and a derivation that finds the queue full fails at once
+ * with {@link KeyDerivationBusyException} (HTTP 503) instead of taking
+ * cores from requests that send their key.
+ */
+@Service
+public class PassphraseKeyDerivation implements DisposableBean {
+
+    private static final byte[] SALT_PREFIX = "secret-message passphrase v1:".getBytes(StandardCharsets.US_ASCII);
+
+    private final CryptoUtil cryptoUtil;
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+    private final Timer queueWait;
+    private final Timer derivation;
+
+    public PassphraseKeyDerivation(CryptoUtil cryptoUtil, MeterRegistry meterRegistry,
+                                   @Value("${app.passphrase.kdf-threads:0}") int threads,
+                                   @Value("${app.passphrase.kdf-queue-capacity:64}") int queueCapacity) {
+        this.cryptoUtil = cryptoUtil;
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "passphrase-kdf-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("passphrase.kdf.queued", executor, pool -> pool.getQueue().size())
+                .description("Passphrase derivations waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("passphrase.kdf.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Passphrase derivations running")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("passphrase.kdf.rejected")
+                .description("Passphrase requests refused because the derivation queue was full")
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("passphrase.kdf.wait")
+                .description("Time a derivation spent queued")
+                .register(meterRegistry);
+        this.derivation = Timer.builder("passphrase.kdf.duration")
+                .description("Time a derivation spent running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Derives the key of {@code messageId} from {@code passphrase} on the
+     * pool. The future fails with {@link KeyDerivationBusyException} when
+     * the queue is full. Whoever completes it owns the key and must wipe it.
+     */
+    public CompletableFuture<byte[]> deriveAsync(String passphrase, String messageId) {
+        CompletableFuture<byte[]> key = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long startedAt = System.nanoTime();
+                queueWait.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    byte[] derived = deriveNow(passphrase, messageId);
+                    derivation.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                    key.complete(derived);
+                } catch (Exception e) {
+                    key.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            key.completeExceptionally(new KeyDerivationBusyException());
+        }
+        return key;
+    }
+
+    /**
+     * {@link #deriveAsync}, waited for. The calling thread parks while the
+     * pool does the work; at most threads + queue capacity callers ever
+     * wait at once, the rest are refused straight away.
+     */
+    public byte[] derive(String passphrase, String messageId) {
+        try {
+            return deriveAsync(passphrase, messageId).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Key derivation failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private byte[] deriveNow(String passphrase, String messageId) throws Exception {
+        byte[] id = messageId.getBytes(StandardCharsets.UTF_8);
+        byte[] salt = Arrays.copyOf(SALT_PREFIX, SALT_PREFIX.length + id.length);
+        System.arraycopy(id, 0, salt, SALT_PREFIX.length, id.length);
+        char[] password = passphrase.toCharArray();
+        try {
+            return cryptoUtil.deriveKeyBytesFromPassword(password, salt);
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+    }
+}
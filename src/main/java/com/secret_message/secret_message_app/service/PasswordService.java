@@ -0,0 +1,90 @@
+package com.secret_message.secret_message_app.service;
+
+import com.secret_message.secret_message_app.dto.GeneratePasswordsRequest;
+import com.secret_message.secret_message_app.dto.GeneratedPassword;
+import com.secret_message.secret_message_app.model.SecretMessageIdentifier;
+import com.secret_message.secret_message_app.utils.PasswordGenerator;
+import com.secret_message.secret_message_app.utils.PasswordGenerator.CharacterClass;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Generates batches of passwords for provisioning, optionally storing each
+ * one as a secret message in the same step. Ownership follows the create
+ * paths: the returned passwords (and keys) belong to the caller, whose
+ * response serializer wipes them; on failure they are wiped here. A stored
+ * password is encrypted from a {@code String}, like every message, so only
+ * the unstored form stays out of the heap's strings entirely.
+ */
+@Service
+@RequiredArgsConstructor
+public class PasswordService {
+
+    private final PasswordGenerator passwordGenerator;
+    private final SecretMessageService secretMessageService;
+
+    /**
+     * Request limits have been checked by the transport: classes not empty,
+     * length within bounds, count within {@code app.passwords.max-count}
+     * and, with {@code store}, within {@code app.batch.max-messages}.
+     */
+    public List<GeneratedPassword> generatePasswords(GeneratePasswordsRequest request) {
+        List<char[]> passwords = generate(request);
+        if (!request.store()) {
+            return passwords.stream().map(GeneratedPassword::new).toList();
+        }
+        try {
+            return stored(passwords, secretMessageService.createSecretMessages(texts(passwords)));
+        } catch (RuntimeException e) {
+            passwords.forEach(password -> Arrays.fill(password, '\0'));
+            throw e;
+        }
+    }
+
+    /**
+     * Non-blocking {@link #generatePasswords} for the reactive server mode.
+     */
+    public CompletableFuture<List<GeneratedPassword>> generatePasswordsAsync(GeneratePasswordsRequest request) {
+        List<char[]> passwords = generate(request);
+        if (!request.store()) {
+            return CompletableFuture.completedFuture(passwords.stream().map(GeneratedPassword::new).toList());
+        }
+        return secretMessageService.createSecretMessagesAsync(texts(passwords))
+                .handle((identifiers, failure) -> {
+                    if (failure != null) {
+                        passwords.forEach(password -> Arrays.fill(password, '\0'));
+                        throw failure instanceof CompletionException e ? e : new CompletionException(failure);
+                    }
+                    return stored(passwords, identifiers);
+                });
+    }
+
+    private List<char[]> generate(GeneratePasswordsRequest request) {
+        EnumSet<CharacterClass> classes = request.characterClasses();
+        List<char[]> passwords = new ArrayList<>(request.count());
+        for (int i = 0; i < request.count(); i++) {
+            passwords.add(passwordGenerator.generate(request.length(), classes));
+        }
+        return passwords;
+    }
+
+    private static List<String> texts(List<char[]> passwords) {
+        return passwords.stream().map(String::new).toList();
+    }
+
+    private static List<GeneratedPassword> stored(List<char[]> passwords, List<SecretMessageIdentifier> identifiers) {
+        List<GeneratedPassword> generated = new ArrayList<>(passwords.size());
+        for (int i = 0; i < passwords.size(); i++) {
+            SecretMessageIdentifier identifier = identifiers.get(i);
+            generated.add(new GeneratedPassword(passwords.get(i), identifier.getMessageId(), identifier.getAeskey()));
+        }
+        return generated;
+    }
+}
@@ -1,20 +1,41 @@
 package com.secret_message.secret_message_app.service;
 
-import com.secret_message.secret_message_app.cache.RedisCacheManager;
+import com.secret_message.secret_message_app.cache.MessageStore;
+import com.secret_message.secret_message_app.cache.TakenMessage;
+import com.secret_message.secret_message_app.exception.IdempotencyConflictException;
 import com.secret_message.secret_message_app.exception.MessageNotAvailableException;
+import com.secret_message.secret_message_app.exception.PayloadTooLargeException;
+import com.secret_message.secret_message_app.idempotency.IdempotencyRecord;
+import com.secret_message.secret_message_app.idempotency.IdempotencyService;
+import com.secret_message.secret_message_app.idempotency.IdempotentCreateResult;
 import com.secret_message.secret_message_app.model.SecretMessageIdentifier;
+import com.secret_message.secret_message_app.utils.ChunkedDecryption;
+import com.secret_message.secret_message_app.utils.ChunkedEncryption;
 import com.secret_message.secret_message_app.utils.CryptoUtil;
+import com.secret_message.secret_message_app.utils.StreamingDecryption;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.UUID;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @RequiredArgsConstructor
@@ -22,34 +43,534 @@ public class SecretMessageService {
 
     public static final String MAX_ATTEMPTS_MESSAGE = "Maximum attempts reached, the message has been deleted.";
 
-    private final RedisCacheManager redisCacheManager;
+    private static final int CIPHER_BLOCK_BYTES = 16;
+
+    /** Chunk size for uploaded files when {@code app.storage.chunk-size} is 0. */
+    private static final int DEFAULT_FILE_CHUNK_BYTES = 262_144;
+
+    private final MessageStore messageStore;
     private final CryptoUtil cryptoUtil;
+    private final IdempotencyService idempotencyService;
+    private final MeterRegistry meterRegistry;
+    private final PassphraseKeyDerivation passphraseKeyDerivation;
+    private final CryptoExecutor cryptoExecutor;
+
+    /**
+     * {@code atomic} (default) claims the message with one script call and
+     * puts it back on a wrong key; {@code classic} reads, decrypts, then
+     * deletes with separate commands.
+     */
+    @Value("${app.reveal.mode:atomic}")
+    private String revealMode;
+
+    /**
+     * Write ciphertext as raw bytes (default). Set to false during a rolling
+     * upgrade so replicas that only read Base64 can still reveal new
+     * messages; reads accept both formats either way.
+     */
+    @Value("${app.storage.binary-payloads:true}")
+    private boolean binaryPayloads;
+
+    /**
+     * {@code gcm} (default) seals single binary payloads with AES-GCM;
+     * {@code cbc} writes the CBC formats, for a rolling upgrade from
+     * replicas that cannot read GCM yet. Reads accept both either way.
+     * Chunked messages and files are always CBC.
+     */
+    @Value("${app.storage.cipher:gcm}")
+    private String payloadCipher;
+
+    /**
+     * Store a key commitment in front of every binary payload and manifest
+     * (default), so a wrong key is rejected before any decrypt. Set to false
+     * during a rolling upgrade from replicas that cannot read it yet; reads
+     * accept payloads with and without one either way.
+     */
+    @Value("${app.storage.key-commitment:true}")
+    private boolean keyCommitment;
+
+    /**
+     * Messages whose UTF-8 form is longer than this are encrypted as a
+     * stream and stored in chunks of this size (see
+     * {@link #storeChunks}); 0 stores every message as one payload.
+     * Only used with binary payloads, since replicas that still need
+     * Base64 cannot read chunked messages either.
+     */
+    @Value("${app.storage.chunk-size:262144}")
+    private int chunkSize;
+
+    /**
+     * Single AES-GCM payloads whose UTF-8 form is longer than this are
+     * sealed in segments of this size, encrypted and decrypted in parallel
+     * (see {@link CryptoUtil#encryptSegmentedMessageToBytes}); shorter
+     * ones stay one single-threaded pass. 0 never segments. Messages over
+     * {@link #chunkSize} are chunked instead, and compressed ones are not
+     * segmented.
+     */
+    @Value("${app.storage.segment-size:65536}")
+    private int segmentSize;
+
+    /**
+     * Deflate messages before encrypting them (off by default; see the
+     * side-channel note in docs/HTTP_API_DESIGN.md before enabling). Only
+     * single binary payloads of at least {@link #compressionMinBytes} UTF-8
+     * bytes are compressed; chunked messages are not.
+     */
+    @Value("${app.storage.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    @Value("${app.storage.compression.min-bytes:1024}")
+    private long compressionMinBytes;
 
     /**
-     * Creates an encrypted message and returns its identifier. Key-buffer
+     * Creates an encrypted message and returns its identifier. With sharding
+     * enabled the id names the Redis shard the message lives on. Key-buffer
      * ownership (docs/MEMORY_HARDENING.md): on success the returned identifier
      * owns the key bytes and the transport boundary that writes them to the
      * client must wipe them; on failure this method wipes them itself.
      */
     public SecretMessageIdentifier createSecretMessage(String secretMessage) {
-        String messageId = UUID.randomUUID().toString();
+        return create(messageStore.newMessageId(), secretMessage, cryptoUtil.generateRandomAESKeyBytes());
+    }
+
+    /**
+     * Creates a message whose key is derived from {@code passphrase} (see
+     * {@link PassphraseKeyDerivation}) and returns only its id: the key is
+     * never handed out, the passphrase reveals it. The derivation runs on
+     * its own pool while this thread waits; a full queue throws
+     * KeyDerivationBusyException before anything is stored.
+     */
+    public String createPassphraseMessage(String secretMessage, String passphrase) {
+        String messageId = messageStore.newMessageId();
+        create(messageId, secretMessage, passphraseKeyDerivation.derive(passphrase, messageId)).wipe();
+        return messageId;
+    }
+
+    private SecretMessageIdentifier create(String messageId, String secretMessage, byte[] keyBytes) {
+        boolean chunked = chunked(secretMessage);
+        try {
+            byte[] payload = chunked
+                    ? storeChunks(messageId, secretMessage, keyBytes)
+                    : encryptForStorage(secretMessage, keyBytes);
+            messageStore.storeEncryptedPayload(messageId, payload);
+            return new SecretMessageIdentifier(messageId, keyBytes);
+        } catch (Exception e) {
+            Arrays.fill(keyBytes, (byte) 0);
+            if (chunked) {
+                discardChunks(messageId);
+            }
+            throw new RuntimeException("Encryption failed", e);
+        }
+    }
+
+    /**
+     * Idempotent variant of {@link #createSecretMessage(String)}: the message
+     * and its idempotency record are written in one atomic store call. If the
+     * key was already used with the same body (a retry, or a concurrent
+     * request that got there first) no message is written, the fresh key is
+     * wiped and the existing record is returned. Same key-buffer ownership
+     * rules as the non-idempotent path.
+     */
+    public IdempotentCreateResult createSecretMessage(String secretMessage, String idempotencyKey, String bodyHash) {
+        // Same shard as the idempotency record, so one script writes both.
+        String messageId = messageStore.newMessageId(idempotencyKey);
+        byte[] keyBytes = cryptoUtil.generateRandomAESKeyBytes();
+        boolean chunked = chunked(secretMessage);
+        try {
+            byte[] payload = chunked
+                    ? storeChunks(messageId, secretMessage, keyBytes)
+                    : encryptForStorage(secretMessage, keyBytes);
+            Optional<IdempotencyRecord> existing = idempotencyService.storeWithMessage(
+                    idempotencyKey, bodyHash, messageId, keyBytes, payload);
+            if (existing.isPresent()) {
+                Arrays.fill(keyBytes, (byte) 0);
+                if (chunked) {
+                    discardChunks(messageId);
+                }
+                return IdempotentCreateResult.replay(existing.get());
+            }
+            return IdempotentCreateResult.created(new SecretMessageIdentifier(messageId, keyBytes));
+        } catch (IdempotencyConflictException e) {
+            Arrays.fill(keyBytes, (byte) 0);
+            if (chunked) {
+                discardChunks(messageId);
+            }
+            throw e;
+        } catch (Exception e) {
+            Arrays.fill(keyBytes, (byte) 0);
+            if (chunked) {
+                discardChunks(messageId);
+            }
+            throw new RuntimeException("Encryption failed", e);
+        }
+    }
+
+    /**
+     * Non-blocking {@link #createSecretMessage(String)} for the reactive
+     * server mode. Same key-buffer ownership rules: the identifier owns the
+     * key once the future completes normally.
+     */
+    public CompletableFuture<SecretMessageIdentifier> createSecretMessageAsync(String secretMessage) {
+        return createAsync(messageStore.newMessageId(), secretMessage, cryptoUtil.generateRandomAESKeyBytes());
+    }
+
+    /**
+     * Non-blocking {@link #createPassphraseMessage}: no thread waits on the
+     * derivation, and the store calls are issued once it completes.
+     */
+    public CompletableFuture<String> createPassphraseMessageAsync(String secretMessage, String passphrase) {
+        String messageId = messageStore.newMessageId();
+        return passphraseKeyDerivation.deriveAsync(passphrase, messageId)
+                .thenCompose(keyBytes -> createAsync(messageId, secretMessage, keyBytes))
+                .thenApply(identifier -> {
+                    identifier.wipe();
+                    return messageId;
+                });
+    }
+
+    private CompletableFuture<SecretMessageIdentifier> createAsync(String messageId, String secretMessage,
+                                                                   byte[] keyBytes) {
+        boolean chunked = chunked(secretMessage);
+        CompletableFuture<Void> stored;
+        try {
+            stored = encryptForStorageAsync(messageId, secretMessage, keyBytes)
+                    .thenCompose(payload -> messageStore.storeEncryptedPayloadAsync(messageId, payload));
+        } catch (Exception e) {
+            Arrays.fill(keyBytes, (byte) 0);
+            return CompletableFuture.failedFuture(new RuntimeException("Encryption failed", e));
+        }
+        return stored.handle((ignored, failure) -> {
+            if (failure != null) {
+                Arrays.fill(keyBytes, (byte) 0);
+                if (chunked) {
+                    discardChunks(messageId);
+                }
+                throw new RuntimeException("Encryption failed", unwrap(failure));
+            }
+            return new SecretMessageIdentifier(messageId, keyBytes);
+        });
+    }
+
+    /**
+     * Non-blocking {@link #createSecretMessage(String, String, String)}. A
+     * conflicting body fails the future with IdempotencyConflictException.
+     */
+    public CompletableFuture<IdempotentCreateResult> createSecretMessageAsync(String secretMessage,
+                                                                            String idempotencyKey,
+                                                                            String bodyHash) {
+        String messageId = messageStore.newMessageId(idempotencyKey);
+        byte[] keyBytes = cryptoUtil.generateRandomAESKeyBytes();
+        boolean chunked = chunked(secretMessage);
+        CompletableFuture<Optional<IdempotencyRecord>> stored;
+        try {
+            // The record (and the MIEK-encrypted key in it) is built once the
+            // chunks are written, so the key must not be wiped before then.
+            stored = encryptForStorageAsync(messageId, secretMessage, keyBytes)
+                    .thenCompose(payload -> idempotencyService.storeWithMessageAsync(
+                            idempotencyKey, bodyHash, messageId, keyBytes, payload));
+        } catch (Exception e) {
+            Arrays.fill(keyBytes, (byte) 0);
+            return CompletableFuture.failedFuture(new RuntimeException("Encryption failed", e));
+        }
+        return stored.handle((existing, failure) -> {
+            if (failure != null || existing.isPresent()) {
+                Arrays.fill(keyBytes, (byte) 0);
+                if (chunked) {
+                    discardChunks(messageId);
+                }
+            }
+            if (failure != null) {
+                if (unwrap(failure) instanceof IdempotencyConflictException conflict) {
+                    throw conflict;
+                }
+                throw new RuntimeException("Encryption failed", unwrap(failure));
+            }
+            if (existing.isPresent()) {
+                return IdempotentCreateResult.replay(existing.get());
+            }
+            return IdempotentCreateResult.created(new SecretMessageIdentifier(messageId, keyBytes));
+        });
+    }
+
+    /**
+     * Batch form of {@link #createSecretMessage(String)}: each message gets
+     * its own id and key, the messages are encrypted in parallel on the
+     * {@link CryptoExecutor} while this thread waits, and every payload is
+     * written with one
+     * {@link MessageStore#storeEncryptedPayloads} call. Identifiers come
+     * back in request order and own their keys as in the single create. All
+     * or nothing: on failure every key is wiped and what was already written
+     * is deleted.
+     */
+    public List<SecretMessageIdentifier> createSecretMessages(List<String> secretMessages) {
+        List<String> messageIds = newMessageIds(secretMessages.size());
+        List<byte[]> keys = newKeys(secretMessages.size());
+        try {
+            List<byte[]> payloads = encryptBatchAsync(messageIds, secretMessages, keys).join();
+            messageStore.storeEncryptedPayloads(messageIds, payloads);
+            return identifiers(messageIds, keys);
+        } catch (Exception e) {
+            discardBatch(messageIds, secretMessages, keys);
+            throw new RuntimeException("Encryption failed", unwrap(e));
+        }
+    }
+
+    /**
+     * Non-blocking {@link #createSecretMessages}. The encryption runs on the
+     * {@link CryptoExecutor} rather than the calling event-loop thread; a
+     * message large enough to be chunked issues its appends from there
+     * without waiting on them.
+     */
+    public CompletableFuture<List<SecretMessageIdentifier>> createSecretMessagesAsync(List<String> secretMessages) {
+        List<String> messageIds = newMessageIds(secretMessages.size());
+        List<byte[]> keys = newKeys(secretMessages.size());
+        return encryptBatchAsync(messageIds, secretMessages, keys)
+                .thenCompose(payloads -> messageStore.storeEncryptedPayloadsAsync(messageIds, payloads))
+                .handle((ignored, failure) -> {
+                    if (failure != null) {
+                        discardBatch(messageIds, secretMessages, keys);
+                        throw new RuntimeException("Encryption failed", unwrap(failure));
+                    }
+                    return identifiers(messageIds, keys);
+                });
+    }
+
+    /**
+     * Stores an uploaded file as it is read: each {@code app.storage.chunk-size}
+     * bytes of {@code content} are encrypted and appended to the store before
+     * the next are read, so the upload is never held whole, as plaintext or
+     * ciphertext. The manifest is written last and marks the message as a
+     * file, which only {@link #openFileReveal} reveals. A file longer than
+     * {@code maxBytes} fails with PayloadTooLargeException once the chunk
+     * that crosses the limit has been read. Same key-buffer ownership rules
+     * as {@link #createSecretMessage(String)}.
+     */
+    public SecretMessageIdentifier createSecretFile(InputStream content, long maxBytes) {
+        String messageId = messageStore.newMessageId();
         byte[] keyBytes = cryptoUtil.generateRandomAESKeyBytes();
         try {
-            String encryptedMessage = cryptoUtil.encryptMessage(secretMessage, keyBytes);
-            redisCacheManager.storeEncryptedMessage(messageId, encryptedMessage);
+            ChunkedEncryption encryption = cryptoUtil.encryptStreamInChunks(
+                    content, keyBytes, chunkSize > 0 ? chunkSize : DEFAULT_FILE_CHUNK_BYTES);
+            for (byte[] chunk = encryption.nextChunk(); chunk != null; chunk = encryption.nextChunk()) {
+                if (encryption.plaintextLength() > maxBytes) {
+                    throw new PayloadTooLargeException(maxBytes);
+                }
+                messageStore.appendChunk(messageId, chunk);
+            }
+            messageStore.storeEncryptedPayload(messageId, committed(encryption.manifest(), keyBytes));
             return new SecretMessageIdentifier(messageId, keyBytes);
+        } catch (PayloadTooLargeException e) {
+            Arrays.fill(keyBytes, (byte) 0);
+            discardChunks(messageId);
+            throw e;
         } catch (Exception e) {
             Arrays.fill(keyBytes, (byte) 0);
+            discardChunks(messageId);
             throw new RuntimeException("Encryption failed", e);
         }
     }
 
+    private List<String> newMessageIds(int count) {
+        List<String> messageIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messageIds.add(messageStore.newMessageId());
+        }
+        return messageIds;
+    }
+
+    private List<byte[]> newKeys(int count) {
+        List<byte[]> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(cryptoUtil.generateRandomAESKeyBytes());
+        }
+        return keys;
+    }
+
+    /**
+     * Payloads in request order, one {@link #encryptForStorageAsync} per
+     * message: only the cipher work occupies a crypto worker, and a chunked
+     * message's appends go through the non-blocking store calls. Completes
+     * once every message has, so a failure is reported only when no append
+     * is still in flight for the cleanup to miss.
+     */
+    private CompletableFuture<List<byte[]>> encryptBatchAsync(List<String> messageIds, List<String> secretMessages,
+                                                              List<byte[]> keys) {
+        List<CompletableFuture<byte[]>> payloads = new ArrayList<>(secretMessages.size());
+        for (int i = 0; i < secretMessages.size(); i++) {
+            payloads.add(encryptForStorageAsync(messageIds.get(i), secretMessages.get(i), keys.get(i)));
+        }
+        return CompletableFuture.allOf(payloads.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> payloads.stream().map(CompletableFuture::join).toList());
+    }
+
+    private static List<SecretMessageIdentifier> identifiers(List<String> messageIds, List<byte[]> keys) {
+        List<SecretMessageIdentifier> identifiers = new ArrayList<>(messageIds.size());
+        for (int i = 0; i < messageIds.size(); i++) {
+            identifiers.add(new SecretMessageIdentifier(messageIds.get(i), keys.get(i)));
+        }
+        return identifiers;
+    }
+
+    /**
+     * Best-effort: a message this misses expires with the TTL, unreadable
+     * since its key is gone.
+     */
+    private void discardBatch(List<String> messageIds, List<String> secretMessages, List<byte[]> keys) {
+        for (int i = 0; i < messageIds.size(); i++) {
+            Arrays.fill(keys.get(i), (byte) 0);
+            try {
+                messageStore.deleteIfPresentAsync(messageIds.get(i)).exceptionally(failure -> null);
+            } catch (RuntimeException e) {
+                // Never mask the failure being reported.
+            }
+            if (chunked(secretMessages.get(i))) {
+                discardChunks(messageIds.get(i));
+            }
+        }
+    }
+
+    /**
+     * Binary payload by default, in parallel segments past segment-size,
+     * behind a key commitment unless that is switched off; legacy Base64
+     * text (as its ASCII bytes) when binary payloads are switched off.
+     */
+    private byte[] encryptForStorage(String secretMessage, byte[] keyBytes) throws Exception {
+        if (binaryPayloads && compressionEnabled) {
+            long plaintextLength = CryptoUtil.utf8Length(secretMessage);
+            if (plaintextLength >= compressionMinBytes) {
+                byte[] payload = cryptoUtil.encryptCompressedMessageToBytes(secretMessage, keyBytes, authenticated());
+                recordCompression(plaintextLength, payload.length);
+                return committed(payload, keyBytes);
+            }
+        }
+        if (binaryPayloads && segmented(secretMessage)) {
+            return committed(cryptoUtil.encryptSegmentedMessageToBytes(secretMessage, keyBytes, segmentSize),
+                    keyBytes);
+        }
+        if (binaryPayloads) {
+            return committed(cryptoUtil.encryptMessageToBytes(secretMessage, keyBytes, authenticated()), keyBytes);
+        }
+        return cryptoUtil.encryptMessage(secretMessage, keyBytes).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Stored size without compression over stored size with it (1.0 for a
+     * message that did not shrink and was stored uncompressed), and the
+     * bytes that saved.
+     */
+    private void recordCompression(long plaintextLength, int storedLength) {
+        long uncompressedLength = authenticated()
+                ? CryptoUtil.authenticatedPayloadLength(plaintextLength)
+                : CryptoUtil.binaryPayloadLength(plaintextLength);
+        DistributionSummary.builder("storage.compression.ratio")
+                .register(meterRegistry)
+                .record((double) uncompressedLength / storedLength);
+        Counter.builder("storage.compression.bytes.saved")
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .increment(Math.max(0, uncompressedLength - storedLength));
+    }
+
+    /**
+     * {@code payload} behind a commitment to {@code keyBytes}, so a reveal
+     * with the wrong key is turned away before any ciphertext is decrypted
+     * or any chunk read.
+     */
+    private byte[] committed(byte[] payload, byte[] keyBytes) throws GeneralSecurityException {
+        return keyCommitment ? cryptoUtil.withKeyCommitment(payload, keyBytes) : payload;
+    }
+
+    private boolean authenticated() {
+        return !"cbc".equalsIgnoreCase(payloadCipher);
+    }
+
+    private boolean segmented(String secretMessage) {
+        return authenticated() && segmentSize > 0 && CryptoUtil.utf8Length(secretMessage) > segmentSize;
+    }
+
+    private boolean chunked(String secretMessage) {
+        return binaryPayloads && chunkSize > 0 && CryptoUtil.utf8Length(secretMessage) > chunkSize;
+    }
+
+    /**
+     * Encrypts a large message as a stream and appends each ciphertext chunk
+     * to the store before the next is produced, so the request never holds
+     * more than one chunk of ciphertext or plaintext bytes. Returns the
+     * manifest, to be stored in place of the payload; until then the chunks
+     * are unreachable. On failure the caller discards them.
+     */
+    private byte[] storeChunks(String messageId, String secretMessage, byte[] keyBytes) throws Exception {
+        ChunkedEncryption encryption = cryptoUtil.encryptMessageInChunks(secretMessage, keyBytes, chunkSize);
+        for (byte[] chunk = encryption.nextChunk(); chunk != null; chunk = encryption.nextChunk()) {
+            messageStore.appendChunk(messageId, chunk);
+        }
+        return committed(encryption.manifest(), keyBytes);
+    }
+
+    /**
+     * Payload to store for the reactive mode, encrypted on the
+     * {@link CryptoExecutor} rather than the calling event loop (a segmented
+     * payload forks its segments into that pool too), or for a chunked
+     * message the manifest once every chunk has been encrypted there and
+     * appended, one store call after another.
+     */
+    private CompletableFuture<byte[]> encryptForStorageAsync(String messageId, String secretMessage,
+                                                             byte[] keyBytes) {
+        if (!chunked(secretMessage)) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return encryptForStorage(secretMessage, keyBytes);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, cryptoExecutor);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return cryptoUtil.encryptMessageInChunks(secretMessage, keyBytes, chunkSize);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, cryptoExecutor)
+                .thenComposeAsync(encryption -> appendChunksAsync(messageId, encryption), cryptoExecutor)
+                .thenApply(manifest -> {
+                    try {
+                        return committed(manifest, keyBytes);
+                    } catch (GeneralSecurityException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    /**
+     * Encrypts the next chunk on the calling crypto worker and appends it;
+     * the append's reply, which arrives on a Lettuce I/O thread, hops back
+     * to the {@link CryptoExecutor} before the chunk after it is encrypted.
+     */
+    private CompletableFuture<byte[]> appendChunksAsync(String messageId, ChunkedEncryption encryption) {
+        byte[] chunk;
+        try {
+            chunk = encryption.nextChunk();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (chunk == null) {
+            return CompletableFuture.completedFuture(encryption.manifest());
+        }
+        return messageStore.appendChunkAsync(messageId, chunk)
+                .thenComposeAsync(ignored -> appendChunksAsync(messageId, encryption), cryptoExecutor);
+    }
+
     /**
-     * Deletes a newly-created message that lost an idempotent create race.
+     * Best-effort cleanup of chunks no manifest points to any more; chunks
+     * left behind expire with the message TTL anyway.
      */
-    public void discardSecretMessage(String messageId) {
-        redisCacheManager.deleteEncryptedMessage(messageId);
-        redisCacheManager.resetAttempt(messageId);
+    private void discardChunks(String messageId) {
+        try {
+            messageStore.deleteChunksAsync(messageId).exceptionally(failure -> null);
+        } catch (RuntimeException e) {
+            // Never mask the failure being reported.
+        }
     }
 
     /**
@@ -63,24 +584,138 @@ public class SecretMessageService {
      * (and must wipe) the key buffer.
      */
     public String getEncryptedMessageById(String messageId, byte[] keyBytes) {
+        if ("classic".equalsIgnoreCase(revealMode)) {
+            return revealClassic(messageId, keyBytes);
+        }
+        return revealAtomic(messageId, keyBytes);
+    }
+
+    /**
+     * Non-blocking {@link #getEncryptedMessageById} for the reactive server
+     * mode, honouring {@code app.reveal.mode} the same way. Failures complete
+     * the future with the same {@link MessageNotAvailableException} reasons.
+     * The caller owns {@code keyBytes} and must not wipe it before the future
+     * completes.
+     */
+    public CompletableFuture<String> getEncryptedMessageByIdAsync(String messageId, byte[] keyBytes) {
+        if ("classic".equalsIgnoreCase(revealMode)) {
+            return revealClassicAsync(messageId, keyBytes);
+        }
+        return revealAtomicAsync(messageId, keyBytes);
+    }
+
+    /**
+     * Success path is a single store call (one Redis round trip): the take
+     * returns the payload and removes both the message and its attempt
+     * counter, so the one-shot guarantee holds without a separate delete. A
+     * wrong key costs one more call to restore the payload with the attempt
+     * recorded.
+     * While a wrong-key attempt holds the claim, concurrent reveals see the
+     * message as absent; they are not counted and test no key.
+     *
+     * <p>For a chunked message the take claims its manifest, and with it the
+     * whole chunk set; the chunks are then read and decrypted one at a time
+     * and dropped once the message is revealed or its attempts run out.
+     */
+    private String revealAtomic(String messageId, byte[] keyBytes) {
+        TakenMessage taken = messageStore.takeMessage(messageId);
+        if (taken == null) {
+            throw new MessageNotAvailableException(MessageNotAvailableException.Reason.NOT_FOUND);
+        }
+        if (CryptoUtil.isFileManifest(taken.payload())) {
+            putBack(messageId, taken);
+            throw new MessageNotAvailableException(MessageNotAvailableException.Reason.NOT_FOUND);
+        }
+        boolean chunked = CryptoUtil.isChunkedManifest(taken.payload());
+        String plaintext;
         try {
-            String encryptedMessage = redisCacheManager.getEncryptedMessageById(messageId);
-            if (encryptedMessage == null) {
+            plaintext = chunked
+                    ? decryptChunksOrNull(messageId, taken.payload(), keyBytes)
+                    : decryptOrNull(taken.payload(), keyBytes);
+        } catch (MessageNotAvailableException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            putBack(messageId, taken);
+            throw e;
+        }
+        if (plaintext == null) {
+            boolean exhausted = messageStore.restoreAfterFailedAttempt(messageId, taken);
+            if (exhausted && chunked) {
+                discardChunks(messageId);
+            }
+            throw failedAttempt(exhausted);
+        }
+        if (chunked) {
+            discardChunks(messageId);
+        }
+        return plaintext;
+    }
+
+    private CompletableFuture<String> revealAtomicAsync(String messageId, byte[] keyBytes) {
+        return messageStore.takeMessageAsync(messageId).thenCompose(taken -> {
+            if (taken == null) {
+                throw new MessageNotAvailableException(MessageNotAvailableException.Reason.NOT_FOUND);
+            }
+            if (CryptoUtil.isFileManifest(taken.payload())) {
+                return messageStore.restoreAfterFailedAttemptAsync(messageId, uncounted(taken))
+                        .<String>handle((exhausted, ignored) -> {
+                            throw new MessageNotAvailableException(MessageNotAvailableException.Reason.NOT_FOUND);
+                        });
+            }
+            boolean chunked = CryptoUtil.isChunkedManifest(taken.payload());
+            // Any failure other than a wrong key must put the claim back, or
+            // the message is lost.
+            CompletableFuture<String> decrypted = (chunked
+                    ? decryptChunksOrNullAsync(messageId, taken.payload(), keyBytes)
+                    : CompletableFuture.supplyAsync(() -> decryptOrNull(taken.payload(), keyBytes), cryptoExecutor))
+                    .exceptionallyCompose(failure -> putBackAsync(messageId, taken, failure));
+            return decrypted.thenCompose(plaintext -> {
+                if (plaintext == null) {
+                    return messageStore.restoreAfterFailedAttemptAsync(messageId, taken)
+                            .thenApply(exhausted -> {
+                                if (exhausted && chunked) {
+                                    discardChunks(messageId);
+                                }
+                                throw failedAttempt(exhausted);
+                            });
+                }
+                if (chunked) {
+                    discardChunks(messageId);
+                }
+                return CompletableFuture.completedFuture(plaintext);
+            });
+        });
+    }
+
+    private String revealClassic(String messageId, byte[] keyBytes) {
+        boolean chunked = false;
+        try {
+            byte[] storedPayload = messageStore.getEncryptedPayload(messageId);
+            if (storedPayload == null || CryptoUtil.isFileManifest(storedPayload)) {
                 throw new MessageNotAvailableException(MessageNotAvailableException.Reason.NOT_FOUND);
             }
             if (keyBytes == null) {
                 throw new InvalidKeyException("undecodable key");
             }
-            String decryptedMessage = cryptoUtil.decryptMessage(encryptedMessage, keyBytes);
-            if (!redisCacheManager.deleteIfPresent(messageId)) {
+            chunked = CryptoUtil.isChunkedManifest(storedPayload);
+            String decryptedMessage = chunked
+                    ? decryptChunks(messageId, storedPayload, keyBytes)
+                    : cryptoUtil.decryptMessageFromBytes(storedPayload, keyBytes);
+            if (!messageStore.deleteIfPresent(messageId)) {
                 throw new MessageNotAvailableException(MessageNotAvailableException.Reason.RACE_LOST);
             }
-            redisCacheManager.resetAttempt(messageId);
+            messageStore.resetAttempt(messageId);
+            if (chunked) {
+                discardChunks(messageId);
+            }
             return decryptedMessage;
         } catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException |
                  InvalidAlgorithmParameterException | IllegalBlockSizeException |
                  BadPaddingException | IllegalArgumentException e) {
-            if (redisCacheManager.incrementAndCheckAttempt(messageId)) {
+            if (messageStore.incrementAndCheckAttempt(messageId)) {
+                if (chunked) {
+                    discardChunks(messageId);
+                }
                 throw new MessageNotAvailableException(MessageNotAvailableException.Reason.EXHAUSTED);
             }
             throw new MessageNotAvailableException(MessageNotAvailableException.Reason.WRONG_KEY);
@@ -90,4 +725,345 @@ public class SecretMessageService {
             throw new RuntimeException("Decryption failed", e);
         }
     }
+
+    private CompletableFuture<String> revealClassicAsync(String messageId, byte[] keyBytes) {
+        return messageStore.getEncryptedPayloadAsync(messageId).thenCompose(storedPayload -> {
+            if (storedPayload == null || CryptoUtil.isFileManifest(storedPayload)) {
+                throw new MessageNotAvailableException(MessageNotAvailableException.Reason.NOT_FOUND);
+            }
+            boolean chunked = CryptoUtil.isChunkedManifest(storedPayload);
+            CompletableFuture<String> decrypted = chunked
+                    ? decryptChunksOrNullAsync(messageId, storedPayload, keyBytes)
+                    : CompletableFuture.supplyAsync(() -> decryptOrNull(storedPayload, keyBytes), cryptoExecutor);
+            return decrypted.thenCompose(plaintext -> {
+                if (plaintext == null) {
+                    return messageStore.incrementAndCheckAttemptAsync(messageId)
+                            .thenApply(exhausted -> {
+                                if (exhausted && chunked) {
+                                    discardChunks(messageId);
+                                }
+                                throw failedAttempt(exhausted);
+                            });
+                }
+                return messageStore.deleteIfPresentAsync(messageId).thenCompose(deleted -> {
+                    if (!deleted) {
+                        throw new MessageNotAvailableException(MessageNotAvailableException.Reason.RACE_LOST);
+                    }
+                    if (chunked) {
+                        discardChunks(messageId);
+                    }
+                    return messageStore.resetAttemptAsync(messageId).thenApply(ignored -> plaintext);
+                });
+            });
+        });
+    }
+
+    /**
+     * Streaming form of {@link #getEncryptedMessageById} for the servlet
+     * mode's {@code app.reveal.stream-response}: the same claim, attempt
+     * accounting and failures, but the plaintext is written straight to the
+     * response by the returned {@link StreamingReveal} instead of being built
+     * as a {@code String}. The key is checked against the last two cipher
+     * blocks before this returns, so by the time the caller commits a 200
+     * the message is already consumed and the decrypt cannot fail on the
+     * key. The caller owns {@code keyBytes} and may wipe it as soon as this
+     * returns.
+     */
+    public StreamingReveal openReveal(String messageId, byte[] keyBytes) {
+        return openReveal(messageId, keyBytes, false);
+    }
+
+    /**
+     * {@link #openReveal} for a message created by {@link #createSecretFile}:
+     * the returned {@link StreamingReveal} writes the file's bytes. Files and
+     * text messages are not interchangeable; revealing one through the
+     * other's method is NOT_FOUND and neither counts an attempt nor consumes
+     * the message.
+     */
+    public StreamingReveal openFileReveal(String messageId, byte[] keyBytes) {
+        return openReveal(messageId, keyBytes, true);
+    }
+
+    private StreamingReveal openReveal(String messageId, byte[] keyBytes, boolean file) {
+        if ("classic".equalsIgnoreCase(revealMode)) {
+            return openRevealClassic(messageId, keyBytes, file);
+        }
+        return openRevealAtomic(messageId, keyBytes, file);
+    }
+
+    private StreamingReveal openRevealAtomic(String messageId, byte[] keyBytes, boolean file) {
+        TakenMessage taken = messageStore.takeMessage(messageId);
+        if (taken == null) {
+            throw new MessageNotAvailableException(MessageNotAvailableException.Reason.NOT_FOUND);
+        }
+        if (CryptoUtil.isFileManifest(taken.payload()) != file) {
+            putBack(messageId, taken);
+            throw new MessageNotAvailableException(MessageNotAvailableException.Reason.NOT_FOUND);
+        }
+        boolean chunked = CryptoUtil.isChunkedManifest(taken.payload());
+        StreamingReveal reveal;
+        try {
+            reveal = streamingRevealOrNull(messageId, taken.payload(), keyBytes);
+        } catch (MessageNotAvailableException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            putBack(messageId, taken);
+            throw e;
+        }
+        if (reveal == null) {
+            boolean exhausted = messageStore.restoreAfterFailedAttempt(messageId, taken);
+            if (exhausted && chunked) {
+                discardChunks(messageId);
+            }
+            throw failedAttempt(exhausted);
+        }
+        return reveal;
+    }
+
+    private StreamingReveal openRevealClassic(String messageId, byte[] keyBytes, boolean file) {
+        byte[] storedPayload = messageStore.getEncryptedPayload(messageId);
+        if (storedPayload == null || CryptoUtil.isFileManifest(storedPayload) != file) {
+            throw new MessageNotAvailableException(MessageNotAvailableException.Reason.NOT_FOUND);
+        }
+        boolean chunked = CryptoUtil.isChunkedManifest(storedPayload);
+        StreamingReveal reveal = streamingRevealOrNull(messageId, storedPayload, keyBytes);
+        if (reveal == null) {
+            boolean exhausted = messageStore.incrementAndCheckAttempt(messageId);
+            if (exhausted && chunked) {
+                discardChunks(messageId);
+            }
+            throw failedAttempt(exhausted);
+        }
+        if (!messageStore.deleteIfPresent(messageId)) {
+            throw new MessageNotAvailableException(MessageNotAvailableException.Reason.RACE_LOST);
+        }
+        messageStore.resetAttempt(messageId);
+        return reveal;
+    }
+
+    /**
+     * Checks the key and sets up the decrypt, or returns null when the key
+     * is wrong or undecodable. For a chunked message only the chunks that
+     * hold the last two blocks are read here; the rest are read one at a
+     * time while streaming, and the set is dropped when streaming ends.
+     */
+    private StreamingReveal streamingRevealOrNull(String messageId, byte[] payload, byte[] keyBytes) {
+        if (keyBytes == null) {
+            return null;
+        }
+        try {
+            if (CryptoUtil.isChunkedManifest(payload)) {
+                return chunkedStreamingReveal(messageId, payload, keyBytes);
+            }
+            StreamingDecryption decryption = cryptoUtil.decryptPayloadStreaming(payload, keyBytes);
+            return out -> {
+                try {
+                    decryption.writeTo(out);
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException("Decryption failed after the key check", e);
+                }
+            };
+        } catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException |
+                 InvalidAlgorithmParameterException | IllegalBlockSizeException |
+                 BadPaddingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private StreamingReveal chunkedStreamingReveal(String messageId, byte[] manifest, byte[] keyBytes)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+                   InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+        manifest = cryptoUtil.openKeyCommitment(manifest, keyBytes);
+        int chunkCount = CryptoUtil.chunkCount(manifest);
+        byte[] tail = lastTwoBlocks(messageId, manifest, chunkCount);
+        cryptoUtil.checkKey(keyBytes, tail, 0, tail, CIPHER_BLOCK_BYTES);
+        StreamingDecryption decryption = cryptoUtil.decryptStreaming(keyBytes, manifest, 1);
+        return out -> {
+            try {
+                for (int index = 0; index < chunkCount; index++) {
+                    byte[] chunk = messageStore.getChunk(messageId, index);
+                    if (chunk == null) {
+                        throw new IOException("chunk " + index + " expired mid-reveal");
+                    }
+                    decryption.update(chunk, 0, chunk.length, out);
+                }
+                decryption.finish(out);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Decryption failed after the key check", e);
+            } finally {
+                discardChunks(messageId);
+            }
+        };
+    }
+
+    /**
+     * The last two blocks of a chunked message's IV-prefixed ciphertext,
+     * read from its last chunk backwards (almost always just the last
+     * chunk; the IV stands in when there is only one block).
+     */
+    private byte[] lastTwoBlocks(String messageId, byte[] manifest, int chunkCount)
+            throws IllegalBlockSizeException {
+        byte[] tail = new byte[2 * CIPHER_BLOCK_BYTES];
+        int missing = tail.length;
+        for (int index = chunkCount - 1; index >= 0 && missing > 0; index--) {
+            byte[] chunk = requireChunk(messageStore.getChunk(messageId, index));
+            int copied = Math.min(missing, chunk.length);
+            System.arraycopy(chunk, chunk.length - copied, tail, missing - copied, copied);
+            missing -= copied;
+        }
+        if (missing == CIPHER_BLOCK_BYTES) {
+            // Manifest layout: marker byte, then the IV.
+            System.arraycopy(manifest, 1, tail, 0, CIPHER_BLOCK_BYTES);
+        } else if (missing != 0) {
+            throw new IllegalBlockSizeException("ciphertext is not a whole number of blocks");
+        }
+        return tail;
+    }
+
+    /**
+     * Decrypts with the client's key. Null means the key is wrong or was
+     * undecodable, which counts as a failed attempt.
+     */
+    private String decryptOrNull(byte[] payload, byte[] keyBytes) {
+        if (keyBytes == null) {
+            return null;
+        }
+        try {
+            return cryptoUtil.decryptMessageFromBytes(payload, keyBytes);
+        } catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException |
+                 InvalidAlgorithmParameterException | IllegalBlockSizeException |
+                 BadPaddingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a chunked message's chunks in order, decrypting each as it
+     * arrives. A chunk that is gone (the set expired under its manifest)
+     * makes the message unavailable; a wrong key surfaces as the same
+     * crypto exceptions a single payload throws.
+     */
+    private String decryptChunks(String messageId, byte[] manifest, byte[] keyBytes) throws Exception {
+        ChunkedDecryption decryption = cryptoUtil.decryptMessageFromChunks(manifest, keyBytes);
+        try {
+            for (int index = 0; index < decryption.chunkCount(); index++) {
+                decryption.update(requireChunk(messageStore.getChunk(messageId, index)));
+            }
+        } catch (Exception e) {
+            decryption.wipe();
+            throw e;
+        }
+        return decryption.finish();
+    }
+
+    private String decryptChunksOrNull(String messageId, byte[] manifest, byte[] keyBytes) {
+        if (keyBytes == null) {
+            return null;
+        }
+        try {
+            return decryptChunks(messageId, manifest, keyBytes);
+        } catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException |
+                 InvalidAlgorithmParameterException | IllegalBlockSizeException |
+                 BadPaddingException | IllegalArgumentException e) {
+            return null;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Decryption failed", e);
+        }
+    }
+
+    /**
+     * Non-blocking {@link #decryptChunksOrNull}: one chunk read in flight at
+     * a time, each decrypted on the {@link CryptoExecutor} as its reply
+     * arrives, and the plaintext finished there too.
+     */
+    private CompletableFuture<String> decryptChunksOrNullAsync(String messageId, byte[] manifest, byte[] keyBytes) {
+        if (keyBytes == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ChunkedDecryption decryption;
+        try {
+            decryption = cryptoUtil.decryptMessageFromChunks(manifest, keyBytes);
+        } catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException |
+                 InvalidAlgorithmParameterException | IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return readChunksAsync(messageId, decryption, 0).handle((ignored, failure) -> {
+            if (failure != null) {
+                decryption.wipe();
+                if (unwrap(failure) instanceof IllegalBlockSizeException) {
+                    return null;
+                }
+                throw new CompletionException(unwrap(failure));
+            }
+            try {
+                return decryption.finish();
+            } catch (IllegalBlockSizeException | BadPaddingException e) {
+                return null;
+            }
+        });
+    }
+
+    private CompletableFuture<Void> readChunksAsync(String messageId, ChunkedDecryption decryption, int index) {
+        if (index == decryption.chunkCount()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return messageStore.getChunkAsync(messageId, index).thenComposeAsync(chunk -> {
+            try {
+                decryption.update(requireChunk(chunk));
+            } catch (IllegalBlockSizeException e) {
+                throw new CompletionException(e);
+            }
+            return readChunksAsync(messageId, decryption, index + 1);
+        }, cryptoExecutor);
+    }
+
+    /**
+     * Puts a claimed message back as it was when reading its chunks failed
+     * for a reason that is not the client's (e.g. a Redis timeout), or when
+     * it was claimed through the wrong reveal for its kind (text or file).
+     * Restoring with one attempt fewer leaves the count unchanged. Best
+     * effort: if this fails too, the message is lost like any message whose
+     * reveal was interrupted.
+     */
+    private void putBack(String messageId, TakenMessage taken) {
+        try {
+            messageStore.restoreAfterFailedAttempt(messageId, uncounted(taken));
+        } catch (RuntimeException e) {
+            // The original failure is the one to report.
+        }
+    }
+
+    private <T> CompletableFuture<T> putBackAsync(String messageId, TakenMessage taken, Throwable failure) {
+        if (unwrap(failure) instanceof MessageNotAvailableException) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        return messageStore.restoreAfterFailedAttemptAsync(messageId, uncounted(taken))
+                .handle((exhausted, ignored) -> {
+                    throw new CompletionException(unwrap(failure));
+                });
+    }
+
+    private static TakenMessage uncounted(TakenMessage taken) {
+        return new TakenMessage(taken.payload(), taken.remainingTtlMillis(), taken.attempts() - 1,
+                taken.createdAtMillis());
+    }
+
+    private static byte[] requireChunk(byte[] chunk) {
+        if (chunk == null) {
+            throw new MessageNotAvailableException(MessageNotAvailableException.Reason.NOT_FOUND);
+        }
+        return chunk;
+    }
+
+    private static MessageNotAvailableException failedAttempt(boolean exhausted) {
+        return new MessageNotAvailableException(exhausted
+                ? MessageNotAvailableException.Reason.EXHAUSTED
+                : MessageNotAvailableException.Reason.WRONG_KEY);
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
 }
@@ -0,0 +1,18 @@
+package com.secret_message.secret_message_app.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A revealed message whose plaintext has not been decrypted yet, returned
+ * by {@link SecretMessageService#openReveal}. The message is already
+ * claimed and the key already checked; {@link #writeTo} decrypts it into
+ * {@code out} in small zeroed buffers and must be called exactly once.
+ * Its UTF-8 bytes are written as they are decrypted, unescaped; from
+ * {@link SecretMessageService#openFileReveal}, the file's raw bytes.
+ */
+@FunctionalInterface
+public interface StreamingReveal {
+
+    void writeTo(OutputStream out) throws IOException;
+}
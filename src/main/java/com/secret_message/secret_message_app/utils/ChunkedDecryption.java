@@ -0,0 +1,69 @@
+package com.secret_message.secret_message_app.utils;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * One chunked message being decrypted, created by
+ * {@link CryptoUtil#decryptMessageFromChunks}. Chunks are decrypted into a
+ * single plaintext buffer sized from the manifest as they arrive, so the
+ * caller can drop each ciphertext chunk right after {@link #update}. The
+ * buffer is zeroed by {@link #finish()}, or by {@link #wipe()} when the
+ * caller gives up early.
+ */
+public final class ChunkedDecryption {
+
+    /** Room for the final block, which the cipher holds back until doFinal. */
+    private static final int BLOCK_SLACK = 32;
+
+    private final Cipher cipher;
+    private final int chunkCount;
+    private final byte[] plaintext;
+    private int written;
+
+    ChunkedDecryption(Cipher cipher, int chunkCount, int plaintextLength) {
+        this.cipher = cipher;
+        this.chunkCount = chunkCount;
+        this.plaintext = new byte[plaintextLength + BLOCK_SLACK];
+    }
+
+    public int chunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Decrypts the next chunk. Chunks that add up to more than the manifest
+     * declares are rejected like a wrong key.
+     */
+    public void update(byte[] chunk) throws IllegalBlockSizeException {
+        try {
+            written += cipher.update(chunk, 0, chunk.length, plaintext, written);
+        } catch (ShortBufferException e) {
+            throw new IllegalBlockSizeException("chunks longer than the manifest declares");
+        }
+    }
+
+    /**
+     * Checks the padding and returns the message. With a wrong key this
+     * throws {@link BadPaddingException}, exactly as a single payload's
+     * decrypt does. The plaintext buffer is zeroed either way.
+     */
+    public String finish() throws IllegalBlockSizeException, BadPaddingException {
+        try {
+            written += cipher.doFinal(plaintext, written);
+            return new String(plaintext, 0, written, StandardCharsets.UTF_8);
+        } catch (ShortBufferException e) {
+            throw new IllegalBlockSizeException("chunks longer than the manifest declares");
+        } finally {
+            wipe();
+        }
+    }
+
+    public void wipe() {
+        Arrays.fill(plaintext, (byte) 0);
+    }
+}
@@ -0,0 +1,126 @@
+package com.secret_message.secret_message_app.utils;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * One message being encrypted chunk by chunk, created by
+ * {@link CryptoUtil#encryptMessageInChunks}. Each {@link #nextChunk()}
+ * UTF-8-encodes the next {@code chunkSize} bytes of the message into a
+ * reused buffer and runs them through the cipher, so the caller can store
+ * one chunk before the next is produced. The plaintext buffer is zeroed
+ * after every chunk.
+ *
+ * <p>Created by {@link CryptoUtil#encryptStreamInChunks} it reads the next
+ * {@code chunkSize} bytes from an input stream into that buffer instead.
+ */
+public final class ChunkedEncryption {
+
+    private final Cipher cipher;
+    private final byte[] iv;
+    private final byte marker;
+    /** Exactly one of {@code input} and {@code stream} is set. */
+    private final CharBuffer input;
+    private final InputStream stream;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            // What String.getBytes does with a lone surrogate.
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer plaintext;
+    private int chunkCount;
+    private long plaintextLength;
+    private boolean finished;
+
+    ChunkedEncryption(Cipher cipher, byte[] iv, String content, int chunkSize) {
+        this(cipher, iv, CryptoUtil.CHUNKED_PAYLOAD_MARKER, CharBuffer.wrap(content), null, chunkSize);
+    }
+
+    ChunkedEncryption(Cipher cipher, byte[] iv, InputStream content, int chunkSize) {
+        this(cipher, iv, CryptoUtil.FILE_PAYLOAD_MARKER, null, content, chunkSize);
+    }
+
+    private ChunkedEncryption(Cipher cipher, byte[] iv, byte marker, CharBuffer input, InputStream stream,
+                              int chunkSize) {
+        if (chunkSize < 16) {
+            throw new IllegalArgumentException("chunk size must be at least one AES block");
+        }
+        this.cipher = cipher;
+        this.iv = iv;
+        this.marker = marker;
+        this.input = input;
+        this.stream = stream;
+        this.plaintext = ByteBuffer.allocate(chunkSize);
+    }
+
+    /**
+     * Encrypts and returns the next chunk, or null once the last one has
+     * been returned. The last chunk carries the padding; a chunk may be a
+     * few bytes shorter than {@code chunkSize} where a multi-byte character
+     * would have straddled the boundary. A stream is read until
+     * {@code chunkSize} bytes or its end; a stream that ends exactly on a
+     * chunk boundary gets a final chunk of padding alone.
+     */
+    public byte[] nextChunk() throws IllegalBlockSizeException, BadPaddingException, IOException {
+        if (finished) {
+            return null;
+        }
+        plaintext.clear();
+        boolean last;
+        if (stream != null) {
+            try {
+                plaintext.position(stream.readNBytes(plaintext.array(), 0, plaintext.capacity()));
+            } catch (IOException e) {
+                // Part of a chunk may have been read before the failure.
+                Arrays.fill(plaintext.array(), (byte) 0);
+                throw e;
+            }
+            last = plaintext.hasRemaining();
+        } else {
+            CoderResult result = encoder.encode(input, plaintext, true);
+            last = result.isUnderflow();
+            if (last) {
+                encoder.flush(plaintext);
+            }
+        }
+        int length = plaintext.position();
+        try {
+            byte[] chunk = last
+                    ? cipher.doFinal(plaintext.array(), 0, length)
+                    : cipher.update(plaintext.array(), 0, length);
+            plaintextLength += length;
+            chunkCount++;
+            finished = last;
+            return chunk == null ? new byte[0] : chunk;
+        } finally {
+            Arrays.fill(plaintext.array(), 0, length, (byte) 0);
+        }
+    }
+
+    /** Plaintext bytes encrypted so far. */
+    public long plaintextLength() {
+        return plaintextLength;
+    }
+
+    /**
+     * The stored form that stands in for the payload: marker, IV, chunk
+     * count and plaintext length.
+     *
+     * @throws IllegalStateException before the last chunk has been taken
+     */
+    public byte[] manifest() {
+        if (!finished) {
+            throw new IllegalStateException("chunks remaining");
+        }
+        return CryptoUtil.manifest(marker, iv, chunkCount, Math.toIntExact(plaintextLength));
+    }
+}
@@ -0,0 +1,32 @@
+package com.secret_message.secret_message_app.utils;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A long-lived key held together with its own pools of ciphers, for the
+ * idempotency master key: the {@link SecretKeySpec} is built once, and the
+ * pooled ciphers stay initialized under it between calls, so each
+ * encrypt or decrypt only re-initializes one with a fresh IV. Opened with
+ * {@link CryptoUtil#openContext}; {@link #close} scrubs the idle ciphers.
+ *
+ * <p>Not for per-message keys, which must not outlive their request: the
+ * key spec keeps a copy of the key bytes that cannot be zeroed.
+ */
+public final class CipherContext implements AutoCloseable {
+
+    final SecretKeySpec key;
+    final CipherPool cbcCiphers;
+    final CipherPool gcmCiphers;
+
+    CipherContext(SecretKeySpec key, CipherPool cbcCiphers, CipherPool gcmCiphers) {
+        this.key = key;
+        this.cbcCiphers = cbcCiphers;
+        this.gcmCiphers = gcmCiphers;
+    }
+
+    @Override
+    public void close() {
+        cbcCiphers.clear();
+        gcmCiphers.clear();
+    }
+}
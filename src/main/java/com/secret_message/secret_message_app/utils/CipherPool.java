@@ -0,0 +1,105 @@
+package com.secret_message.secret_message_app.utils;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Idle {@link Cipher} instances of one transformation, so a short encrypt or
+ * decrypt skips {@link Cipher#getInstance}'s provider lookup and allocation.
+ * Every user re-initializes the cipher with its own key and IV; the pool
+ * only saves the instance.
+ *
+ * <p>A shared free list rather than a {@code ThreadLocal}: a virtual thread
+ * runs one request and is gone, so per-thread instances would never be
+ * reused, and a lock-free deque never pins a carrier. A cipher is only
+ * borrowed for one CPU-bound call, so about one per carrier thread is ever
+ * out; past {@code capacity} idle instances the rest are dropped.
+ *
+ * <p>With {@code scrubOnRelease}, a returned cipher is re-initialized under
+ * an all-zero key before it goes idle, so it no longer holds the caller's
+ * key schedule. (The JCE-internal arrays it replaces are garbage that
+ * cannot be wiped, like the {@link SecretKeySpec}s in {@link CryptoUtil}.)
+ * A {@link CipherContext}'s pools skip that: their key lives as long as
+ * the context, and {@link #clear} scrubs them when it closes.
+ */
+final class CipherPool {
+
+    private static final SecretKeySpec ZERO_KEY = new SecretKeySpec(new byte[32], "AES");
+
+    private final String transformation;
+    private final AlgorithmParameterSpec zeroParameters;
+    private final boolean scrubOnRelease;
+    private final int capacity;
+    private final ConcurrentLinkedDeque<Cipher> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    CipherPool(String transformation, AlgorithmParameterSpec zeroParameters, boolean scrubOnRelease,
+               int capacity) {
+        this.transformation = transformation;
+        this.zeroParameters = zeroParameters;
+        this.scrubOnRelease = scrubOnRelease;
+        this.capacity = capacity;
+    }
+
+    /**
+     * An idle cipher, or a new one; either way the caller must {@code init}
+     * it before use and {@link #release} it after.
+     */
+    Cipher acquire() throws NoSuchAlgorithmException, NoSuchPaddingException {
+        Cipher cipher = idle.pollFirst();
+        if (cipher == null) {
+            return Cipher.getInstance(transformation);
+        }
+        idleCount.decrementAndGet();
+        return cipher;
+    }
+
+    /**
+     * Returns a cipher whatever state its last operation left it in, a
+     * failed {@code doFinal} included. One that cannot be scrubbed is
+     * dropped.
+     */
+    void release(Cipher cipher) {
+        if (scrubOnRelease && !scrub(cipher)) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > capacity) {
+            idleCount.decrementAndGet();
+            if (!scrubOnRelease) {
+                scrub(cipher);
+            }
+            return;
+        }
+        idle.offerFirst(cipher);
+    }
+
+    /**
+     * Scrubs and drops every idle cipher.
+     */
+    void clear() {
+        for (Cipher cipher = idle.pollFirst(); cipher != null; cipher = idle.pollFirst()) {
+            idleCount.decrementAndGet();
+            scrub(cipher);
+        }
+    }
+
+    int idleCount() {
+        return idleCount.get();
+    }
+
+    private boolean scrub(Cipher cipher) {
+        try {
+            // Decrypt mode: GCM refuses an encrypt init that repeats a key and nonce.
+            cipher.init(Cipher.DECRYPT_MODE, ZERO_KEY, zeroParameters);
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+}
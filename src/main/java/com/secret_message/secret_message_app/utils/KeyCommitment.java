@@ -0,0 +1,95 @@
+package com.secret_message.secret_message_app.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The key commitment stored in front of a message
+ * ({@link CryptoUtil#KEY_COMMITMENT_MARKER}): HMAC-SHA256 of a fixed label
+ * under the message key, truncated to {@link #LENGTH} bytes. Checking it
+ * costs one HMAC of a few bytes whatever the message size, where a wrong
+ * key otherwise only shows after the whole ciphertext has been decrypted
+ * (and, for a chunked message, read).
+ *
+ * <p>It reveals nothing usable about the key: finding a key that matches
+ * is a 2^256 search, like finding one that decrypts. A match is not taken
+ * as proof either; the decrypt still checks the padding or GCM tag.
+ *
+ * <p>{@link Mac} instances are pooled the way {@link CipherPool} pools
+ * ciphers, and re-keyed with zeros as they are returned.
+ */
+final class KeyCommitment {
+
+    static final int LENGTH = 16;
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte[] LABEL = "secret-message key commitment v1".getBytes(StandardCharsets.US_ASCII);
+    private static final SecretKeySpec ZERO_KEY = new SecretKeySpec(new byte[32], ALGORITHM);
+    private static final int POOLED_MACS = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final ConcurrentLinkedDeque<Mac> idle = new ConcurrentLinkedDeque<>();
+    private static final AtomicInteger idleCount = new AtomicInteger();
+
+    private KeyCommitment() {
+    }
+
+    /**
+     * Writes the commitment to {@code keyBytes} into {@code out} at
+     * {@code offset}.
+     */
+    static void write(byte[] keyBytes, byte[] out, int offset) throws NoSuchAlgorithmException, InvalidKeyException {
+        byte[] tag = compute(keyBytes);
+        System.arraycopy(tag, 0, out, offset, LENGTH);
+        Arrays.fill(tag, (byte) 0);
+    }
+
+    /**
+     * Whether the commitment at {@code offset} in {@code stored} is that of
+     * {@code keyBytes}, compared in constant time.
+     */
+    static boolean matches(byte[] keyBytes, byte[] stored, int offset)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        byte[] tag = compute(keyBytes);
+        try {
+            return MessageDigest.isEqual(Arrays.copyOf(tag, LENGTH),
+                    Arrays.copyOfRange(stored, offset, offset + LENGTH));
+        } finally {
+            Arrays.fill(tag, (byte) 0);
+        }
+    }
+
+    private static byte[] compute(byte[] keyBytes) throws NoSuchAlgorithmException, InvalidKeyException {
+        Mac mac = idle.pollFirst();
+        if (mac == null) {
+            mac = Mac.getInstance(ALGORITHM);
+        } else {
+            idleCount.decrementAndGet();
+        }
+        try {
+            mac.init(new SecretKeySpec(keyBytes, ALGORITHM));
+            return mac.doFinal(LABEL);
+        } finally {
+            release(mac);
+        }
+    }
+
+    private static void release(Mac mac) {
+        try {
+            mac.init(ZERO_KEY);
+        } catch (InvalidKeyException e) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > POOLED_MACS) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.offerFirst(mac);
+    }
+}
@@ -1,26 +1,151 @@
-package com.secret_message.secret_message_app.utils;
-
-import org.springframework.stereotype.Component;
-
-import java.security.SecureRandom;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-
-@Component
-public class PasswordGenerator {
-
-    private static final String CHAR_LOWER = "abcdefghijklmnopqrstuvwxyz";
-    private static final String CHAR_UPPER = CHAR_LOWER.toUpperCase();
-    private static final String NUMBER = "0123456789";
-    private static final String OTHER_CHAR = "!@#$%&*()_+-=[]?";
-    private static final String PASSWORD_ALLOW_BASE = CHAR_LOWER + CHAR_UPPER + NUMBER + OTHER_CHAR;
-    private static final SecureRandom random = new SecureRandom();
-
-    public String generateRandomPassword(int length) {
-        if (length < 1) throw new IllegalArgumentException("Password length must be at least 1");
-        return IntStream.range(0, length)
-                .map(i -> PASSWORD_ALLOW_BASE.charAt(random.nextInt(PASSWORD_ALLOW_BASE.length())))
-                .mapToObj(c -> String.valueOf((char) c))
-                .collect(Collectors.joining());
-    }
-}
\ No newline at end of file
+package com.secret_message.secret_message_app.utils;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Random passwords as {@code char[]}, so the caller can wipe them once they
+ * are written out. Characters are drawn from one bulk
+ * {@link RandomSource#nextBytes} call per password instead of a stripe
+ * lookup per character: a byte is mapped onto the alphabet by rejection
+ * sampling (bytes at or above the largest multiple of the alphabet size
+ * are discarded), which keeps every character equally likely.
+ */
+@Component
+public class PasswordGenerator {
+
+    /** The characters a password may be drawn from, in alphabet order. */
+    public enum CharacterClass {
+        LOWER("abcdefghijklmnopqrstuvwxyz"),
+        UPPER("ABCDEFGHIJKLMNOPQRSTUVWXYZ"),
+        DIGITS("0123456789"),
+        SYMBOLS("!@#$%&*()_+-=[]?");
+
+        private final String characters;
+
+        CharacterClass(String characters) {
+            this.characters = characters;
+        }
+    }
+
+    /** Whole-alphabet draws before missing classes are placed by hand. */
+    private static final int REDRAWS = 8;
+
+    /** The alphabet of every combination of classes, by bitmask of their ordinals. */
+    private static final String[] ALPHABETS = alphabets();
+    private static final String PASSWORD_ALLOW_BASE = ALPHABETS[ALPHABETS.length - 1];
+
+    public String generateRandomPassword(int length) {
+        if (length < 1) throw new IllegalArgumentException("Password length must be at least 1");
+        char[] password = new char[length];
+        fill(password, PASSWORD_ALLOW_BASE);
+        try {
+            return new String(password);
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+    }
+
+    /**
+     * A password of {@code length} characters from the given classes, with
+     * at least one character of each. A draw from the whole alphabet that
+     * misses a class is redrawn, which keeps all such passwords equally
+     * likely; for passwords so short that {@value #REDRAWS} draws all miss,
+     * one distinct random position per class is then redrawn from that
+     * class. The caller owns the result and must wipe it.
+     */
+    public char[] generate(int length, Set<CharacterClass> classes) {
+        if (classes.isEmpty()) throw new IllegalArgumentException("At least one character class is required");
+        if (length < classes.size()) {
+            throw new IllegalArgumentException("Password length must be at least " + classes.size());
+        }
+        int mask = 0;
+        for (CharacterClass characterClass : classes) {
+            mask |= 1 << characterClass.ordinal();
+        }
+        char[] password = new char[length];
+        for (int draw = 0; draw < REDRAWS; draw++) {
+            fill(password, ALPHABETS[mask]);
+            if (missing(password, mask) == 0) {
+                return password;
+            }
+        }
+        int[] taken = new int[classes.size()];
+        int required = 0;
+        for (CharacterClass characterClass : classes) {
+            int position = distinctPosition(length, taken, required);
+            taken[required++] = position;
+            String characters = characterClass.characters;
+            password[position] = characters.charAt(RandomSource.nextInt(characters.length()));
+        }
+        return password;
+    }
+
+    /** The classes in {@code mask} that {@code password} has no character of. */
+    private static int missing(char[] password, int mask) {
+        int present = 0;
+        for (char c : password) {
+            present |= 1 << classOf(c).ordinal();
+        }
+        return mask & ~present;
+    }
+
+    private static CharacterClass classOf(char c) {
+        if (c >= 'a' && c <= 'z') return CharacterClass.LOWER;
+        if (c >= 'A' && c <= 'Z') return CharacterClass.UPPER;
+        if (c >= '0' && c <= '9') return CharacterClass.DIGITS;
+        return CharacterClass.SYMBOLS;
+    }
+
+    private static int distinctPosition(int length, int[] taken, int count) {
+        while (true) {
+            int position = RandomSource.nextInt(length);
+            boolean free = true;
+            for (int i = 0; i < count; i++) {
+                free &= taken[i] != position;
+            }
+            if (free) {
+                return position;
+            }
+        }
+    }
+
+    private static void fill(char[] out, String alphabet) {
+        int size = alphabet.length();
+        int limit = 256 - 256 % size;
+        // Enough for the expected rejections in one draw; refilled if not.
+        byte[] random = new byte[out.length + out.length / 4 + 8];
+        try {
+            int next = random.length;
+            for (int i = 0; i < out.length; ) {
+                if (next == random.length) {
+                    RandomSource.nextBytes(random);
+                    next = 0;
+                }
+                int value = random[next++] & 0xff;
+                if (value < limit) {
+                    out[i++] = alphabet.charAt(value % size);
+                }
+            }
+        } finally {
+            Arrays.fill(random, (byte) 0);
+        }
+    }
+
+    private static String[] alphabets() {
+        CharacterClass[] all = CharacterClass.values();
+        String[] alphabets = new String[1 << all.length];
+        for (int mask = 0; mask < alphabets.length; mask++) {
+            StringBuilder alphabet = new StringBuilder();
+            for (CharacterClass characterClass : all) {
+                if ((mask & (1 << characterClass.ordinal())) != 0) {
+                    alphabet.append(characterClass.characters);
+                }
+            }
+            alphabets[mask] = alphabet.toString();
+        }
+        return alphabets;
+    }
+}
@@ -0,0 +1,101 @@
+package com.secret_message.secret_message_app.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one source of randomness for keys, IVs, salts, message ids and
+ * generated passwords. A single {@link SecureRandom} serializes every
+ * caller on its lock, and {@link UUID#randomUUID} takes the JDK's own
+ * shared one, so under create load on many cores those locks, not the
+ * cipher, set the pace.
+ *
+ * <p>Instead there are {@code stripes} independent NIST SP 800-90A DRBGs
+ * (the JDK's {@code DRBG}, 256-bit strength, prediction resistance off),
+ * each seeded separately from the system entropy source and personalized
+ * with its index. A caller takes the stripe of its thread id, so threads
+ * on different cores rarely share one. Per-thread instances are not an
+ * option: a virtual thread lives for one request, and would pay a fresh
+ * seeding each time.
+ *
+ * <p>Each stripe reseeds from the entropy source after
+ * {@link #RESEED_INTERVAL} requests of its own, well inside SP 800-90A's
+ * limit, so a long-running process keeps mixing in fresh entropy instead
+ * of deriving everything from its startup seed.
+ */
+public final class RandomSource {
+
+    /** Requests a stripe serves between reseeds. */
+    static final long RESEED_INTERVAL = 1L << 20;
+
+    private static final Stripe[] STRIPES = newStripes(
+            Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors() - 1) << 1);
+
+    private RandomSource() {
+    }
+
+    public static void nextBytes(byte[] bytes) {
+        stripe().nextBytes(bytes);
+    }
+
+    /**
+     * A uniformly random int in {@code [0, bound)}.
+     */
+    public static int nextInt(int bound) {
+        return stripe().nextInt(bound);
+    }
+
+    /**
+     * A random (version 4) UUID, as {@link UUID#randomUUID} but drawn from
+     * a stripe.
+     */
+    public static UUID randomUUID() {
+        byte[] bytes = new byte[16];
+        nextBytes(bytes);
+        bytes[6] = (byte) ((bytes[6] & 0x0f) | 0x40);
+        bytes[8] = (byte) ((bytes[8] & 0x3f) | 0x80);
+        long most = 0;
+        long least = 0;
+        for (int i = 0; i < 8; i++) {
+            most = (most << 8) | (bytes[i] & 0xff);
+            least = (least << 8) | (bytes[i + 8] & 0xff);
+        }
+        return new UUID(most, least);
+    }
+
+    static int stripeCount() {
+        return STRIPES.length;
+    }
+
+    private static SecureRandom stripe() {
+        Stripe stripe = STRIPES[(int) Thread.currentThread().threadId() & (STRIPES.length - 1)];
+        if (stripe.requests.incrementAndGet() % RESEED_INTERVAL == 0) {
+            stripe.random.reseed();
+        }
+        return stripe.random;
+    }
+
+    private static Stripe[] newStripes(int count) {
+        Stripe[] stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            byte[] personalization = ("secret-message-random-" + i).getBytes(StandardCharsets.UTF_8);
+            try {
+                stripes[i] = new Stripe(SecureRandom.getInstance("DRBG",
+                        DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, personalization)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("no DRBG with 256-bit strength", e);
+            }
+        }
+        return stripes;
+    }
+
+    private record Stripe(SecureRandom random, AtomicLong requests) {
+        Stripe(SecureRandom random) {
+            this(random, new AtomicLong());
+        }
+    }
+}
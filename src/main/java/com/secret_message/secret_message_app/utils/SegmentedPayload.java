@@ -0,0 +1,217 @@
+package com.secret_message.secret_message_app.utils;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The segmented AES-GCM format ({@link CryptoUtil#SEGMENTED_PAYLOAD_MARKER}):
+ * {@code marker || segment size || plaintext length || nonce prefix}, then
+ * each segment's {@code ciphertext || tag} in order. Segments are sealed
+ * independently under the message key, so they are encrypted and decrypted
+ * on as many fork-join workers as there are segments, where one GCM pass
+ * over the whole message runs on one core.
+ *
+ * <p>Segment nonces follow the STREAM construction: the random 7-byte
+ * prefix, the segment's 4-byte index, and a final byte that is 1 only for
+ * the last segment. Reordering, dropping or appending segments therefore
+ * fails a tag, as does truncation at a segment boundary. The 16-byte header
+ * is every segment's associated data, so a changed size or length fails
+ * too, when it does not already contradict the payload's length.
+ *
+ * <p>The work runs as a {@link RecursiveAction} that halves the segment
+ * range: in the calling worker's pool, or from any other thread with the
+ * caller taking one half and the common pool the rest. The reactive paths
+ * call in from a worker of their own pool, so that no I/O thread waits on
+ * segments; servlet threads may block and use the common pool.
+ */
+final class SegmentedPayload {
+
+    static final int HEADER_LENGTH = 1 + 2 * Integer.BYTES + 7;
+
+    private static final int NONCE_PREFIX_OFFSET = 1 + 2 * Integer.BYTES;
+    private static final int NONCE_PREFIX_LENGTH = HEADER_LENGTH - NONCE_PREFIX_OFFSET;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+
+    private SegmentedPayload() {
+    }
+
+    /** Stored size of {@code plaintextLength} bytes cut into {@code segmentSize} segments. */
+    static long length(long plaintextLength, int segmentSize) {
+        return HEADER_LENGTH + plaintextLength + segmentCount(plaintextLength, segmentSize) * TAG_LENGTH;
+    }
+
+    /**
+     * Seals {@code plaintext} into a fresh buffer in the segmented layout.
+     * The caller owns and zeroes {@code plaintext}.
+     */
+    static byte[] seal(byte[] plaintext, SecretKeySpec key, CipherPool ciphers, int segmentSize)
+            throws NoSuchPaddingException, NoSuchAlgorithmException,
+                   InvalidAlgorithmParameterException, InvalidKeyException,
+                   IllegalBlockSizeException, BadPaddingException {
+
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segment size must be positive");
+        }
+        int count = segmentCount(plaintext.length, segmentSize);
+        long total = length(plaintext.length, segmentSize);
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalBlockSizeException("message too large for one payload");
+        }
+        byte[] out = new byte[(int) total];
+        ByteBuffer header = ByteBuffer.wrap(out);
+        header.put(CryptoUtil.SEGMENTED_PAYLOAD_MARKER).putInt(segmentSize).putInt(plaintext.length);
+        byte[] prefix = new byte[NONCE_PREFIX_LENGTH];
+        RandomSource.nextBytes(prefix);
+        header.put(prefix);
+
+        run(count, index -> {
+            int offset = index * segmentSize;
+            int length = Math.min(segmentSize, plaintext.length - offset);
+            Cipher cipher = ciphers.acquire();
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, key, nonce(out, index, index == count - 1));
+                cipher.updateAAD(out, 0, HEADER_LENGTH);
+                cipher.doFinal(plaintext, offset, length, out, HEADER_LENGTH + offset + index * TAG_LENGTH);
+            } finally {
+                ciphers.release(cipher);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Opens a segmented payload, every tag checked, into a fresh plaintext
+     * buffer the caller owns and must zero. On any failure the partly
+     * written plaintext is zeroed here.
+     */
+    static byte[] open(byte[] payload, SecretKeySpec key, CipherPool ciphers)
+            throws NoSuchPaddingException, NoSuchAlgorithmException,
+                   InvalidAlgorithmParameterException, InvalidKeyException,
+                   IllegalBlockSizeException, BadPaddingException {
+
+        if (payload.length < HEADER_LENGTH + TAG_LENGTH) {
+            throw new IllegalBlockSizeException("segmented payload shorter than its header");
+        }
+        ByteBuffer header = ByteBuffer.wrap(payload, 1, 2 * Integer.BYTES);
+        int segmentSize = header.getInt();
+        int plaintextLength = header.getInt();
+        if (segmentSize <= 0 || plaintextLength < 0
+                || length(plaintextLength, segmentSize) != payload.length) {
+            throw new IllegalBlockSizeException("segmented payload does not match its header");
+        }
+        int count = segmentCount(plaintextLength, segmentSize);
+        byte[] plaintext = new byte[plaintextLength];
+        try {
+            run(count, index -> {
+                int offset = index * segmentSize;
+                int length = Math.min(segmentSize, plaintextLength - offset);
+                Cipher cipher = ciphers.acquire();
+                try {
+                    cipher.init(Cipher.DECRYPT_MODE, key, nonce(payload, index, index == count - 1));
+                    cipher.updateAAD(payload, 0, HEADER_LENGTH);
+                    cipher.doFinal(payload, HEADER_LENGTH + offset + index * TAG_LENGTH, length + TAG_LENGTH,
+                            plaintext, offset);
+                } finally {
+                    ciphers.release(cipher);
+                }
+            });
+            return plaintext;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            Arrays.fill(plaintext, (byte) 0);
+            throw e;
+        }
+    }
+
+    private static int segmentCount(long plaintextLength, int segmentSize) {
+        return plaintextLength == 0 ? 1 : (int) ((plaintextLength + segmentSize - 1) / segmentSize);
+    }
+
+    private static GCMParameterSpec nonce(byte[] header, int index, boolean last) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        System.arraycopy(header, NONCE_PREFIX_OFFSET, nonce, 0, NONCE_PREFIX_LENGTH);
+        ByteBuffer.wrap(nonce, NONCE_PREFIX_LENGTH, Integer.BYTES).putInt(index);
+        nonce[NONCE_LENGTH - 1] = (byte) (last ? 1 : 0);
+        return new GCMParameterSpec(8 * TAG_LENGTH, nonce);
+    }
+
+    /**
+     * Runs {@code segment} for every index below {@code count}, in parallel,
+     * and rethrows the first failure as the checked exception it was.
+     */
+    private static void run(int count, Segment segment)
+            throws NoSuchPaddingException, NoSuchAlgorithmException,
+                   InvalidAlgorithmParameterException, InvalidKeyException,
+                   IllegalBlockSizeException, BadPaddingException {
+
+        try {
+            new Segments(segment, 0, count).invoke();
+        } catch (RuntimeException e) {
+            // Joined across threads, ForkJoinTask may rewrap the failure.
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof GeneralSecurityException)) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof NoSuchPaddingException failure) throw failure;
+            if (cause instanceof NoSuchAlgorithmException failure) throw failure;
+            if (cause instanceof InvalidAlgorithmParameterException failure) throw failure;
+            if (cause instanceof InvalidKeyException failure) throw failure;
+            if (cause instanceof IllegalBlockSizeException failure) throw failure;
+            if (cause instanceof BadPaddingException failure) throw failure;
+            if (cause instanceof ShortBufferException failure) {
+                throw new IllegalStateException("segment output size miscomputed", failure);
+            }
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Segment {
+        void process(int index) throws GeneralSecurityException;
+    }
+
+    private static final class Segments extends RecursiveAction {
+
+        private final Segment segment;
+        private final int from;
+        private final int to;
+
+        Segments(Segment segment, int from, int to) {
+            this.segment = segment;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Segments(segment, from, middle), new Segments(segment, middle, to));
+                return;
+            }
+            try {
+                segment.process(from);
+            } catch (GeneralSecurityException e) {
+                throw new SegmentFailure(e);
+            }
+        }
+    }
+
+    private static final class SegmentFailure extends RuntimeException {
+        SegmentFailure(GeneralSecurityException cause) {
+            super(cause);
+        }
+    }
+}
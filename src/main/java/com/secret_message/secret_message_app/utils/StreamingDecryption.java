@@ -0,0 +1,181 @@
+package com.secret_message.secret_message_app.utils;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A decryption that writes its plaintext straight to an output stream,
+ * created by {@link CryptoUtil#decryptStreaming}. Ciphertext is fed in
+ * slices of at most {@value #SLICE_BYTES} bytes, each decrypted into one
+ * reused buffer that is zeroed as soon as it has been written, so no
+ * full-length plaintext array or {@code String} is ever built.
+ *
+ * <p>The padding is only checked by {@link #finish}, after everything else
+ * has been written, so the key is checked first with
+ * {@link CryptoUtil#checkKey}. A decryption made for a single stored
+ * payload ({@link CryptoUtil#decryptPayloadStreaming}) has been checked
+ * already and knows its ciphertext: {@link #writeTo} streams all of it,
+ * inflating it first if it was stored compressed.
+ *
+ * <p>An AES-GCM payload is the exception: it is decrypted and verified
+ * whole before this is created, and {@code writeTo} writes that plaintext
+ * out through the same buffer, zeroing the array once it is done.
+ */
+public final class StreamingDecryption {
+
+    static final int SLICE_BYTES = 8 * 1024;
+
+    /** Null when {@link #source} holds plaintext that is already verified. */
+    private final Cipher cipher;
+    /** One slice plus the block the cipher may be holding back. */
+    private final byte[] buffer = new byte[SLICE_BYTES + 32];
+
+    private final byte[] source;
+    private final int sourceOffset;
+    private final int sourceLength;
+
+    /** Null unless the payload was stored compressed. */
+    private final Inflater inflater;
+    private final byte[] inflated;
+    private final long expectedLength;
+    private long inflatedLength;
+
+    StreamingDecryption(Cipher cipher) {
+        this(cipher, null, 0, 0, -1);
+    }
+
+    /**
+     * @param inflatedLength the plaintext length recorded for a compressed
+     *                       payload, or -1 if the payload is not compressed
+     */
+    StreamingDecryption(Cipher cipher, byte[] source, int sourceOffset, int sourceLength, int inflatedLength) {
+        this.cipher = cipher;
+        this.source = source;
+        this.sourceOffset = sourceOffset;
+        this.sourceLength = sourceLength;
+        this.inflater = inflatedLength < 0 ? null : new Inflater();
+        this.inflated = inflatedLength < 0 ? null : new byte[SLICE_BYTES];
+        this.expectedLength = inflatedLength;
+    }
+
+    /**
+     * Binds plaintext decrypted and authenticated in one piece (AES-GCM).
+     * This object takes ownership of {@code plaintext} and zeroes it.
+     */
+    StreamingDecryption(byte[] plaintext, int inflatedLength) {
+        this(null, plaintext, 0, plaintext.length, inflatedLength);
+    }
+
+    /**
+     * Streams the whole payload this decryption was made for.
+     */
+    public void writeTo(OutputStream out) throws IOException, IllegalBlockSizeException, BadPaddingException {
+        if (source == null) {
+            throw new IllegalStateException("no payload bound; feed chunks with update()");
+        }
+        try {
+            if (cipher == null) {
+                writeDecrypted(out);
+            } else {
+                update(source, sourceOffset, sourceLength, out);
+                finish(out);
+            }
+        } finally {
+            if (cipher == null) {
+                Arrays.fill(source, (byte) 0);
+            }
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    private void writeDecrypted(OutputStream out) throws IOException {
+        for (int position = 0; position < sourceLength; position += SLICE_BYTES) {
+            int slice = Math.min(SLICE_BYTES, sourceLength - position);
+            System.arraycopy(source, position, buffer, 0, slice);
+            writeAndWipe(slice, out);
+        }
+        checkInflatedLength();
+    }
+
+    public void update(byte[] ciphertext, int offset, int length, OutputStream out)
+            throws IOException, IllegalBlockSizeException {
+        for (int position = offset; position < offset + length; position += SLICE_BYTES) {
+            int slice = Math.min(SLICE_BYTES, offset + length - position);
+            int written;
+            try {
+                written = cipher.update(ciphertext, position, slice, buffer, 0);
+            } catch (ShortBufferException e) {
+                throw new IllegalStateException("decrypt buffer underestimated", e);
+            }
+            writeAndWipe(written, out);
+        }
+    }
+
+    public void finish(OutputStream out) throws IOException, IllegalBlockSizeException, BadPaddingException {
+        int written;
+        try {
+            written = cipher.doFinal(buffer, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException("decrypt buffer underestimated", e);
+        }
+        writeAndWipe(written, out);
+        checkInflatedLength();
+    }
+
+    private void checkInflatedLength() throws IOException {
+        if (inflater != null && (!inflater.finished() || inflatedLength != expectedLength)) {
+            throw new IOException("compressed payload does not match its recorded length");
+        }
+    }
+
+    private void writeAndWipe(int length, OutputStream out) throws IOException {
+        try {
+            if (inflater == null) {
+                out.write(buffer, 0, length);
+            } else {
+                inflateAndWrite(length, out);
+            }
+        } finally {
+            Arrays.fill(buffer, 0, length, (byte) 0);
+        }
+    }
+
+    /**
+     * Inflates everything the last decrypted slice holds before returning,
+     * since the inflater reads straight from {@link #buffer}. A stream that
+     * asks for a preset dictionary, or stops making progress with input
+     * left, fails rather than spinning: a wrong key that passed the CBC
+     * padding check feeds random bytes in here.
+     */
+    private void inflateAndWrite(int length, OutputStream out) throws IOException {
+        inflater.setInput(buffer, 0, length);
+        try {
+            while (!inflater.needsInput() && !inflater.finished()) {
+                int count = inflater.inflate(inflated);
+                if (count == 0 && (inflater.needsDictionary() || !inflater.needsInput())) {
+                    throw new IOException("compressed payload does not inflate");
+                }
+                try {
+                    out.write(inflated, 0, count);
+                } finally {
+                    Arrays.fill(inflated, 0, count, (byte) 0);
+                }
+                inflatedLength += count;
+                if (inflatedLength > expectedLength) {
+                    throw new IOException("compressed payload longer than its recorded length");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("compressed payload does not inflate", e);
+        }
+    }
+}
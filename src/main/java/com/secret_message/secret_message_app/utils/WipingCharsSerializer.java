@@ -0,0 +1,26 @@
+package com.secret_message.secret_message_app.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * {@link WipingBase64Serializer} for text secrets: writes a {@code char[]}
+ * as a JSON string straight from the array, then zeroes it, so a generated
+ * password never becomes an application-owned {@link String}.
+ */
+public class WipingCharsSerializer extends JsonSerializer<char[]> {
+
+    @Override
+    public void serialize(char[] value, JsonGenerator gen, SerializerProvider serializers)
+            throws IOException {
+        try {
+            gen.writeString(value, 0, value.length);
+        } finally {
+            Arrays.fill(value, '\0');
+        }
+    }
+}
@@ -0,0 +1,9 @@
+-- Appends one ciphertext chunk of a chunked message and (re)sets the TTL
+-- of the chunk list, so the list never expires before the manifest that
+-- is written after its last chunk.
+-- KEYS[1] = chunks:<id>
+-- ARGV[1] = chunk, ARGV[2] = TTL in ms
+-- Returns the number of chunks now stored.
+local count = redis.call('RPUSH', KEYS[1], ARGV[1])
+redis.call('PEXPIRE', KEYS[1], ARGV[2])
+return count
@@ -0,0 +1,21 @@
+-- Creates a message and its idempotency record in one atomic step, or
+-- returns the record that won an earlier or concurrent create.
+-- KEYS[1] = idempotency:<key>, KEYS[2] = message key (messages:<id> or msg:<id>)
+-- ARGV[1] = idempotency record JSON, ARGV[2] = payload, ARGV[3] = TTL in ms,
+-- ARGV[4] = storage layout ("keys" or "hash"), ARGV[5] = created-at epoch ms,
+-- ARGV[6] = size class
+-- Returns nil when this call created both keys; otherwise the existing
+-- record JSON, and nothing is written.
+local existing = redis.call('GET', KEYS[1])
+if existing then
+    return existing
+end
+redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[3])
+if ARGV[4] == 'hash' then
+    redis.call('HSET', KEYS[2], 'payload', ARGV[2], 'attempts', 0,
+            'created_at', ARGV[5], 'size_class', ARGV[6])
+    redis.call('PEXPIRE', KEYS[2], ARGV[3])
+else
+    redis.call('SET', KEYS[2], ARGV[2], 'PX', ARGV[3])
+end
+return false
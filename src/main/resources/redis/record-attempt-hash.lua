@@ -0,0 +1,28 @@
+-- Hash-layout counterpart of record-attempt.lua. The counter is a field of
+-- the message hash, so it shares the message's TTL by construction.
+-- KEYS[1] = msg:<id>, KEYS[2] = messages:<id>, KEYS[3] = attempts:<id>
+-- ARGV[1] = app.max-tries, ARGV[2] = fallback TTL in ms for a split-key
+-- message without one
+-- Returns the new attempt count.
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    local attempts = redis.call('HINCRBY', KEYS[1], 'attempts', 1)
+    if attempts >= tonumber(ARGV[1]) then
+        redis.call('DEL', KEYS[1])
+    end
+    return attempts
+end
+-- Split-key message written before the layout switch (see record-attempt.lua).
+local attempts = redis.call('INCR', KEYS[3])
+if attempts >= tonumber(ARGV[1]) then
+    redis.call('DEL', KEYS[2], KEYS[3])
+    return attempts
+end
+local pttl = redis.call('PTTL', KEYS[2])
+if pttl > 0 then
+    redis.call('PEXPIRE', KEYS[3], pttl)
+elseif pttl == -2 then
+    redis.call('DEL', KEYS[3])
+else
+    redis.call('PEXPIRE', KEYS[3], ARGV[2])
+end
+return attempts
@@ -0,0 +1,23 @@
+-- Counts one wrong-key attempt against a stored message.
+-- KEYS[1] = messages:<id>, KEYS[2] = attempts:<id>
+-- ARGV[1] = app.max-tries, ARGV[2] = fallback TTL in ms for a message
+-- without one
+-- The counter expires with its message (remaining PTTL, not a fresh full
+-- TTL) so it never outlives it; on exhaustion both keys are deleted.
+-- Returns the new attempt count.
+local attempts = redis.call('INCR', KEYS[2])
+if attempts >= tonumber(ARGV[1]) then
+    redis.call('DEL', KEYS[1], KEYS[2])
+    return attempts
+end
+local pttl = redis.call('PTTL', KEYS[1])
+if pttl > 0 then
+    redis.call('PEXPIRE', KEYS[2], pttl)
+elseif pttl == -2 then
+    -- Message already gone (revealed, expired or exhausted concurrently):
+    -- a counter for it would only be an orphan.
+    redis.call('DEL', KEYS[2])
+else
+    redis.call('PEXPIRE', KEYS[2], ARGV[2])
+end
+return attempts
@@ -0,0 +1,18 @@
+-- Hash-layout counterpart of restore-message.lua. Always writes the hash
+-- layout, so a split-key message that fails a reveal is migrated.
+-- KEYS[1] = msg:<id>
+-- ARGV[1] = payload, ARGV[2] = remaining PTTL at claim time,
+-- ARGV[3] = attempts before this failure, ARGV[4] = app.max-tries,
+-- ARGV[5] = created-at epoch ms, ARGV[6] = size class
+-- Returns the new attempt count.
+local attempts = tonumber(ARGV[3]) + 1
+if attempts >= tonumber(ARGV[4]) then
+    return attempts
+end
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return attempts
+end
+redis.call('HSET', KEYS[1], 'payload', ARGV[1], 'attempts', attempts,
+        'created_at', ARGV[5], 'size_class', ARGV[6])
+redis.call('PEXPIRE', KEYS[1], ARGV[2])
+return attempts
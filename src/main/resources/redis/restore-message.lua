@@ -0,0 +1,14 @@
+-- Compensating step after a claimed message failed to decrypt (wrong key).
+-- KEYS[1] = messages:<id>, KEYS[2] = attempts:<id>
+-- ARGV[1] = payload, ARGV[2] = remaining PTTL at claim time,
+-- ARGV[3] = attempts before this failure, ARGV[4] = app.max-tries
+-- Records the failed attempt and puts the payload back unless the attempt
+-- budget is exhausted, in which case the message stays deleted.
+-- Returns the new attempt count.
+local attempts = tonumber(ARGV[3]) + 1
+if attempts >= tonumber(ARGV[4]) then
+    return attempts
+end
+redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2], 'NX')
+redis.call('SET', KEYS[2], attempts, 'PX', ARGV[2])
+return attempts
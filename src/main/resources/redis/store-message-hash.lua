@@ -0,0 +1,9 @@
+-- Stores a message in the hash layout: one key per message holding the
+-- payload, the attempt counter and metadata under a single TTL.
+-- KEYS[1] = msg:<id>
+-- ARGV[1] = payload, ARGV[2] = created-at epoch ms, ARGV[3] = size class,
+-- ARGV[4] = TTL in ms
+redis.call('HSET', KEYS[1], 'payload', ARGV[1], 'attempts', 0,
+        'created_at', ARGV[2], 'size_class', ARGV[3])
+redis.call('PEXPIRE', KEYS[1], ARGV[4])
+return 1
@@ -0,0 +1,20 @@
+-- Hash-layout counterpart of take-message.lua.
+-- KEYS[1] = msg:<id>, KEYS[2] = messages:<id>, KEYS[3] = attempts:<id>
+-- Returns {payload, remaining PTTL, prior attempts, created-at ms}, or an
+-- empty array when the message does not exist. Messages written in the
+-- split-key layout before the switch are claimed from KEYS[2]/KEYS[3]
+-- (created-at 0: unknown).
+local fields = redis.call('HMGET', KEYS[1], 'payload', 'attempts', 'created_at')
+if fields[1] then
+    local pttl = redis.call('PTTL', KEYS[1])
+    redis.call('DEL', KEYS[1])
+    return {fields[1], pttl, tonumber(fields[2] or '0'), tonumber(fields[3] or '0')}
+end
+local payload = redis.call('GET', KEYS[2])
+if not payload then
+    return {}
+end
+local pttl = redis.call('PTTL', KEYS[2])
+local attempts = tonumber(redis.call('GET', KEYS[3]) or '0')
+redis.call('DEL', KEYS[2], KEYS[3])
+return {payload, pttl, attempts, 0}
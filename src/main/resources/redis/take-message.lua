@@ -0,0 +1,13 @@
+-- Atomically claims a message for reveal.
+-- KEYS[1] = messages:<id>, KEYS[2] = attempts:<id>
+-- Returns {payload, remaining PTTL, prior wrong-key attempts}, or an empty
+-- array when the message does not exist. Both keys are gone once this
+-- script returns, so no other caller can observe or claim the same payload.
+local payload = redis.call('GET', KEYS[1])
+if not payload then
+    return {}
+end
+local pttl = redis.call('PTTL', KEYS[1])
+local attempts = tonumber(redis.call('GET', KEYS[2]) or '0')
+redis.call('DEL', KEYS[1], KEYS[2])
+return {payload, pttl, attempts}
@@ -0,0 +1,72 @@
+package com.secret_message.secret_message_app.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 20_000;
+
+    @Test
+    void shardFor_isDeterministic() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("0", "1", "2"), 160);
+        ConsistentHashRing rebuilt = new ConsistentHashRing(List.of("2", "0", "1"), 160);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(ring.shardFor("key-" + i), rebuilt.shardFor("key-" + i));
+        }
+    }
+
+    @Test
+    void shardFor_spreadsKeysRoughlyEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("0", "1", "2", "3"), 160);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.shardFor("key-" + i), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        counts.values().forEach(count ->
+                assertTrue(Math.abs(count - KEYS / 4) < KEYS / 4 * 0.2, "Uneven spread: " + counts));
+    }
+
+    @Test
+    void addingAShard_movesOnlyKeysToTheNewShard() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("0", "1", "2"), 160);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("0", "1", "2", "3"), 160);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String from = before.shardFor("key-" + i);
+            String to = after.shardFor("key-" + i);
+            if (!from.equals(to)) {
+                assertEquals("3", to, "A key may only move to the added shard");
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS / 4 * 0.8 && moved < KEYS / 4 * 1.2, "Expected ~1/4 of keys to move: " + moved);
+    }
+
+    @Test
+    void share_sumsToOneAcrossShards() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("0", "1", "2"), 160);
+
+        double total = ring.share("0") + ring.share("1") + ring.share("2");
+
+        assertEquals(1.0, total, 1e-9);
+        assertEquals(0.0, ring.share("unknown"));
+        assertEquals(1.0, new ConsistentHashRing(List.of("0"), 1).share("0"));
+    }
+
+    @Test
+    void emptyRing_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(), 160));
+    }
+}
@@ -0,0 +1,202 @@
+package com.secret_message.secret_message_app.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryMessageStoreTest {
+
+    private static final long TTL = TimeUnit.MINUTES.toMillis(10);
+
+    /** Clock the test moves by hand. */
+    private static final class ManualClock extends Clock {
+        private long millis = 1_700_000_000_000L;
+
+        void advance(long delta) {
+            millis += delta;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+
+    private final ManualClock clock = new ManualClock();
+    private final OffHeapPayloadPool pool = new OffHeapPayloadPool(16L * 1024 * 1024, 1024 * 1024, new SimpleMeterRegistry());
+    private final InMemoryMessageStore store = new InMemoryMessageStore(pool, clock, TTL, 3, false);
+
+    @Test
+    void takeMessage_returnsPayloadOnce() {
+        store.storeEncryptedPayload("m1", new byte[]{1, 2, 3});
+        clock.advance(1_000);
+
+        TakenMessage taken = store.takeMessage("m1");
+
+        assertNotNull(taken);
+        assertArrayEquals(new byte[]{1, 2, 3}, taken.payload());
+        assertEquals(TTL - 1_000, taken.remainingTtlMillis());
+        assertEquals(0, taken.attempts());
+        assertNull(store.takeMessage("m1"));
+        assertNull(store.getEncryptedPayload("m1"));
+        assertEquals(0, pool.usedBytes());
+    }
+
+    @Test
+    void restoreAfterFailedAttempt_countsAndExhausts() {
+        store.storeEncryptedPayload("m2", new byte[]{1});
+
+        assertFalse(store.restoreAfterFailedAttempt("m2", store.takeMessage("m2")));
+        assertFalse(store.restoreAfterFailedAttempt("m2", store.takeMessage("m2")));
+        TakenMessage last = store.takeMessage("m2");
+        assertEquals(2, last.attempts());
+        assertTrue(store.restoreAfterFailedAttempt("m2", last));
+        assertNull(store.getEncryptedPayload("m2"));
+    }
+
+    @Test
+    void incrementAndCheckAttempt_deletesOnExhaustion_andIgnoresMissingMessages() {
+        store.storeEncryptedPayload("m3", new byte[]{1});
+
+        assertFalse(store.incrementAndCheckAttempt("m3"));
+        assertFalse(store.incrementAndCheckAttempt("m3"));
+        assertTrue(store.incrementAndCheckAttempt("m3"));
+        assertNull(store.getEncryptedPayload("m3"));
+        assertFalse(store.incrementAndCheckAttempt("missing"));
+    }
+
+    @Test
+    void expiredMessages_areInvisible_andSweptByTheWheel() {
+        store.storeEncryptedPayload("m4", new byte[]{1});
+        store.storeEncryptedPayload("m5", new byte[]{1});
+        clock.advance(TTL);
+
+        assertNull(store.getEncryptedPayload("m4"));
+        assertNull(store.takeMessage("m4"));
+        assertFalse(store.deleteIfPresent("m4"));
+
+        store.expire();
+        assertEquals(0, store.size());
+        assertEquals(0, pool.usedBytes(), "Expired payloads must release their blocks");
+    }
+
+    @Test
+    void wheel_keepsEntriesThatAreNotDueYet() {
+        InMemoryMessageStore longLived = new InMemoryMessageStore(pool, clock, TimeUnit.DAYS.toMillis(2), 3, false);
+        longLived.storeEncryptedPayload("m6", new byte[]{1});
+
+        // Passes the entry's slot many times before its deadline.
+        for (int i = 0; i < 47; i++) {
+            clock.advance(TimeUnit.HOURS.toMillis(1));
+            longLived.expire();
+        }
+        assertEquals(1, longLived.size());
+
+        clock.advance(TimeUnit.HOURS.toMillis(1));
+        longLived.expire();
+        assertEquals(0, longLived.size());
+    }
+
+    @Test
+    void chunks_areReadByIndex_andFreedOnDelete() {
+        store.appendChunk("c1", new byte[]{1, 1});
+        store.appendChunk("c1", new byte[]{2, 2});
+
+        assertArrayEquals(new byte[]{1, 1}, store.getChunk("c1", 0));
+        assertArrayEquals(new byte[]{2, 2}, store.getChunk("c1", 1));
+        assertNull(store.getChunk("c1", 2));
+
+        store.deleteChunks("c1");
+        assertNull(store.getChunk("c1", 0));
+        assertEquals(0, pool.usedBytes());
+    }
+
+    @Test
+    void chunks_outliveTheirMessage_thenExpire() {
+        store.appendChunk("c2", new byte[]{1});
+        store.storeEncryptedPayload("c2", new byte[]{9});
+        clock.advance(TTL);
+
+        assertNull(store.getEncryptedPayload("c2"));
+        assertArrayEquals(new byte[]{1}, store.getChunk("c2", 0));
+
+        clock.advance(InMemoryMessageStore.TICK_MILLIS);
+        store.expire();
+        assertNull(store.getChunk("c2", 0));
+        assertEquals(0, pool.usedBytes(), "Expired chunks must release their blocks");
+    }
+
+    @Test
+    void idempotentCreate_writesOnce_andReturnsTheWinningRecord() {
+        assertNull(store.storeEncryptedPayloadWithIdempotencyRecord("first", new byte[]{1}, "key", "{\"a\":1}"));
+
+        assertEquals("{\"a\":1}",
+                store.storeEncryptedPayloadWithIdempotencyRecord("second", new byte[]{2}, "key", "{\"a\":2}"));
+        assertNull(store.getEncryptedPayload("second"), "The losing create must not leave a message behind");
+        assertFalse(store.storeIdempotencyRecordIfAbsent("key", "{\"a\":3}"));
+
+        clock.advance(TTL);
+        assertNull(store.getIdempotencyRecord("key"));
+        assertTrue(store.storeIdempotencyRecordIfAbsent("key", "{\"a\":4}"));
+    }
+
+    @Test
+    void concurrentTakes_exactlyOneWins() throws Exception {
+        String id = UUID.randomUUID().toString();
+        store.storeEncryptedPayload(id, new byte[]{1});
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<TakenMessage> winners = new ConcurrentLinkedQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                pool.submit(() -> {
+                    start.await();
+                    TakenMessage taken = store.takeMessage(id);
+                    if (taken != null) {
+                        winners.add(taken);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, winners.size());
+    }
+}
@@ -0,0 +1,89 @@
+package com.secret_message.secret_message_app.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapPayloadPoolTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void store_read_roundTripsAcrossSizeClasses() {
+        OffHeapPayloadPool pool = new OffHeapPayloadPool(64L * 1024 * 1024, 1024 * 1024, meterRegistry);
+
+        for (int length : new int[]{0, 1, 255, 256, 257, 70_000, 1024 * 1024 + 33}) {
+            byte[] payload = new byte[length];
+            Arrays.fill(payload, (byte) 0x5A);
+            OffHeapPayloadPool.Block block = pool.store(payload);
+            assertArrayEquals(payload, block.read());
+            block.free();
+        }
+        assertEquals(0, pool.usedBytes());
+    }
+
+    @Test
+    void free_zeroesTheBlockBeforeReuse() throws Exception {
+        OffHeapPayloadPool pool = new OffHeapPayloadPool(64L * 1024 * 1024, 1024 * 1024, meterRegistry);
+        byte[] secret = new byte[300];
+        Arrays.fill(secret, (byte) 0x7F);
+
+        OffHeapPayloadPool.Block block = pool.store(secret);
+        ByteBuffer memory = memoryOf(block);
+        block.free();
+
+        for (int i = 0; i < memory.capacity(); i++) {
+            assertEquals(0, memory.get(i), "Freed block must hold no payload bytes");
+        }
+        assertThrows(IllegalStateException.class, block::read);
+        block.free(); // double free is a no-op
+        assertEquals(0, pool.usedBytes());
+    }
+
+    @Test
+    void freedBlocks_areReusedInsteadOfNewSlabs() {
+        OffHeapPayloadPool pool = new OffHeapPayloadPool(64L * 1024 * 1024, 1024 * 1024, meterRegistry);
+
+        pool.store(new byte[100]).free();
+        long reserved = pool.reservedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            pool.store(new byte[100]).free();
+        }
+        assertEquals(reserved, pool.reservedBytes());
+        assertEquals(OffHeapPayloadPool.SLAB_BYTES, reserved);
+    }
+
+    @Test
+    void store_beyondTheCap_isRejected() {
+        OffHeapPayloadPool pool = new OffHeapPayloadPool(2L * 1024 * 1024, 1024 * 1024, meterRegistry);
+
+        pool.store(new byte[1024 * 1024 + 33]);
+
+        assertThrows(IllegalStateException.class, () -> pool.store(new byte[10]));
+        assertEquals(1.0, meterRegistry.get("storage.offheap.allocations.rejected").counter().count());
+        assertTrue(pool.usedBytes() <= pool.reservedBytes());
+    }
+
+    @Test
+    void sizeClassFor_roundsUpToPowersOfTwo() {
+        assertEquals(0, OffHeapPayloadPool.sizeClassFor(0));
+        assertEquals(0, OffHeapPayloadPool.sizeClassFor(256));
+        assertEquals(1, OffHeapPayloadPool.sizeClassFor(257));
+        assertEquals(12, OffHeapPayloadPool.sizeClassFor(1024 * 1024));
+        assertEquals(13, OffHeapPayloadPool.sizeClassFor(1024 * 1024 + 1));
+    }
+
+    private static ByteBuffer memoryOf(OffHeapPayloadPool.Block block) throws Exception {
+        Field memory = OffHeapPayloadPool.Block.class.getDeclaredField("memory");
+        memory.setAccessible(true);
+        return (ByteBuffer) memory.get(block);
+    }
+}
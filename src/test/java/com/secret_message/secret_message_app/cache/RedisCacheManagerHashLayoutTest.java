@@ -0,0 +1,126 @@
+package com.secret_message.secret_message_app.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "app.storage.layout=hash")
+@Testcontainers
+class RedisCacheManagerHashLayoutTest {
+
+    @Container
+    static final GenericContainer<?> redisContainer =
+            new GenericContainer<>("redis:7.0.5").withExposedPorts(6379);
+
+    @Container
+    static final GenericContainer<?> natsContainer =
+            new GenericContainer<>("nats:2.10.7-alpine").withExposedPorts(4222);
+
+    @DynamicPropertySource
+    static void containerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.host", redisContainer::getHost);
+        registry.add("spring.redis.port", () -> redisContainer.getMappedPort(6379));
+        registry.add("nats.server.url",
+                () -> "nats://" + natsContainer.getHost() + ":" + natsContainer.getMappedPort(4222));
+    }
+
+    @Autowired
+    private RedisCacheManager redisCacheManager;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @AfterEach
+    void cleanup() {
+        redisTemplate.execute((org.springframework.data.redis.connection.RedisConnection conn) -> {
+            conn.serverCommands().flushDb();
+            return null;
+        });
+    }
+
+    @Test
+    void storeEncryptedPayload_writesOneHashWithMetadataAndTtl() {
+        byte[] payload = {0x01, 0x02, 0x03};
+
+        redisCacheManager.storeEncryptedPayload("hash-msg", payload);
+
+        assertEquals(1, redisTemplate.keys("*").size(), "Exactly one key per message");
+        assertEquals("0", redisTemplate.opsForHash().get("msg:hash-msg", "attempts"));
+        assertEquals("0", redisTemplate.opsForHash().get("msg:hash-msg", "size_class"));
+        assertNotNull(redisTemplate.opsForHash().get("msg:hash-msg", "created_at"));
+        assertTrue(redisTemplate.getExpire("msg:hash-msg") > 0);
+        assertArrayEquals(payload, redisCacheManager.getEncryptedPayload("hash-msg"));
+    }
+
+    @Test
+    void incrementAndCheckAttempt_countsInsideHash_andDeletesOnExhaustion() {
+        redisCacheManager.storeEncryptedPayload("hash-attempts", new byte[]{0x01});
+
+        assertFalse(redisCacheManager.incrementAndCheckAttempt("hash-attempts"));
+        assertEquals("1", redisTemplate.opsForHash().get("msg:hash-attempts", "attempts"));
+        assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("attempts:hash-attempts")),
+                "No separate counter key in the hash layout");
+
+        assertFalse(redisCacheManager.incrementAndCheckAttempt("hash-attempts"));
+        assertTrue(redisCacheManager.incrementAndCheckAttempt("hash-attempts"));
+        assertNull(redisCacheManager.getEncryptedPayload("hash-attempts"));
+    }
+
+    @Test
+    void takeAndRestore_keepAttemptsAndCreationTime() {
+        redisCacheManager.storeEncryptedPayload("hash-take", new byte[]{0x01, 0x05});
+        Object createdAt = redisTemplate.opsForHash().get("msg:hash-take", "created_at");
+
+        TakenMessage taken = redisCacheManager.takeMessage("hash-take");
+        assertNotNull(taken);
+        assertEquals(0, taken.attempts());
+        assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("msg:hash-take")));
+
+        assertFalse(redisCacheManager.restoreAfterFailedAttempt("hash-take", taken));
+        assertEquals("1", redisTemplate.opsForHash().get("msg:hash-take", "attempts"));
+        assertEquals(createdAt, redisTemplate.opsForHash().get("msg:hash-take", "created_at"));
+        assertNull(redisCacheManager.takeMessage("missing"));
+    }
+
+    @Test
+    void splitKeyMessageFromBeforeTheSwitch_isStillClaimed() {
+        redisTemplate.opsForValue().set("messages:old-msg", "QUJD");
+        redisTemplate.expire("messages:old-msg", java.time.Duration.ofMinutes(5));
+        redisTemplate.opsForValue().set("attempts:old-msg", "1");
+
+        TakenMessage taken = redisCacheManager.takeMessage("old-msg");
+
+        assertNotNull(taken);
+        assertEquals("QUJD", new String(taken.payload(), StandardCharsets.US_ASCII));
+        assertEquals(1, taken.attempts());
+
+        // A failed reveal migrates it to the hash layout.
+        assertFalse(redisCacheManager.restoreAfterFailedAttempt("old-msg", taken));
+        assertEquals("2", redisTemplate.opsForHash().get("msg:old-msg", "attempts"));
+        assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("messages:old-msg")));
+    }
+
+    @Test
+    void sizeClass_bucketsPayloadLengths() {
+        assertEquals(0, RedisCacheManager.sizeClass(1024));
+        assertEquals(1, RedisCacheManager.sizeClass(1025));
+        assertEquals(2, RedisCacheManager.sizeClass(1024 * 1024));
+        assertEquals(3, RedisCacheManager.sizeClass(1024 * 1024 + 1));
+    }
+}
@@ -11,17 +11,25 @@ import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@SpringBootTest
+// No background scans: the keyspace test drives its own.
+@SpringBootTest(properties = "app.metrics.keyspace-scan-interval=0")
 @Testcontainers
 class RedisCacheManagerTest {
 
@@ -47,6 +55,12 @@ class RedisCacheManagerTest {
     @Autowired
     private StringRedisTemplate redisTemplate;
 
+    @Autowired
+    private KeyspaceMetrics keyspaceMetrics;
+
+    @Autowired
+    private KeyspaceReconciler keyspaceReconciler;
+
     @AfterEach
     void cleanup() {
         redisTemplate.execute((org.springframework.data.redis.connection.RedisConnection conn) -> {
@@ -94,4 +108,198 @@ class RedisCacheManagerTest {
         assertEquals(1, winners, "Exactly one caller should report a successful delete");
         assertEquals(parallelism, results.size(), "All callers should report a result");
     }
+
+    @Test
+    void takeMessageAsync_manyCallsInFlightAtOnce_eachMessageClaimedOnce() {
+        int messages = 200;
+        for (int i = 0; i < messages; i++) {
+            redisCacheManager.storeEncryptedPayload("async-" + i, new byte[]{0x01, (byte) i});
+        }
+
+        // Issue every claim before waiting on any; they share one connection.
+        List<CompletableFuture<TakenMessage>> claims = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            claims.add(redisCacheManager.takeMessageAsync("async-" + i));
+            claims.add(redisCacheManager.takeMessageAsync("async-" + i));
+        }
+        CompletableFuture.allOf(claims.toArray(CompletableFuture[]::new)).join();
+
+        for (int i = 0; i < messages; i++) {
+            TakenMessage first = claims.get(2 * i).join();
+            assertNotNull(first);
+            assertArrayEquals(new byte[]{0x01, (byte) i}, first.payload());
+            assertNull(claims.get(2 * i + 1).join(), "A second claim must find nothing");
+        }
+    }
+
+    @Test
+    void scripts_stillRunAfterTheServerScriptCacheIsFlushed() {
+        redisCacheManager.storeEncryptedMessage("noscript-msg", "ciphertext");
+        redisTemplate.execute((org.springframework.data.redis.connection.RedisConnection conn) -> {
+            conn.scriptingCommands().scriptFlush();
+            return null;
+        });
+
+        assertFalse(redisCacheManager.incrementAndCheckAttempt("noscript-msg"));
+        assertNotNull(redisCacheManager.takeMessage("noscript-msg"));
+    }
+
+    @Test
+    void takeMessage_returnsPayloadOnce_andRemovesAttemptCounter() {
+        redisCacheManager.storeEncryptedMessage("take-msg", "ciphertext");
+        redisCacheManager.incrementAndCheckAttempt("take-msg");
+
+        TakenMessage taken = redisCacheManager.takeMessage("take-msg");
+
+        assertNotNull(taken);
+        assertEquals("ciphertext", new String(taken.payload(), StandardCharsets.UTF_8));
+        assertEquals(1, taken.attempts());
+        assertTrue(taken.remainingTtlMillis() > 0);
+        assertNull(redisCacheManager.getEncryptedMessageById("take-msg"));
+        assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("attempts:take-msg")));
+        assertNull(redisCacheManager.takeMessage("take-msg"), "A second take must find nothing");
+    }
+
+    @Test
+    void restoreAfterFailedAttempt_putsPayloadBackWithAttemptCounted() {
+        redisCacheManager.storeEncryptedMessage("restore-msg", "ciphertext");
+
+        TakenMessage taken = redisCacheManager.takeMessage("restore-msg");
+        assertFalse(redisCacheManager.restoreAfterFailedAttempt("restore-msg", taken));
+
+        assertEquals("ciphertext", redisCacheManager.getEncryptedMessageById("restore-msg"));
+        assertEquals("1", redisTemplate.opsForValue().get("attempts:restore-msg"));
+        assertTrue(redisCacheManager.getAttemptKeyTtl("restore-msg") > 0);
+    }
+
+    @Test
+    void restoreAfterFailedAttempt_onLastAttempt_leavesMessageDeleted() {
+        redisCacheManager.storeEncryptedMessage("exhaust-msg", "ciphertext");
+
+        for (int i = 0; i < 2; i++) {
+            assertFalse(redisCacheManager.restoreAfterFailedAttempt(
+                    "exhaust-msg", redisCacheManager.takeMessage("exhaust-msg")));
+        }
+        assertTrue(redisCacheManager.restoreAfterFailedAttempt(
+                "exhaust-msg", redisCacheManager.takeMessage("exhaust-msg")));
+
+        assertNull(redisCacheManager.getEncryptedMessageById("exhaust-msg"));
+    }
+
+    @Test
+    void takeMessage_underConcurrency_onlyOneCallerGetsPayload() throws InterruptedException {
+        redisCacheManager.storeEncryptedMessage("race-take", "ciphertext");
+
+        int parallelism = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(parallelism);
+        ConcurrentLinkedQueue<Boolean> results = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < parallelism; i++) {
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    results.add(redisCacheManager.takeMessage("race-take") != null);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        boolean finished = done.await(10, TimeUnit.SECONDS);
+        pool.shutdownNow();
+
+        assertTrue(finished, "All workers should finish within timeout");
+        assertEquals(1, results.stream().filter(Boolean::booleanValue).count(),
+                "Exactly one caller should claim the payload");
+    }
+
+    @Test
+    void incrementAndCheckAttempt_counterExpiresWithMessage() {
+        redisCacheManager.storeEncryptedMessage("ttl-msg", "ciphertext");
+        redisTemplate.expire("messages:ttl-msg", 60, TimeUnit.SECONDS);
+
+        assertFalse(redisCacheManager.incrementAndCheckAttempt("ttl-msg"));
+
+        Long counterTtl = redisTemplate.getExpire("attempts:ttl-msg", TimeUnit.MILLISECONDS);
+        assertNotNull(counterTtl);
+        assertTrue(counterTtl > 0 && counterTtl <= 60_000,
+                "Counter must inherit the message's remaining TTL (got " + counterTtl + "ms)");
+    }
+
+    @Test
+    void incrementAndCheckAttempt_onExhaustion_deletesMessageAndCounter() {
+        redisCacheManager.storeEncryptedMessage("exhaust-attempts", "ciphertext");
+
+        assertFalse(redisCacheManager.incrementAndCheckAttempt("exhaust-attempts"));
+        assertFalse(redisCacheManager.incrementAndCheckAttempt("exhaust-attempts"));
+        assertTrue(redisCacheManager.incrementAndCheckAttempt("exhaust-attempts"));
+
+        assertNull(redisCacheManager.getEncryptedMessageById("exhaust-attempts"));
+        assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("attempts:exhaust-attempts")));
+    }
+
+    @Test
+    void incrementAndCheckAttempt_forMissingMessage_leavesNoOrphanCounter() {
+        assertFalse(redisCacheManager.incrementAndCheckAttempt("gone-msg"));
+
+        assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("attempts:gone-msg")));
+    }
+
+    @Test
+    void storeEncryptedPayload_roundTripsRawBytes() {
+        byte[] payload = {0x01, 0x00, (byte) 0xFF, 0x7F, (byte) 0x80};
+
+        redisCacheManager.storeEncryptedPayload("binary-msg", payload);
+
+        assertArrayEquals(payload, redisCacheManager.getEncryptedPayload("binary-msg"));
+        assertArrayEquals(payload, redisCacheManager.takeMessage("binary-msg").payload());
+    }
+
+    @Test
+    void getEncryptedPayload_readsLegacyBase64EntryAsAsciiBytes() {
+        redisCacheManager.storeEncryptedMessage("legacy-msg", "QUJD");
+
+        assertArrayEquals("QUJD".getBytes(StandardCharsets.US_ASCII),
+                redisCacheManager.getEncryptedPayload("legacy-msg"));
+    }
+
+    @Test
+    void chunks_appendInOrder_expireAfterTheMessage_andAreUnlinked() {
+        redisCacheManager.appendChunk("chunked-msg", new byte[]{1, 2});
+        redisCacheManager.appendChunk("chunked-msg", new byte[]{3});
+
+        assertArrayEquals(new byte[]{1, 2}, redisCacheManager.getChunk("chunked-msg", 0));
+        assertArrayEquals(new byte[]{3}, redisCacheManager.getChunk("chunked-msg", 1));
+        assertNull(redisCacheManager.getChunk("chunked-msg", 2));
+        Long chunksTtl = redisTemplate.getExpire("chunks:chunked-msg", TimeUnit.MILLISECONDS);
+        assertNotNull(chunksTtl);
+        assertTrue(chunksTtl > TimeUnit.DAYS.toMillis(2), "Chunks must outlive their message (got " + chunksTtl + "ms)");
+
+        redisCacheManager.deleteChunks("chunked-msg");
+        assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("chunks:chunked-msg")));
+    }
+
+    @Test
+    void keyspaceMetrics_followWrites_andAreRecountedFromAScan() {
+        long before = keyspaceMetrics.messages();
+        redisCacheManager.storeEncryptedPayload("counted-1", new byte[]{1, 2, 3});
+        redisCacheManager.storeEncryptedPayload("counted-2", new byte[]{4});
+        assertEquals(before + 2, keyspaceMetrics.messages());
+        redisCacheManager.takeMessage("counted-2");
+        assertEquals(before + 1, keyspaceMetrics.messages());
+
+        // Keys the write paths never saw, as if counted-1 had been the only survivor.
+        redisTemplate.opsForValue().set("idempotency:scan-test", "{}");
+        redisTemplate.opsForValue().set("ratelimit:203.0.113.9", "bucket");
+        keyspaceReconciler.reconcile().join();
+
+        assertEquals(1, keyspaceMetrics.messages());
+        assertEquals(1, keyspaceMetrics.idempotencyRecords());
+        assertEquals(1, keyspaceMetrics.rateLimitBuckets());
+        assertTrue(keyspaceMetrics.rateLimitBytes() > 0);
+    }
 }
@@ -0,0 +1,89 @@
+package com.secret_message.secret_message_app.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedisShardRouterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private static RedisShard shard(String id) {
+        // Routing never touches the templates.
+        return new RedisShard(id, null, null, null);
+    }
+
+    @Test
+    void singleShard_keepsPlainUuidIds() {
+        RedisShardRouter router = new RedisShardRouter(List.of(shard("0")), Set.of(), meterRegistry);
+
+        String messageId = router.newMessageId();
+
+        assertEquals(messageId, UUID.fromString(messageId).toString());
+        assertEquals("0", router.forMessage(messageId).id());
+    }
+
+    @Test
+    void sharded_encodesShardInIdAndRoutesBackToIt() {
+        RedisShardRouter router = new RedisShardRouter(
+                List.of(shard("0"), shard("1"), shard("2")), Set.of(), meterRegistry);
+
+        for (int i = 0; i < 100; i++) {
+            String messageId = router.newMessageId();
+            String shardId = messageId.substring(0, messageId.indexOf('.'));
+            assertEquals(shardId, router.forMessage(messageId).id());
+        }
+        assertEquals(100, meterRegistry.find("storage.shard.messages.created").counters().stream()
+                .mapToDouble(c -> c.count()).sum());
+    }
+
+    @Test
+    void idempotentCreate_landsOnTheIdempotencyKeysShard() {
+        RedisShardRouter router = new RedisShardRouter(
+                List.of(shard("0"), shard("1"), shard("2")), Set.of(), meterRegistry);
+
+        for (int i = 0; i < 100; i++) {
+            String idempotencyKey = UUID.randomUUID().toString();
+            assertEquals(router.forKey(idempotencyKey).id(),
+                    router.forMessage(router.newMessageId(idempotencyKey)).id());
+        }
+    }
+
+    @Test
+    void unprefixedAndUnknownIds_routeToPrimary() {
+        RedisShardRouter router = new RedisShardRouter(List.of(shard("0"), shard("1")), Set.of(), meterRegistry);
+
+        assertEquals("0", router.forMessage(UUID.randomUUID().toString()).id());
+        assertEquals("0", router.forMessage("9." + UUID.randomUUID()).id());
+        assertEquals("1", router.forMessage("1." + UUID.randomUUID()).id());
+    }
+
+    @Test
+    void drainingShard_getsNoNewMessagesButStillServesOldOnes() {
+        RedisShardRouter router = new RedisShardRouter(
+                List.of(shard("0"), shard("1")), Set.of("0"), meterRegistry);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(router.newMessageId().startsWith("1."));
+        }
+        assertEquals("0", router.forMessage("0." + UUID.randomUUID()).id());
+        assertEquals(0.0, meterRegistry.get("storage.shard.ring.share").tag("shard", "0").gauge().value());
+    }
+
+    @Test
+    void invalidTopologies_areRejected() {
+        assertThrows(IllegalStateException.class,
+                () -> new RedisShardRouter(List.of(shard("1")), Set.of(), meterRegistry));
+        assertThrows(IllegalStateException.class,
+                () -> new RedisShardRouter(List.of(shard("0"), shard("0")), Set.of(), meterRegistry));
+        assertThrows(IllegalStateException.class,
+                () -> new RedisShardRouter(List.of(shard("0")), Set.of("0"), meterRegistry));
+    }
+}
@@ -0,0 +1,92 @@
+package com.secret_message.secret_message_app.cache;
+
+import com.secret_message.secret_message_app.idempotency.IdempotencyService;
+import com.secret_message.secret_message_app.idempotency.IdempotentCreateResult;
+import com.secret_message.secret_message_app.model.SecretMessageIdentifier;
+import com.secret_message.secret_message_app.service.SecretMessageService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Testcontainers
+class RedisShardingIntegrationTest {
+
+    @Container
+    static final GenericContainer<?> redisContainer =
+            new GenericContainer<>("redis:7.0.5").withExposedPorts(6379);
+
+    @Container
+    static final GenericContainer<?> secondRedisContainer =
+            new GenericContainer<>("redis:7.0.5").withExposedPorts(6379);
+
+    @Container
+    static final GenericContainer<?> natsContainer =
+            new GenericContainer<>("nats:2.10.7-alpine").withExposedPorts(4222);
+
+    @DynamicPropertySource
+    static void containerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.host", redisContainer::getHost);
+        registry.add("spring.redis.port", () -> redisContainer.getMappedPort(6379));
+        registry.add("app.redis.shards", () -> "1=" + secondRedisContainer.getHost()
+                + ":" + secondRedisContainer.getMappedPort(6379));
+        registry.add("nats.server.url",
+                () -> "nats://" + natsContainer.getHost() + ":" + natsContainer.getMappedPort(4222));
+    }
+
+    @Autowired
+    private SecretMessageService secretMessageService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private RedisShardRouter shards;
+
+    @Test
+    void messagesSpreadOverShards_andRevealFromTheShardInTheirId() throws Exception {
+        Set<String> usedShards = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            SecretMessageIdentifier identifier = secretMessageService.createSecretMessage("sharded " + i);
+            String messageId = identifier.getMessageId();
+            String shardId = messageId.substring(0, messageId.indexOf('.'));
+            usedShards.add(shardId);
+
+            RedisShard other = shards.forMessage(("0".equals(shardId) ? "1" : "0") + "." + UUID.randomUUID());
+            assertTrue(Boolean.TRUE.equals(shards.forMessage(messageId).strings().hasKey("messages:" + messageId)));
+            assertFalse(Boolean.TRUE.equals(other.strings().hasKey("messages:" + messageId)));
+
+            assertEquals("sharded " + i, secretMessageService.getEncryptedMessageById(messageId, identifier.getAeskey()));
+        }
+        assertEquals(Set.of("0", "1"), usedShards);
+    }
+
+    @Test
+    void idempotentCreate_keepsMessageAndRecordOnOneShard() {
+        String idempotencyKey = UUID.randomUUID().toString();
+        String bodyHash = idempotencyService.hashBody("co-located");
+
+        IdempotentCreateResult first = secretMessageService.createSecretMessage("co-located", idempotencyKey, bodyHash);
+        IdempotentCreateResult retry = secretMessageService.createSecretMessage("co-located", idempotencyKey, bodyHash);
+
+        String messageId = first.created().getMessageId();
+        RedisShard shard = shards.forKey(idempotencyKey);
+        assertTrue(messageId.startsWith(shard.id() + "."));
+        assertTrue(Boolean.TRUE.equals(shard.strings().hasKey("idempotency:" + idempotencyKey)));
+        assertTrue(retry.isReplay());
+        assertEquals(messageId, retry.existing().messageId());
+    }
+}
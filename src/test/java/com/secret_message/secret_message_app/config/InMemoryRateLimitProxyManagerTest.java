@@ -0,0 +1,47 @@
+package com.secret_message.secret_message_app.config;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConsumptionProbe;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryRateLimitProxyManagerTest {
+
+    private final InMemoryRateLimitProxyManager proxyManager = new InMemoryRateLimitProxyManager();
+    private final BucketConfiguration configuration = BucketConfiguration.builder()
+            .addLimit(Bandwidth.simple(3, Duration.ofDays(1)))
+            .build();
+
+    @Test
+    void asyncBucket_sharesStateWithTheBlockingOne() {
+        byte[] key = "ratelimit:203.0.113.7".getBytes(StandardCharsets.UTF_8);
+        assertTrue(proxyManager.isAsyncModeSupported());
+
+        CompletableFuture<ConsumptionProbe> first = proxyManager.asAsync().builder()
+                .build(key, () -> CompletableFuture.completedFuture(configuration))
+                .tryConsumeAndReturnRemaining(2);
+        assertTrue(first.isDone());
+        assertEquals(1, first.join().getRemainingTokens());
+
+        assertTrue(proxyManager.builder().build(key, () -> configuration).tryConsume(1));
+        assertFalse(proxyManager.asAsync().builder()
+                .build(key, () -> CompletableFuture.completedFuture(configuration))
+                .tryConsumeAndReturnRemaining(1).join().isConsumed());
+    }
+
+    @Test
+    void removeAsync_dropsTheBucket() {
+        byte[] key = "ratelimit:203.0.113.8".getBytes(StandardCharsets.UTF_8);
+        proxyManager.builder().build(key, () -> configuration).tryConsume(3);
+
+        proxyManager.asAsync().removeProxy(key).join();
+
+        assertTrue(proxyManager.builder().build(key, () -> configuration).tryConsume(3));
+    }
+}
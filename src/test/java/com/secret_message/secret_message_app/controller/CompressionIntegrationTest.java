@@ -0,0 +1,105 @@
+package com.secret_message.secret_message_app.controller;
+
+import com.secret_message.secret_message_app.cache.MessageStore;
+import com.secret_message.secret_message_app.dto.CreateMessageRequest;
+import com.secret_message.secret_message_app.dto.CreateMessageResponse;
+import com.secret_message.secret_message_app.dto.RevealRequest;
+import com.secret_message.secret_message_app.dto.RevealResponse;
+import com.secret_message.secret_message_app.utils.CryptoUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The servlet API with {@code app.storage.compression.enabled=true}.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "app.storage.compression.enabled=true",
+                "app.storage.compression.min-bytes=256",
+                "app.rate-limit.requests-per-day=1000"
+        }
+)
+@Testcontainers
+class CompressionIntegrationTest {
+
+    @Container
+    static final GenericContainer<?> redisContainer =
+            new GenericContainer<>("redis:7.0.5").withExposedPorts(6379);
+
+    @Container
+    static final GenericContainer<?> natsContainer =
+            new GenericContainer<>("nats:2.10.7-alpine").withExposedPorts(4222);
+
+    @DynamicPropertySource
+    static void containerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.host", redisContainer::getHost);
+        registry.add("spring.redis.port", () -> redisContainer.getMappedPort(6379));
+        registry.add("nats.server.url",
+                () -> "nats://" + natsContainer.getHost() + ":" + natsContainer.getMappedPort(4222));
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void createReveal_compressibleMessage_isStoredCompressed_andRevealedIntact() {
+        String secret = "-----BEGIN CERTIFICATE-----\nMIIB\u00e9\u20ac\n".repeat(200);
+
+        CreateMessageResponse created = create(secret);
+
+        byte[] stored = messageStore.getEncryptedPayload(created.messageId());
+        assertTrue(CryptoUtil.isCompressedPayload(stored));
+        assertTrue(stored.length * 3 < CryptoUtil.binaryPayloadLength(CryptoUtil.utf8Length(secret)));
+        assertTrue(meterRegistry.get("storage.compression.ratio").summary().count() > 0);
+        assertTrue(meterRegistry.get("storage.compression.bytes.saved").counter().count() > 0);
+
+        assertEquals(secret, reveal(created));
+    }
+
+    @Test
+    void createReveal_messageUnderTheThreshold_isStoredUncompressed() {
+        CreateMessageResponse created = create("short secret");
+
+        byte[] stored = messageStore.getEncryptedPayload(created.messageId());
+        assertTrue(CryptoUtil.isAuthenticatedPayload(stored));
+        assertFalse(CryptoUtil.isCompressedPayload(stored));
+        assertEquals("short secret", reveal(created));
+    }
+
+    private CreateMessageResponse create(String secret) {
+        ResponseEntity<CreateMessageResponse> created = restTemplate.postForEntity(
+                "/api/v1/messages", new CreateMessageRequest(secret), CreateMessageResponse.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        return created.getBody();
+    }
+
+    private String reveal(CreateMessageResponse created) {
+        RevealRequest reveal = new RevealRequest(created.messageId(),
+                Base64.getEncoder().encodeToString(created.aesKey()));
+        ResponseEntity<RevealResponse> response =
+                restTemplate.postForEntity("/api/v1/messages/reveal", reveal, RevealResponse.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return response.getBody().message();
+    }
+}
@@ -0,0 +1,151 @@
+package com.secret_message.secret_message_app.controller;
+
+import com.secret_message.secret_message_app.dto.CreateMessageRequest;
+import com.secret_message.secret_message_app.dto.CreateMessageResponse;
+import com.secret_message.secret_message_app.dto.RevealRequest;
+import com.secret_message.secret_message_app.dto.RevealResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The servlet file endpoints: uploads are stored in chunks as they are
+ * read and revealed as raw bytes, and files and text messages are never
+ * revealed through each other's endpoint.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "app.files.max-size=65536",
+                "app.storage.chunk-size=16384",
+                "app.rate-limit.requests-per-day=1000"
+        }
+)
+@Testcontainers
+class FileSecretIntegrationTest {
+
+    private static final String WRONG_KEY = "ZGV2ZWxvcG1lbnQtbWFzdGVyLWtleS0zMi1ieXRlcy0=";
+
+    @Container
+    static final GenericContainer<?> redisContainer =
+            new GenericContainer<>("redis:7.0.5").withExposedPorts(6379);
+
+    @Container
+    static final GenericContainer<?> natsContainer =
+            new GenericContainer<>("nats:2.10.7-alpine").withExposedPorts(4222);
+
+    @DynamicPropertySource
+    static void containerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.host", redisContainer::getHost);
+        registry.add("spring.redis.port", () -> redisContainer.getMappedPort(6379));
+        registry.add("nats.server.url",
+                () -> "nats://" + natsContainer.getHost() + ":" + natsContainer.getMappedPort(4222));
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void uploadReveal_returnsTheSameBytesOnce() {
+        // Several chunks, not ending on a chunk boundary, and not valid UTF-8.
+        byte[] file = randomBytes(50_000);
+        CreateMessageResponse created = upload(file);
+
+        assertEquals(HttpStatus.NOT_FOUND, revealFile(created.messageId(), WRONG_KEY).getStatusCode());
+
+        ResponseEntity<byte[]> response = revealFile(created.messageId(), b64(created.aesKey()));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, response.getHeaders().getContentType());
+        assertEquals("no-store", response.getHeaders().getCacheControl());
+        assertArrayEquals(file, response.getBody());
+
+        assertEquals(HttpStatus.NOT_FOUND,
+                revealFile(created.messageId(), b64(created.aesKey())).getStatusCode());
+    }
+
+    @Test
+    void emptyFile_roundTrips() {
+        CreateMessageResponse created = upload(new byte[0]);
+
+        ResponseEntity<byte[]> response = revealFile(created.messageId(), b64(created.aesKey()));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody() == null || response.getBody().length == 0);
+    }
+
+    @Test
+    void eachRevealEndpoint_refusesTheOtherKind_withoutConsumingIt() {
+        byte[] file = randomBytes(1_000);
+        CreateMessageResponse createdFile = upload(file);
+        ResponseEntity<CreateMessageResponse> createdMessage = restTemplate.postForEntity(
+                "/api/v1/messages", new CreateMessageRequest("a text secret"), CreateMessageResponse.class);
+        assertEquals(HttpStatus.CREATED, createdMessage.getStatusCode());
+        CreateMessageResponse message = createdMessage.getBody();
+
+        // Correct keys, wrong endpoints, more times than the attempt limit.
+        for (int i = 0; i < 4; i++) {
+            assertEquals(HttpStatus.NOT_FOUND, restTemplate.postForEntity("/api/v1/messages/reveal",
+                    new RevealRequest(createdFile.messageId(), b64(createdFile.aesKey())), String.class)
+                    .getStatusCode());
+            assertEquals(HttpStatus.NOT_FOUND,
+                    revealFile(message.messageId(), b64(message.aesKey())).getStatusCode());
+        }
+
+        assertArrayEquals(file, revealFile(createdFile.messageId(), b64(createdFile.aesKey())).getBody());
+        ResponseEntity<RevealResponse> revealed = restTemplate.postForEntity("/api/v1/messages/reveal",
+                new RevealRequest(message.messageId(), b64(message.aesKey())), RevealResponse.class);
+        assertEquals(HttpStatus.OK, revealed.getStatusCode());
+        assertEquals("a text secret", revealed.getBody().message());
+    }
+
+    @Test
+    void upload_overMaxSize_returns413() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/api/v1/files",
+                new HttpEntity<>(randomBytes(65_537), headers), String.class);
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode());
+    }
+
+    private CreateMessageResponse upload(byte[] file) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        ResponseEntity<CreateMessageResponse> created = restTemplate.postForEntity("/api/v1/files",
+                new HttpEntity<>(file, headers), CreateMessageResponse.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        assertEquals("no-store", created.getHeaders().getCacheControl());
+        return created.getBody();
+    }
+
+    private ResponseEntity<byte[]> revealFile(String messageId, String aesKey) {
+        return restTemplate.postForEntity("/api/v1/files/reveal",
+                new RevealRequest(messageId, aesKey), byte[].class);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String b64(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,108 @@
+package com.secret_message.secret_message_app.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.secret_message.secret_message_app.cache.InMemoryMessageStore;
+import com.secret_message.secret_message_app.cache.MessageStore;
+import com.secret_message.secret_message_app.dto.CreateMessageRequest;
+import com.secret_message.secret_message_app.dto.CreateMessageResponse;
+import com.secret_message.secret_message_app.dto.RevealRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * The HTTP API with {@code app.storage.backend=memory}. Redis points at a
+ * closed port, so any Redis access (message store, idempotency, rate
+ * limiting) would fail the test.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "app.storage.backend=memory",
+                "app.rate-limit.requests-per-day=5",
+                "spring.redis.host=localhost",
+                "spring.redis.port=1"
+        }
+)
+@AutoConfigureMockMvc
+@Testcontainers
+class InMemoryBackendIntegrationTest {
+
+    @Container
+    static final GenericContainer<?> natsContainer =
+            new GenericContainer<>("nats:2.10.7-alpine").withExposedPorts(4222);
+
+    @DynamicPropertySource
+    static void containerProperties(DynamicPropertyRegistry registry) {
+        registry.add("nats.server.url",
+                () -> "nats://" + natsContainer.getHost() + ":" + natsContainer.getMappedPort(4222));
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Test
+    void createRevealAndIdempotentRetry_workWithoutRedis() throws Exception {
+        assertInstanceOf(InMemoryMessageStore.class, messageStore);
+        String body = objectMapper.writeValueAsString(new CreateMessageRequest("edge secret"));
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        CreateMessageResponse created = objectMapper.readValue(mockMvc.perform(post("/api/v1/messages")
+                        .header("Idempotency-Key", idempotencyKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), CreateMessageResponse.class);
+
+        mockMvc.perform(post("/api/v1/messages")
+                        .header("Idempotency-Key", idempotencyKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messageId").value(created.messageId()))
+                .andExpect(jsonPath("$.duplicate").value(true));
+
+        String reveal = objectMapper.writeValueAsString(new RevealRequest(
+                created.messageId(), java.util.Base64.getEncoder().encodeToString(created.aesKey())));
+        mockMvc.perform(post("/api/v1/messages/reveal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(reveal))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("edge secret"));
+        mockMvc.perform(post("/api/v1/messages/reveal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(reveal))
+                .andExpect(status().isNotFound());
+
+        // Fifth request of the day is still allowed, the sixth is not.
+        mockMvc.perform(post("/api/v1/messages/reveal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(reveal))
+                .andExpect(status().isNotFound());
+        assertEquals(429, mockMvc.perform(post("/api/v1/messages/reveal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(reveal))
+                .andReturn().getResponse().getStatus());
+    }
+}
@@ -3,6 +3,10 @@ package com.secret_message.secret_message_app.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.secret_message.secret_message_app.dto.CreateMessageRequest;
 import com.secret_message.secret_message_app.dto.CreateMessageResponse;
+import com.secret_message.secret_message_app.dto.CreateMessagesRequest;
+import com.secret_message.secret_message_app.dto.CreateMessagesResponse;
+import com.secret_message.secret_message_app.dto.GeneratePasswordsResponse;
+import com.secret_message.secret_message_app.dto.GeneratedPassword;
 import com.secret_message.secret_message_app.dto.RevealRequest;
 import com.secret_message.secret_message_app.dto.RevealResponse;
 import org.junit.jupiter.api.Test;
@@ -18,6 +22,8 @@ import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -278,6 +284,41 @@ class MessageApiIntegrationTest {
 
     // ─── Input validation ─────────────────────────────────────────────────────
 
+    @Test
+    void createReveal_largeMessage_isStoredInChunks_andSurvivesAWrongKey() throws Exception {
+        // Over app.storage.chunk-size (256 KiB), under app.max-message-size.
+        String secret = "chunked secret \u00e9\u20ac ".repeat(30_000);
+
+        MvcResult createResult = mockMvc.perform(post("/api/v1/messages")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new CreateMessageRequest(secret))))
+                .andExpect(status().isCreated())
+                .andReturn();
+        CreateMessageResponse created = objectMapper.readValue(
+                createResult.getResponse().getContentAsString(), CreateMessageResponse.class);
+
+        mockMvc.perform(post("/api/v1/messages/reveal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new RevealRequest(
+                                created.messageId(), "ZGV2ZWxvcG1lbnQtbWFzdGVyLWtleS0zMi1ieXRlcy0="))))
+                .andExpect(status().isNotFound());
+
+        MvcResult revealResult = mockMvc.perform(post("/api/v1/messages/reveal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new RevealRequest(created.messageId(), b64(created.aesKey())))))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertEquals(secret, objectMapper.readValue(
+                revealResult.getResponse().getContentAsString(), RevealResponse.class).message());
+
+        mockMvc.perform(post("/api/v1/messages/reveal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new RevealRequest(created.messageId(), b64(created.aesKey())))))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void create_blankMessage_returns400() throws Exception {
         mockMvc.perform(post("/api/v1/messages")
@@ -320,6 +361,50 @@ class MessageApiIntegrationTest {
                 .andExpect(jsonPath("$.error").value("not found"));
     }
 
+    // ─── Batch create ─────────────────────────────────────────────────────────
+
+    @Test
+    void createBatch_returnsIdsAndKeysInRequestOrder_eachRevealableOnce() throws Exception {
+        List<String> secrets = List.of("batch one", "batch two \u00e9", "batch three");
+
+        MvcResult createResult = mockMvc.perform(post("/api/v1/messages/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new CreateMessagesRequest(secrets))))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Cache-Control", "no-store"))
+                .andExpect(header().exists("X-RateLimit-Remaining"))
+                .andExpect(jsonPath("$.messages.length()").value(3))
+                .andReturn();
+
+        CreateMessagesResponse created = objectMapper.readValue(
+                createResult.getResponse().getContentAsByteArray(), CreateMessagesResponse.class);
+        for (int i = 0; i < secrets.size(); i++) {
+            CreateMessageResponse message = created.messages().get(i);
+            MvcResult revealResult = mockMvc.perform(post("/api/v1/messages/reveal")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(
+                                    new RevealRequest(message.messageId(), b64(message.aesKey())))))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            assertEquals(secrets.get(i), objectMapper.readValue(
+                    revealResult.getResponse().getContentAsByteArray(), RevealResponse.class).message());
+        }
+    }
+
+    @Test
+    void createBatch_emptyOrOverTheLimit_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/messages/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"messages\":[]}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/messages/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new CreateMessagesRequest(Collections.nCopies(101, "too many")))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("a batch holds at most 100 messages"));
+    }
+
     // ─── Payload size guard ───────────────────────────────────────────────────
 
     @Test
@@ -372,6 +457,113 @@ class MessageApiIntegrationTest {
                 "Blank idempotency key must not trigger deduplication — two distinct messages must be created");
     }
 
+    // ─── Passphrase messages ──────────────────────────────────────────────────
+
+    @Test
+    void passphrase_createOmitsKey_andRevealsWithThePassphraseOnly() throws Exception {
+        MvcResult createResult = mockMvc.perform(post("/api/v1/messages")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new CreateMessageRequest("passphrase secret", "correct horse battery"))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.messageId").isString())
+                .andExpect(jsonPath("$.aesKey").doesNotExist())
+                .andReturn();
+        String messageId = objectMapper.readValue(
+                createResult.getResponse().getContentAsString(), CreateMessageResponse.class).messageId();
+
+        mockMvc.perform(post("/api/v1/messages/reveal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new RevealRequest(messageId, null, "wrong horse battery"))))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("message not available"));
+
+        mockMvc.perform(post("/api/v1/messages/reveal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new RevealRequest(messageId, null, "correct horse battery"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("passphrase secret"));
+    }
+
+    @Test
+    void passphrase_tooShort_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/messages")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new CreateMessageRequest("secret", "short"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void passphrase_withIdempotencyKey_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/messages")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key", java.util.UUID.randomUUID().toString())
+                        .content(objectMapper.writeValueAsString(
+                                new CreateMessageRequest("secret", "correct horse battery"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void reveal_keyAndPassphraseTogether_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/messages/reveal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new RevealRequest(
+                                "00000000-0000-0000-0000-000000000000", b64(new byte[32]), "correct horse battery"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    // ─── Password generation ──────────────────────────────────────────────────
+
+    @Test
+    void passwords_generatesTheRequestedBatch() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/v1/passwords")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"count\":5,\"length\":12,\"symbols\":false}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-store"))
+                .andExpect(jsonPath("$.passwords.length()").value(5))
+                .andExpect(jsonPath("$.passwords[0].messageId").doesNotExist())
+                .andReturn();
+
+        GeneratePasswordsResponse response = objectMapper.readValue(
+                result.getResponse().getContentAsString(), GeneratePasswordsResponse.class);
+        for (GeneratedPassword password : response.passwords()) {
+            assertTrue(new String(password.password()).matches("[a-zA-Z0-9]{12}"));
+        }
+    }
+
+    @Test
+    void passwords_store_revealsEachPasswordAsAMessage() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/v1/passwords")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"count\":2,\"store\":true}"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        GeneratePasswordsResponse response = objectMapper.readValue(
+                result.getResponse().getContentAsString(), GeneratePasswordsResponse.class);
+        assertEquals(2, response.passwords().size());
+        for (GeneratedPassword password : response.passwords()) {
+            assertEquals(20, password.password().length);
+            mockMvc.perform(post("/api/v1/messages/reveal")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(
+                                    new RevealRequest(password.messageId(), b64(password.aesKey())))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.message").value(new String(password.password())));
+        }
+    }
+
+    @Test
+    void passwords_noCharacterClass_returns400() throws Exception {
+        mockMvc.perform(post("/api/v1/passwords")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"lower\":false,\"upper\":false,\"digits\":false,\"symbols\":false}"))
+                .andExpect(status().isBadRequest());
+    }
+
     // ─── Concurrency ──────────────────────────────────────────────────────────
 
     @Test
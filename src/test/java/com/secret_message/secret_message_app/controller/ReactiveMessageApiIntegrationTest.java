@@ -0,0 +1,248 @@
+package com.secret_message.secret_message_app.controller;
+
+import com.secret_message.secret_message_app.dto.CreateMessageRequest;
+import com.secret_message.secret_message_app.dto.CreateMessageResponse;
+import com.secret_message.secret_message_app.dto.CreateMessagesRequest;
+import com.secret_message.secret_message_app.dto.CreateMessagesResponse;
+import com.secret_message.secret_message_app.dto.RevealRequest;
+import com.secret_message.secret_message_app.dto.RevealResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The message API in reactive mode, over real Netty. Requests come from
+ * 127.0.0.1, a trusted proxy, so each test sends its own
+ * {@code X-Forwarded-For} client IP and gets its own rate-limit bucket.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.main.web-application-type=reactive",
+                "app.rate-limit.requests-per-day=5",
+                "app.max-message-size=1024"
+        }
+)
+@Testcontainers
+class ReactiveMessageApiIntegrationTest {
+
+    @Container
+    static final GenericContainer<?> redisContainer =
+            new GenericContainer<>("redis:7.0.5").withExposedPorts(6379);
+
+    @Container
+    static final GenericContainer<?> natsContainer =
+            new GenericContainer<>("nats:2.10.7-alpine").withExposedPorts(4222);
+
+    @DynamicPropertySource
+    static void containerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.host", redisContainer::getHost);
+        registry.add("spring.redis.port", () -> redisContainer.getMappedPort(6379));
+        registry.add("nats.server.url",
+                () -> "nats://" + natsContainer.getHost() + ":" + natsContainer.getMappedPort(4222));
+    }
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    private WebTestClient.RequestBodySpec post(String uri, String clientIp) {
+        return webTestClient.post().uri(uri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("X-Forwarded-For", clientIp);
+    }
+
+    private static String b64(byte[] key) {
+        return Base64.getEncoder().encodeToString(key);
+    }
+
+    private CreateMessageResponse create(String message, String clientIp) {
+        return post("/api/v1/messages", clientIp)
+                .bodyValue(new CreateMessageRequest(message))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(CreateMessageResponse.class)
+                .returnResult().getResponseBody();
+    }
+
+    @Test
+    void createReveal_happyPath_returnsPlaintextThenDeletes() {
+        CreateMessageResponse created = post("/api/v1/messages", "203.0.113.1")
+                .bodyValue(new CreateMessageRequest("Reactive secret"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals("Cache-Control", "no-store")
+                .expectHeader().valueEquals("X-RateLimit-Remaining", "4")
+                .expectBody(CreateMessageResponse.class)
+                .returnResult().getResponseBody();
+        assertNotNull(created);
+
+        RevealResponse revealed = post("/api/v1/messages/reveal", "203.0.113.1")
+                .bodyValue(new RevealRequest(created.messageId(), b64(created.aesKey())))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("Cache-Control", "no-store")
+                .expectBody(RevealResponse.class)
+                .returnResult().getResponseBody();
+        assertEquals("Reactive secret", revealed.message());
+
+        post("/api/v1/messages/reveal", "203.0.113.1")
+                .bodyValue(new RevealRequest(created.messageId(), b64(created.aesKey())))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void reveal_wrongKeyAndUnknownId_returnTheSameUniform404() {
+        CreateMessageResponse created = create("wrong key test", "203.0.113.2");
+        // Five bytes is no AES key at all, so the decrypt fails every time.
+        String wrongKey = "AAAAAAA=";
+
+        byte[] wrongKeyBody = post("/api/v1/messages/reveal", "203.0.113.2")
+                .bodyValue(new RevealRequest(created.messageId(), wrongKey))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectHeader().valueEquals("Cache-Control", "no-store")
+                .expectBody().returnResult().getResponseBody();
+        byte[] unknownIdBody = post("/api/v1/messages/reveal", "203.0.113.2")
+                .bodyValue(new RevealRequest(UUID.randomUUID().toString(), b64(created.aesKey())))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody().returnResult().getResponseBody();
+        assertArrayEquals(unknownIdBody, wrongKeyBody);
+
+        // A wrong key does not burn the message for the right one.
+        post("/api/v1/messages/reveal", "203.0.113.2")
+                .bodyValue(new RevealRequest(created.messageId(), b64(created.aesKey())))
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void idempotentCreate_replaysTheFirstMessage_andRejectsADifferentBody() {
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        CreateMessageResponse first = post("/api/v1/messages", "203.0.113.3")
+                .header("Idempotency-Key", idempotencyKey)
+                .bodyValue(new CreateMessageRequest("same body"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(CreateMessageResponse.class)
+                .returnResult().getResponseBody();
+        CreateMessageResponse replay = post("/api/v1/messages", "203.0.113.3")
+                .header("Idempotency-Key", idempotencyKey)
+                .bodyValue(new CreateMessageRequest("same body"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(CreateMessageResponse.class)
+                .returnResult().getResponseBody();
+
+        assertTrue(replay.duplicate());
+        assertEquals(first.messageId(), replay.messageId());
+        assertArrayEquals(first.aesKey(), replay.aesKey());
+
+        post("/api/v1/messages", "203.0.113.3")
+                .header("Idempotency-Key", idempotencyKey)
+                .bodyValue(new CreateMessageRequest("different body"))
+                .exchange()
+                .expectStatus().isEqualTo(409)
+                .expectBody().jsonPath("$.error").isEqualTo("idempotency key conflict");
+    }
+
+    @Test
+    void invalidRequests_return400_andUnknownPathsReturn404() {
+        post("/api/v1/messages", "203.0.113.4")
+                .bodyValue(new CreateMessageRequest(""))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.error").value(error -> assertTrue(((String) error).startsWith("message")));
+        post("/api/v1/messages", "203.0.113.4")
+                .bodyValue("{not json")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.error").isEqualTo("invalid request body");
+        post("/api/v1/messages", "203.0.113.4")
+                .header("Idempotency-Key", "not-a-uuid")
+                .bodyValue(new CreateMessageRequest("body"))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri("/no-such-path")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void oversizedMessages_return413_evenAboveTheDecoderBuffer() {
+        post("/api/v1/messages", "203.0.113.7")
+                .bodyValue(new CreateMessageRequest("x".repeat(2048)))
+                .exchange()
+                .expectStatus().isEqualTo(413);
+        post("/api/v1/messages", "203.0.113.7")
+                .bodyValue(new CreateMessageRequest("x".repeat(16 * 1024)))
+                .exchange()
+                .expectStatus().isEqualTo(413)
+                .expectBody().jsonPath("$.error").isEqualTo("payload too large");
+    }
+
+    @Test
+    void rateLimit_isKeyedOnTheForwardedClientIp() {
+        for (int i = 0; i < 5; i++) {
+            create("rate limit test", "203.0.113.5");
+        }
+
+        post("/api/v1/messages", "203.0.113.5")
+                .bodyValue(new CreateMessageRequest("rate limit test"))
+                .exchange()
+                .expectStatus().isEqualTo(429)
+                .expectHeader().exists("Retry-After")
+                .expectBody().jsonPath("$.error").isEqualTo("rate limit exceeded");
+
+        // Another client behind the same proxy has its own bucket.
+        create("rate limit test", "203.0.113.6");
+    }
+
+    @Test
+    void createBatch_takesOneTokenPerMessage_andIsRefusedWholeWhenTheBucketIsShort() {
+        CreateMessagesResponse created = post("/api/v1/messages/batch", "203.0.113.8")
+                .bodyValue(new CreateMessagesRequest(List.of("first", "second")))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals("X-RateLimit-Remaining", "3")
+                .expectBody(CreateMessagesResponse.class)
+                .returnResult().getResponseBody();
+        assertNotNull(created);
+
+        List<String> expected = List.of("first", "second");
+        for (int i = 0; i < expected.size(); i++) {
+            CreateMessageResponse message = created.messages().get(i);
+            RevealResponse revealed = post("/api/v1/messages/reveal", "203.0.113.8")
+                    .bodyValue(new RevealRequest(message.messageId(), b64(message.aesKey())))
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(RevealResponse.class)
+                    .returnResult().getResponseBody();
+            assertEquals(expected.get(i), revealed.message());
+        }
+
+        // One token left: the request itself takes it, the two extra messages cannot be covered.
+        post("/api/v1/messages/batch", "203.0.113.8")
+                .bodyValue(new CreateMessagesRequest(List.of("a", "b", "c")))
+                .exchange()
+                .expectStatus().isEqualTo(429)
+                .expectHeader().exists("Retry-After")
+                .expectBody().jsonPath("$.error").isEqualTo("rate limit exceeded");
+    }
+}
@@ -0,0 +1,135 @@
+package com.secret_message.secret_message_app.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.secret_message.secret_message_app.dto.CreateMessageRequest;
+import com.secret_message.secret_message_app.dto.CreateMessageResponse;
+import com.secret_message.secret_message_app.dto.RevealRequest;
+import com.secret_message.secret_message_app.dto.RevealResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The servlet API with {@code app.reveal.stream-response=true}: the reveal
+ * body is written by the controller rather than serialized by Jackson, and
+ * must come out exactly the same.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "app.reveal.stream-response=true",
+                "app.rate-limit.requests-per-day=1000"
+        }
+)
+@Testcontainers
+class StreamingRevealIntegrationTest {
+
+    private static final String WRONG_KEY = "ZGV2ZWxvcG1lbnQtbWFzdGVyLWtleS0zMi1ieXRlcy0=";
+
+    @Container
+    static final GenericContainer<?> redisContainer =
+            new GenericContainer<>("redis:7.0.5").withExposedPorts(6379);
+
+    @Container
+    static final GenericContainer<?> natsContainer =
+            new GenericContainer<>("nats:2.10.7-alpine").withExposedPorts(4222);
+
+    @DynamicPropertySource
+    static void containerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.host", redisContainer::getHost);
+        registry.add("spring.redis.port", () -> redisContainer.getMappedPort(6379));
+        registry.add("nats.server.url",
+                () -> "nats://" + natsContainer.getHost() + ":" + natsContainer.getMappedPort(4222));
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void reveal_streamsTheSameBodyJacksonWouldWrite() throws Exception {
+        String secret = "quote \" backslash \\ newline \n tab \t bell \u0007 slash / \u00e9\u20ac\ud83d\ude00";
+        CreateMessageResponse created = create(secret);
+
+        ResponseEntity<String> response = reveal(created.messageId(), b64(created.aesKey()));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("no-store", response.getHeaders().getCacheControl());
+        assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(response.getHeaders().getContentType()));
+        assertEquals(objectMapper.writeValueAsString(new RevealResponse(secret)), response.getBody());
+
+        assertEquals(HttpStatus.NOT_FOUND, reveal(created.messageId(), b64(created.aesKey())).getStatusCode());
+    }
+
+    @Test
+    void reveal_wrongKey_returns404_andLeavesTheMessageForTheRightKey() throws Exception {
+        CreateMessageResponse created = create("streamed after a wrong key");
+
+        assertEquals(HttpStatus.NOT_FOUND, reveal(created.messageId(), WRONG_KEY).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, reveal(created.messageId(), "not base64!").getStatusCode());
+
+        ResponseEntity<String> response = reveal(created.messageId(), b64(created.aesKey()));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("streamed after a wrong key",
+                objectMapper.readValue(response.getBody(), RevealResponse.class).message());
+    }
+
+    @Test
+    void reveal_segmentedMessage_streamsAfterEverySegmentIsOpened() throws Exception {
+        // Over app.storage.segment-size (64 KiB), under app.storage.chunk-size.
+        String secret = "segmented bundle \u00e9\u20ac\n".repeat(5_000);
+        CreateMessageResponse created = create(secret);
+
+        assertEquals(HttpStatus.NOT_FOUND, reveal(created.messageId(), WRONG_KEY).getStatusCode());
+
+        ResponseEntity<String> response = reveal(created.messageId(), b64(created.aesKey()));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(secret, objectMapper.readValue(response.getBody(), RevealResponse.class).message());
+    }
+
+    @Test
+    void reveal_chunkedMessage_streamsEveryChunk() throws Exception {
+        // Over app.storage.chunk-size (256 KiB), under app.max-message-size.
+        String secret = "streamed chunk \u00e9\u20ac\n".repeat(30_000);
+        CreateMessageResponse created = create(secret);
+
+        assertEquals(HttpStatus.NOT_FOUND, reveal(created.messageId(), WRONG_KEY).getStatusCode());
+
+        ResponseEntity<String> response = reveal(created.messageId(), b64(created.aesKey()));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(secret, objectMapper.readValue(response.getBody(), RevealResponse.class).message());
+
+        assertEquals(HttpStatus.NOT_FOUND, reveal(created.messageId(), b64(created.aesKey())).getStatusCode());
+    }
+
+    private CreateMessageResponse create(String secret) {
+        ResponseEntity<CreateMessageResponse> created = restTemplate.postForEntity(
+                "/api/v1/messages", new CreateMessageRequest(secret), CreateMessageResponse.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        return created.getBody();
+    }
+
+    private ResponseEntity<String> reveal(String messageId, String aesKey) {
+        return restTemplate.postForEntity("/api/v1/messages/reveal",
+                new RevealRequest(messageId, aesKey), String.class);
+    }
+
+    private static String b64(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,105 @@
+package com.secret_message.secret_message_app.controller;
+
+import com.secret_message.secret_message_app.dto.CreateMessageRequest;
+import com.secret_message.secret_message_app.dto.CreateMessageResponse;
+import com.secret_message.secret_message_app.dto.RevealRequest;
+import com.secret_message.secret_message_app.dto.RevealResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The servlet API with {@code spring.threads.virtual.enabled=true} and a
+ * deliberately small {@code app.redis.max-blocking-calls}, so most callers
+ * have to wait for a Redis permit.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.threads.virtual.enabled=true",
+                "app.redis.max-blocking-calls=2",
+                "app.rate-limit.requests-per-day=1000"
+        }
+)
+@Testcontainers
+class VirtualThreadModeIntegrationTest {
+
+    @Container
+    static final GenericContainer<?> redisContainer =
+            new GenericContainer<>("redis:7.0.5").withExposedPorts(6379);
+
+    @Container
+    static final GenericContainer<?> natsContainer =
+            new GenericContainer<>("nats:2.10.7-alpine").withExposedPorts(4222);
+
+    @DynamicPropertySource
+    static void containerProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.redis.host", redisContainer::getHost);
+        registry.add("spring.redis.port", () -> redisContainer.getMappedPort(6379));
+        registry.add("nats.server.url",
+                () -> "nats://" + natsContainer.getHost() + ":" + natsContainer.getMappedPort(4222));
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    @Test
+    void tomcat_handlesRequestsOnVirtualThreads() {
+        TomcatWebServer webServer = (TomcatWebServer) context.getWebServer();
+
+        assertEquals("VirtualThreadExecutor",
+                webServer.getTomcat().getConnector().getProtocolHandler().getExecutor().getClass().getSimpleName());
+    }
+
+    @Test
+    void concurrentCreateAndReveal_allSucceed_withFewerRedisPermitsThanCallers() throws Exception {
+        int callers = 64;
+        List<Future<String>> revealed = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++) {
+                String secret = "virtual thread secret " + i;
+                revealed.add(executor.submit(() -> createThenReveal(secret)));
+            }
+        }
+
+        for (int i = 0; i < callers; i++) {
+            assertEquals("virtual thread secret " + i, revealed.get(i).get(30, TimeUnit.SECONDS));
+        }
+    }
+
+    private String createThenReveal(String secret) {
+        ResponseEntity<CreateMessageResponse> created = restTemplate.postForEntity(
+                "/api/v1/messages", new CreateMessageRequest(secret), CreateMessageResponse.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+
+        RevealRequest reveal = new RevealRequest(created.getBody().messageId(),
+                Base64.getEncoder().encodeToString(created.getBody().aesKey()));
+        ResponseEntity<RevealResponse> response =
+                restTemplate.postForEntity("/api/v1/messages/reveal", reveal, RevealResponse.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return response.getBody().message();
+    }
+}
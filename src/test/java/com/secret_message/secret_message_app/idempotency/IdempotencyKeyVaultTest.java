@@ -66,23 +66,45 @@ class IdempotencyKeyVaultTest {
         byte[] plaintext = "some-aes-key-32-bytes-padded-xx!".getBytes();
         byte[] ciphertext = vault.encrypt(plaintext);
 
-        // Flip the last byte: it is in the final (padding) ciphertext block, so AES decryption
-        // of that block is completely garbled → PKCS#5 padding check fails → BadPaddingException.
-        // (Flipping a byte in an earlier block only corrupts content bytes and leaves the padding
-        // block intact — intentional CBC trade-off documented in IdempotencyKeyVault Javadoc.)
-        ciphertext[ciphertext.length - 1] ^= 0xFF;
+        // Flip a byte of the key itself: the GCM tag no longer matches. (A CBC
+        // record would decrypt this to a garbled key without noticing.)
+        ciphertext[20] ^= 0x01;
 
         assertThrows(IllegalStateException.class,
                 () -> vault.decrypt(ciphertext),
                 "Tampered ciphertext should cause decryption to throw");
     }
 
+    @Test
+    void encrypt_sealsWithGcm_andStillDecryptsCbcRecords() throws Exception {
+        byte[] aesKey = cryptoUtil.generateRandomAESKeyBytes();
+        String masterKey = "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=";
+        IdempotencyKeyVault gcmVault = new IdempotencyKeyVault(masterKey, "gcm", cryptoUtil);
+        IdempotencyKeyVault cbcVault = new IdempotencyKeyVault(masterKey, "cbc", cryptoUtil);
+
+        byte[] sealed = gcmVault.encrypt(aesKey);
+        byte[] legacy = cbcVault.encrypt(aesKey);
+
+        assertEquals(CryptoUtil.GCM_PAYLOAD_MARKER, sealed[0]);
+        assertEquals(61, sealed.length);
+        assertEquals(64, legacy.length);
+        assertArrayEquals(aesKey, gcmVault.decrypt(legacy));
+        assertArrayEquals(aesKey, cbcVault.decrypt(sealed));
+
+        // A CBC record whose random IV begins with the GCM marker byte.
+        legacy = cryptoUtil.encrypt(aesKey, new byte[32]);
+        while (legacy[0] != CryptoUtil.GCM_PAYLOAD_MARKER) {
+            legacy = cryptoUtil.encrypt(aesKey, new byte[32]);
+        }
+        assertArrayEquals(aesKey, gcmVault.decrypt(legacy));
+    }
+
     @Test
     void decrypt_withWrongMasterKey_throwsException() {
         // Build a second vault with a different key to simulate wrong MIEK.
         // Must be exactly 32 bytes (43 Base64 chars + one '=' pad = 44 chars total).
         String differentKey = "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA="; // 32 zero bytes
-        IdempotencyKeyVault wrongVault = new IdempotencyKeyVault(differentKey, cryptoUtil);
+        IdempotencyKeyVault wrongVault = new IdempotencyKeyVault(differentKey, "gcm", cryptoUtil);
 
         byte[] plaintext = "aes-key-material-32-bytes-padded".getBytes();
         byte[] ciphertext = vault.encrypt(plaintext);
@@ -0,0 +1,110 @@
+package com.secret_message.secret_message_app.idempotency;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyNearCacheTest {
+
+    private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+
+    private final MutableClock clock = new MutableClock();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void get_returnsCachedRecord_untilTheCacheTtlPasses() {
+        IdempotencyNearCache cache = cache(Duration.ofSeconds(30), 100);
+        IdempotencyRecord record = record(clock.millis());
+
+        cache.put("k", record);
+        assertSame(record, cache.get("k"));
+
+        clock.advance(Duration.ofSeconds(31));
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.size(), "An expired entry must be dropped when read");
+        assertEquals(1, meterRegistry.get("idempotency.near-cache.requests").tag("result", "hit").counter().count());
+        assertEquals(1, meterRegistry.get("idempotency.near-cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void put_neverOutlivesTheRecordItself() {
+        IdempotencyNearCache cache = cache(Duration.ofSeconds(30), 100);
+
+        cache.put("expired", record(clock.millis() - DAY_MILLIS));
+        cache.put("expiring", record(clock.millis() - DAY_MILLIS + 10_000));
+        assertNull(cache.get("expired"));
+        assertNotNull(cache.get("expiring"));
+
+        clock.advance(Duration.ofSeconds(11));
+        assertNull(cache.get("expiring"));
+    }
+
+    @Test
+    void put_staysWithinMaxEntries_preferringToDropExpiredEntries() {
+        IdempotencyNearCache cache = cache(Duration.ofSeconds(30), 2);
+
+        cache.put("old", record(clock.millis()));
+        clock.advance(Duration.ofSeconds(20));
+        cache.put("recent", record(clock.millis()));
+        clock.advance(Duration.ofSeconds(15));
+        cache.put("new", record(clock.millis()));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("recent"));
+        assertNotNull(cache.get("new"));
+
+        cache.put("newest", record(clock.millis()));
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("newest"));
+    }
+
+    @Test
+    void zeroTtl_disablesTheCache() {
+        IdempotencyNearCache cache = cache(Duration.ZERO, 100);
+
+        cache.put("k", record(clock.millis()));
+
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.size());
+    }
+
+    private IdempotencyNearCache cache(Duration ttl, int maxEntries) {
+        return new IdempotencyNearCache(clock, ttl, maxEntries, DAY_MILLIS, meterRegistry);
+    }
+
+    private static IdempotencyRecord record(long createdAt) {
+        return new IdempotencyRecord("hash", "message-id", "ZW5jcnlwdGVk", createdAt);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
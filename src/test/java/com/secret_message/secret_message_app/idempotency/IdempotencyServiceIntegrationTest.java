@@ -1,5 +1,6 @@
 package com.secret_message.secret_message_app.idempotency;
 
+import com.secret_message.secret_message_app.cache.RedisCacheManager;
 import com.secret_message.secret_message_app.exception.IdempotencyConflictException;
 import com.secret_message.secret_message_app.utils.CryptoUtil;
 import org.junit.jupiter.api.Test;
@@ -13,6 +14,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,6 +44,9 @@ class IdempotencyServiceIntegrationTest {
     @Autowired
     private CryptoUtil cryptoUtil;
 
+    @Autowired
+    private RedisCacheManager redisCacheManager;
+
     // ─── Store + find ─────────────────────────────────────────────────────────
 
     @Test
@@ -131,4 +136,67 @@ class IdempotencyServiceIntegrationTest {
                 "Second store must not overwrite the first record (setIfAbsent semantics)");
     }
 
+    // ─── Combined message + record write ──────────────────────────────────────
+
+    @Test
+    void storeWithMessage_writesMessageAndRecordTogether() throws Exception {
+        String iKey = UUID.randomUUID().toString();
+        String bodyHash = idempotencyService.hashBody("{\"message\":\"combined\"}");
+        String messageId = UUID.randomUUID().toString();
+        byte[] payload = cryptoUtil.encryptMessageToBytes("combined", cryptoUtil.generateRandomAESKeyBytes());
+
+        assertTrue(idempotencyService.storeWithMessage(
+                iKey, bodyHash, messageId, cryptoUtil.generateRandomAESKeyBytes(), payload).isEmpty());
+
+        assertArrayEquals(payload, redisCacheManager.getEncryptedPayload(messageId));
+        assertEquals(messageId, idempotencyService.findExisting(iKey, bodyHash).orElseThrow().messageId());
+    }
+
+    @Test
+    void storeWithMessage_losingCreate_returnsWinnerAndWritesNoMessage() throws Exception {
+        String iKey = UUID.randomUUID().toString();
+        String bodyHash = idempotencyService.hashBody("{\"message\":\"race\"}");
+        String winnerId = UUID.randomUUID().toString();
+        String loserId = UUID.randomUUID().toString();
+        byte[] payload = cryptoUtil.encryptMessageToBytes("race", cryptoUtil.generateRandomAESKeyBytes());
+
+        idempotencyService.storeWithMessage(iKey, bodyHash, winnerId, cryptoUtil.generateRandomAESKeyBytes(), payload);
+        Optional<IdempotencyRecord> existing = idempotencyService.storeWithMessage(
+                iKey, bodyHash, loserId, cryptoUtil.generateRandomAESKeyBytes(), payload);
+
+        assertTrue(existing.isPresent());
+        assertEquals(winnerId, existing.get().messageId());
+        assertNull(redisCacheManager.getEncryptedPayload(loserId),
+                "The losing create must not leave a message behind");
+    }
+
+    @Test
+    void storeWithMessage_existingRecordForDifferentBody_throwsConflict() throws Exception {
+        String iKey = UUID.randomUUID().toString();
+        assertTrue(idempotencyService.store(iKey, idempotencyService.hashBody("original"),
+                UUID.randomUUID().toString(), cryptoUtil.generateRandomAESKeyBytes()));
+        String loserId = UUID.randomUUID().toString();
+
+        assertThrows(IdempotencyConflictException.class, () -> idempotencyService.storeWithMessage(
+                iKey, idempotencyService.hashBody("different"), loserId,
+                cryptoUtil.generateRandomAESKeyBytes(), new byte[]{0x01}));
+        assertNull(redisCacheManager.getEncryptedPayload(loserId));
+    }
+
+    @Test
+    void asyncForms_storeAndFind_andFailTheFutureOnConflict() throws Exception {
+        String iKey = UUID.randomUUID().toString();
+        String bodyHash = idempotencyService.hashBody("{\"message\":\"async\"}");
+        String messageId = UUID.randomUUID().toString();
+        byte[] payload = cryptoUtil.encryptMessageToBytes("async", cryptoUtil.generateRandomAESKeyBytes());
+
+        assertTrue(idempotencyService.storeWithMessageAsync(
+                iKey, bodyHash, messageId, cryptoUtil.generateRandomAESKeyBytes(), payload).get().isEmpty());
+        assertEquals(messageId, idempotencyService.findExistingAsync(iKey, bodyHash).get().orElseThrow().messageId());
+        assertTrue(idempotencyService.findExistingAsync(UUID.randomUUID().toString(), bodyHash).get().isEmpty());
+
+        ExecutionException conflict = assertThrows(ExecutionException.class,
+                () -> idempotencyService.findExistingAsync(iKey, idempotencyService.hashBody("different")).get());
+        assertInstanceOf(IdempotencyConflictException.class, conflict.getCause());
+    }
 }
@@ -1,6 +1,8 @@
 package com.secret_message.secret_message_app.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.secret_message.secret_message_app.dto.CreateMessagesRequest;
 import com.secret_message.secret_message_app.model.SecretMessageIdentifier;
 import io.nats.client.Connection;
 import io.nats.client.Message;
@@ -15,6 +17,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -78,6 +81,33 @@ class NatsServiceIntegrationTest {
         assertEquals(original, decrypted, "Round-trip via NATS must recover original plaintext");
     }
 
+    @Test
+    void saveMsgBatch_repliesWithIdentifiersInRequestOrder() throws Exception {
+        List<String> secrets = List.of("batch secret 1", "batch secret 2", "batch secret 3");
+
+        Message reply = natsConnection.request("save.msg.batch",
+                objectMapper.writeValueAsBytes(new CreateMessagesRequest(secrets)), REPLY_TIMEOUT);
+        assertNotNull(reply, "save.msg.batch must return a reply");
+        List<SecretMessageIdentifier> ids = objectMapper.readValue(reply.getData(),
+                new TypeReference<List<SecretMessageIdentifier>>() { });
+        assertEquals(secrets.size(), ids.size());
+
+        for (int i = 0; i < secrets.size(); i++) {
+            Message receiveReply = natsConnection.request("receive.msg",
+                    objectMapper.writeValueAsBytes(ids.get(i)), REPLY_TIMEOUT);
+            assertEquals(secrets.get(i), objectMapper.readValue(receiveReply.getData(), String.class));
+        }
+    }
+
+    @Test
+    void saveMsgBatch_emptyBatch_returnsError() throws Exception {
+        Message reply = natsConnection.request("save.msg.batch",
+                "{\"messages\":[]}".getBytes(StandardCharsets.UTF_8), REPLY_TIMEOUT);
+
+        assertNotNull(reply);
+        assertTrue(errorBody(reply).contains("Batch cannot be empty"));
+    }
+
     @Test
     void receiveMsg_secondReveal_returnsError() throws Exception {
         Message saveReply = natsConnection.request("save.msg",
@@ -0,0 +1,92 @@
+package com.secret_message.secret_message_app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.nats.client.Connection;
+import io.nats.client.MessageHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * How {@link NatsService} hands messages to its handlers in each thread
+ * mode; the handlers themselves are covered by NatsServiceIntegrationTest.
+ */
+class NatsServiceTest {
+
+    private final NatsService natsService = new NatsService(
+            mock(Connection.class, Answers.RETURNS_DEEP_STUBS), mock(SecretMessageService.class),
+            mock(PasswordService.class), new ObjectMapper());
+
+    private void start(boolean virtualThreads, int maxConcurrentHandlers) {
+        ReflectionTestUtils.setField(natsService, "virtualThreads", virtualThreads);
+        ReflectionTestUtils.setField(natsService, "maxConcurrentHandlers", maxConcurrentHandlers);
+        natsService.startNatsSubscriptions();
+    }
+
+    @AfterEach
+    void stop() {
+        natsService.stopHandlers();
+    }
+
+    @Test
+    void platformThreads_dispatcherCallsTheHandlerDirectly() {
+        start(false, 256);
+        MessageHandler handler = msg -> { };
+
+        assertSame(handler, natsService.onHandlerThread(handler));
+    }
+
+    @Test
+    void virtualThreads_eachMessageRunsOnItsOwnVirtualThread() throws Exception {
+        start(true, 256);
+        CompletableFuture<Thread> handlerThread = new CompletableFuture<>();
+
+        natsService.onHandlerThread(msg -> handlerThread.complete(Thread.currentThread())).onMessage(null);
+
+        Thread thread = handlerThread.get(5, TimeUnit.SECONDS);
+        assertTrue(thread.isVirtual());
+        assertNotSame(Thread.currentThread(), thread);
+    }
+
+    @Test
+    void virtualThreads_dispatcherWaitsOnceTheHandlerLimitIsReached() throws Exception {
+        start(true, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger started = new AtomicInteger();
+        MessageHandler dispatched = natsService.onHandlerThread(msg -> {
+            started.incrementAndGet();
+            release.await();
+        });
+
+        dispatched.onMessage(null);
+        dispatched.onMessage(null);
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> {
+            try {
+                dispatched.onMessage(null);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        Thread.sleep(200);
+        assertFalse(third.isDone(), "the dispatcher must wait for a free permit");
+        assertEquals(2, started.get());
+
+        release.countDown();
+        third.get(5, TimeUnit.SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (started.get() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, started.get());
+    }
+}
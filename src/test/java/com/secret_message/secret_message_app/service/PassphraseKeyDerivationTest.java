@@ -0,0 +1,71 @@
+package com.secret_message.secret_message_app.service;
+
+import com.secret_message.secret_message_app.exception.KeyDerivationBusyException;
+import com.secret_message.secret_message_app.utils.CryptoUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PassphraseKeyDerivationTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void derive_dependsOnPassphraseAndMessageId() {
+        PassphraseKeyDerivation derivation = new PassphraseKeyDerivation(new CryptoUtil(), meterRegistry, 2, 4);
+        try {
+            byte[] key = derivation.derive("correct horse battery", "1.message-a");
+
+            assertEquals(32, key.length);
+            assertArrayEquals(key, derivation.derive("correct horse battery", "1.message-a"));
+            assertFalse(Arrays.equals(key, derivation.derive("correct horse battery", "1.message-b")));
+            assertFalse(Arrays.equals(key, derivation.derive("wrong horse battery", "1.message-a")));
+            assertEquals(4, meterRegistry.get("passphrase.kdf.duration").timer().count());
+        } finally {
+            derivation.destroy();
+        }
+    }
+
+    @Test
+    void fullQueue_isRefusedAtOnce_andCounted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CryptoUtil cryptoUtil = mock(CryptoUtil.class);
+        when(cryptoUtil.deriveKeyBytesFromPassword(any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return new byte[32];
+        });
+        PassphraseKeyDerivation derivation = new PassphraseKeyDerivation(cryptoUtil, meterRegistry, 1, 1);
+        try {
+            CompletableFuture<byte[]> running = derivation.deriveAsync("passphrase", "running");
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<byte[]> queued = derivation.deriveAsync("passphrase", "queued");
+
+            CompletableFuture<byte[]> refused = derivation.deriveAsync("passphrase", "refused");
+
+            ExecutionException failure = assertThrows(ExecutionException.class, refused::get);
+            assertInstanceOf(KeyDerivationBusyException.class, failure.getCause());
+            assertThrows(KeyDerivationBusyException.class, () -> derivation.derive("passphrase", "refused"));
+            assertEquals(2, meterRegistry.get("passphrase.kdf.rejected").counter().count());
+            assertEquals(1, meterRegistry.get("passphrase.kdf.queued").gauge().value());
+
+            release.countDown();
+            assertEquals(32, running.get(5, TimeUnit.SECONDS).length);
+            assertEquals(32, queued.get(5, TimeUnit.SECONDS).length);
+        } finally {
+            release.countDown();
+            derivation.destroy();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.secret_message.secret_message_app.service;
+
+import com.secret_message.secret_message_app.cache.MessageStore;
+import com.secret_message.secret_message_app.cache.TakenMessage;
+import com.secret_message.secret_message_app.idempotency.IdempotencyService;
+import com.secret_message.secret_message_app.utils.CryptoUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Threading and failure handling of the reactive create and reveal paths,
+ * and of batch creates, against a mocked store; the happy paths are covered end to end by
+ * ReactiveMessageApiIntegrationTest.
+ */
+class SecretMessageServiceReactiveTest {
+
+    private final MessageStore messageStore = mock(MessageStore.class);
+    private final CryptoUtil cryptoUtil = mock(CryptoUtil.class);
+    private final CryptoExecutor cryptoExecutor = new CryptoExecutor(new SimpleMeterRegistry(), 2);
+    private final SecretMessageService secretMessageService = new SecretMessageService(messageStore, cryptoUtil,
+            mock(IdempotencyService.class), new SimpleMeterRegistry(), mock(PassphraseKeyDerivation.class),
+            cryptoExecutor);
+
+    @AfterEach
+    void stop() {
+        cryptoExecutor.destroy();
+    }
+
+    @Test
+    void atomicReveal_decryptsOnACryptoWorker_notTheThreadThatCompletedTheTake() throws Exception {
+        TakenMessage taken = new TakenMessage(new byte[]{CryptoUtil.GCM_PAYLOAD_MARKER, 1, 2, 3}, 60_000, 1, 0);
+        CompletableFuture<TakenMessage> take = new CompletableFuture<>();
+        when(messageStore.takeMessageAsync("m")).thenReturn(take);
+        AtomicReference<String> decryptThread = new AtomicReference<>();
+        when(cryptoUtil.decryptMessageFromBytes(any(), any())).thenAnswer(invocation -> {
+            decryptThread.set(Thread.currentThread().getName());
+            return "revealed";
+        });
+
+        CompletableFuture<String> revealed = secretMessageService.getEncryptedMessageByIdAsync("m", new byte[32]);
+        Thread ioThread = new Thread(() -> take.complete(taken), "lettuce-io");
+        ioThread.start();
+
+        assertEquals("revealed", revealed.get(5, TimeUnit.SECONDS));
+        assertTrue(decryptThread.get().startsWith("crypto-"), decryptThread.get());
+    }
+
+    @Test
+    void create_sealsASegmentedPayloadOnACryptoWorker_notTheEventLoop() throws Exception {
+        ReflectionTestUtils.setField(secretMessageService, "binaryPayloads", true);
+        ReflectionTestUtils.setField(secretMessageService, "payloadCipher", "gcm");
+        ReflectionTestUtils.setField(secretMessageService, "segmentSize", 16);
+        when(messageStore.newMessageId()).thenReturn("m");
+        when(cryptoUtil.generateRandomAESKeyBytes()).thenReturn(new byte[32]);
+        AtomicReference<String> sealThread = new AtomicReference<>();
+        when(cryptoUtil.encryptSegmentedMessageToBytes(any(), any(), eq(16))).thenAnswer(invocation -> {
+            sealThread.set(Thread.currentThread().getName());
+            return new byte[]{CryptoUtil.SEGMENTED_PAYLOAD_MARKER};
+        });
+        when(messageStore.storeEncryptedPayloadAsync(eq("m"), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals("m", secretMessageService.createSecretMessageAsync("x".repeat(100))
+                .get(5, TimeUnit.SECONDS).getMessageId());
+        assertTrue(sealThread.get().startsWith("crypto-"), sealThread.get());
+    }
+
+    @Test
+    void atomicReveal_decryptThatThrows_putsTheMessageBackUncounted() throws Exception {
+        TakenMessage taken = new TakenMessage(new byte[]{CryptoUtil.GCM_PAYLOAD_MARKER, 1, 2, 3}, 60_000, 1, 0);
+        when(messageStore.takeMessageAsync("m")).thenReturn(CompletableFuture.completedFuture(taken));
+        when(messageStore.restoreAfterFailedAttemptAsync(eq("m"), any()))
+                .thenReturn(CompletableFuture.completedFuture(false));
+        when(cryptoUtil.decryptMessageFromBytes(any(), any()))
+                .thenThrow(new IllegalStateException("cipher provider failed"));
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> secretMessageService.getEncryptedMessageByIdAsync("m", new byte[32]).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        ArgumentCaptor<TakenMessage> restored = ArgumentCaptor.forClass(TakenMessage.class);
+        verify(messageStore).restoreAfterFailedAttemptAsync(eq("m"), restored.capture());
+        assertSame(taken.payload(), restored.getValue().payload());
+        // Restoring counts one attempt, so the put-back leaves the count as it was.
+        assertEquals(taken.attempts() - 1, restored.getValue().attempts());
+    }
+
+    @Test
+    void batchCreate_appendsAChunkedMessageWithoutBlocking_fromCryptoWorkers() throws Exception {
+        ReflectionTestUtils.setField(secretMessageService, "binaryPayloads", true);
+        ReflectionTestUtils.setField(secretMessageService, "chunkSize", 1_024);
+        when(messageStore.newMessageId()).thenReturn("small", "large");
+        when(cryptoUtil.generateRandomAESKeyBytes()).thenReturn(new byte[32], new byte[32]);
+        when(cryptoUtil.encryptMessageToBytes(eq("x"), any(), eq(true))).thenReturn(new byte[]{1});
+        when(cryptoUtil.encryptMessageInChunks(any(), any(), eq(1_024))).thenAnswer(invocation ->
+                new CryptoUtil().encryptMessageInChunks(invocation.getArgument(0), invocation.getArgument(1), 1_024));
+        List<String> appendThreads = new CopyOnWriteArrayList<>();
+        when(messageStore.appendChunkAsync(eq("large"), any())).thenAnswer(invocation -> {
+            appendThreads.add(Thread.currentThread().getName());
+            return CompletableFuture.completedFuture(null);
+        });
+
+        assertEquals(2, secretMessageService.createSecretMessages(List.of("x", "y".repeat(5_000))).size());
+
+        verify(messageStore, never()).appendChunk(anyString(), any());
+        assertFalse(appendThreads.isEmpty());
+        assertTrue(appendThreads.stream().allMatch(name -> name.startsWith("crypto-")), appendThreads.toString());
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.secret_message.secret_message_app.cache.RedisCacheManager;
 import com.secret_message.secret_message_app.exception.MessageNotAvailableException;
 import com.secret_message.secret_message_app.model.SecretMessageIdentifier;
+import com.secret_message.secret_message_app.utils.ChunkedEncryption;
 import com.secret_message.secret_message_app.utils.CryptoUtil;
 import io.nats.client.Message;
 import org.junit.jupiter.api.Test;
@@ -185,4 +186,65 @@ class SecretMessageServiceTest {
         assertNotNull(ttl, "attempts:* key should exist after a failed attempt");
         assertTrue(ttl > 0, "attempts:* key must have a positive TTL (got " + ttl + ")");
     }
+
+    @Test
+    void legacyBase64Entry_isStillRevealed() throws Exception {
+        byte[] key = cryptoUtil.generateRandomAESKeyBytes();
+        redisCacheManager.storeEncryptedMessage("legacy-entry",
+                cryptoUtil.encryptMessage("stored before binary payloads", key));
+
+        String revealed = secretMessageService.getEncryptedMessageById("legacy-entry", key);
+
+        assertEquals("stored before binary payloads", revealed);
+        assertNull(redisCacheManager.getEncryptedPayload("legacy-entry"));
+    }
+
+    @Test
+    void storedPayload_carriesAKeyCommitment_andOneWithoutIsStillRevealed() throws Exception {
+        SecretMessageIdentifier identifier = secretMessageService.createSecretMessage("committed");
+        byte[] stored = redisCacheManager.getEncryptedPayload(identifier.getMessageId());
+        assertTrue(CryptoUtil.hasKeyCommitment(stored));
+        assertTrue(CryptoUtil.isAuthenticatedPayload(stored));
+
+        byte[] key = cryptoUtil.generateRandomAESKeyBytes();
+        redisCacheManager.storeEncryptedPayload("uncommitted-entry",
+                cryptoUtil.encryptMessageToBytes("stored before key commitments", key, true));
+
+        assertEquals("committed", secretMessageService.getEncryptedMessageById(
+                identifier.getMessageId(), identifier.getAeskey()));
+        assertEquals("stored before key commitments",
+                secretMessageService.getEncryptedMessageById("uncommitted-entry", key));
+    }
+
+    @Test
+    void messageOverSegmentSize_isStoredSegmented_andRevealed() {
+        // Over app.storage.segment-size (64 KiB), under app.storage.chunk-size.
+        String secret = "-----BEGIN CERTIFICATE-----\n".repeat(4_000);
+
+        SecretMessageIdentifier identifier = secretMessageService.createSecretMessage(secret);
+        byte[] stored = redisCacheManager.getEncryptedPayload(identifier.getMessageId());
+
+        assertTrue(CryptoUtil.hasKeyCommitment(stored));
+        assertTrue(CryptoUtil.isSegmentedPayload(stored));
+        assertEquals(secret, secretMessageService.getEncryptedMessageById(
+                identifier.getMessageId(), identifier.getAeskey()));
+    }
+
+    @Test
+    void committedManifest_rejectsAWrongKey_withoutReadingAnyChunk() throws Exception {
+        byte[] key = cryptoUtil.generateRandomAESKeyBytes();
+        ChunkedEncryption encryption = cryptoUtil.encryptMessageInChunks("x".repeat(100_000), key, 16_384);
+        while (encryption.nextChunk() != null) {
+            // The chunks are never stored: reading one would make this NOT_FOUND.
+        }
+        redisCacheManager.storeEncryptedPayload("chunkless-entry",
+                cryptoUtil.withKeyCommitment(encryption.manifest(), key));
+        byte[] wrongKey = cryptoUtil.generateRandomAESKeyBytes();
+
+        MessageNotAvailableException ex = assertThrows(MessageNotAvailableException.class,
+                () -> secretMessageService.getEncryptedMessageById("chunkless-entry", wrongKey));
+
+        assertEquals(MessageNotAvailableException.Reason.WRONG_KEY, ex.getReason());
+        assertNotNull(redisCacheManager.getEncryptedPayload("chunkless-entry"));
+    }
 }
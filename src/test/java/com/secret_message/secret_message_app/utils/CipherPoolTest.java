@@ -0,0 +1,60 @@
+package com.secret_message.secret_message_app.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CipherPoolTest {
+
+    private static final GCMParameterSpec ZERO_NONCE = new GCMParameterSpec(128, new byte[12]);
+
+    @Test
+    void release_thenAcquire_reusesTheInstance() throws Exception {
+        CipherPool pool = new CipherPool("AES/GCM/NoPadding", ZERO_NONCE, true, 2);
+
+        Cipher cipher = pool.acquire();
+        pool.release(cipher);
+
+        assertEquals(1, pool.idleCount());
+        assertSame(cipher, pool.acquire());
+        assertEquals(0, pool.idleCount());
+    }
+
+    @Test
+    void release_scrubsTheCallersKey() throws Exception {
+        CipherPool pool = new CipherPool("AES/GCM/NoPadding", ZERO_NONCE, true, 2);
+        SecretKeySpec key = new SecretKeySpec(new CryptoUtil().generateRandomAESKeyBytes(), "AES");
+        GCMParameterSpec nonce = new GCMParameterSpec(128, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+        Cipher cipher = pool.acquire();
+        cipher.init(Cipher.ENCRYPT_MODE, key, nonce);
+        byte[] sealed = cipher.doFinal("pooled".getBytes(StandardCharsets.UTF_8));
+        cipher.init(Cipher.DECRYPT_MODE, key, nonce);
+        pool.release(cipher);
+
+        // Used without init, the idle cipher is keyed with zeros, not the old key.
+        Cipher reused = pool.acquire();
+        assertSame(cipher, reused);
+        assertThrows(AEADBadTagException.class, () -> reused.doFinal(sealed));
+    }
+
+    @Test
+    void release_pastCapacity_dropsTheCipher() throws Exception {
+        CipherPool pool = new CipherPool("AES/GCM/NoPadding", ZERO_NONCE, false, 1);
+
+        Cipher first = pool.acquire();
+        Cipher second = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+
+        assertEquals(1, pool.idleCount());
+        pool.clear();
+        assertEquals(0, pool.idleCount());
+    }
+}
@@ -2,11 +2,23 @@ package com.secret_message.secret_message_app.utils;
 
 import org.junit.jupiter.api.Test;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.BadPaddingException;
 import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -93,6 +105,276 @@ class CryptoUtilTest {
         assertEquals("", decrypted);
     }
 
+    // ─── Binary stored payloads ───────────────────────────────────────────────
+
+    @Test
+    void encryptMessageToBytes_decryptMessageFromBytes_roundTrip() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        String original = "Binary payload 🔐 Ação";
+
+        byte[] stored = crypto.encryptMessageToBytes(original, key);
+
+        assertEquals(CryptoUtil.BINARY_PAYLOAD_MARKER, stored[0]);
+        assertEquals(original, crypto.decryptMessageFromBytes(stored, key));
+    }
+
+    @Test
+    void encryptMessageToBytes_isSmallerThanBase64Form() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        String original = "x".repeat(3000);
+
+        byte[] stored = crypto.encryptMessageToBytes(original, key);
+        String legacy = crypto.encryptMessage(original, key);
+
+        assertTrue(stored.length < legacy.length() * 3 / 4 + 2,
+                "Binary form must not carry the Base64 expansion");
+    }
+
+    @Test
+    void decryptMessageFromBytes_readsLegacyBase64Payload() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        String legacy = crypto.encryptMessage("written before the binary format", key);
+
+        String decrypted = crypto.decryptMessageFromBytes(legacy.getBytes(StandardCharsets.US_ASCII), key);
+
+        assertEquals("written before the binary format", decrypted);
+    }
+
+    @Test
+    void decryptMessageFromBytes_wrongKey_throwsBadPaddingException() throws Exception {
+        byte[] stored = crypto.encryptMessageToBytes("data", crypto.generateRandomAESKeyBytes());
+
+        assertThrows(BadPaddingException.class,
+                () -> crypto.decryptMessageFromBytes(stored, crypto.generateRandomAESKeyBytes()));
+    }
+
+    // ─── AES-GCM envelope ─────────────────────────────────────────────────────
+
+    @Test
+    void authenticatedPayload_roundTrip_andStreamedReveal() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        String original = "sealed \u00e9\u20ac\ud83d\ude00 ".repeat(2_000);
+
+        byte[] stored = crypto.encryptMessageToBytes(original, key, true);
+
+        assertEquals(CryptoUtil.GCM_PAYLOAD_MARKER, stored[0]);
+        assertTrue(CryptoUtil.isAuthenticatedPayload(stored));
+        assertFalse(CryptoUtil.isBinaryPayload(stored));
+        assertEquals(CryptoUtil.authenticatedPayloadLength(CryptoUtil.utf8Length(original)), stored.length);
+        assertEquals(original, crypto.decryptMessageFromBytes(stored, key));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        crypto.decryptPayloadStreaming(stored, key).writeTo(out);
+        assertEquals(original, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void authenticatedPayload_rejectsEveryWrongKey() throws Exception {
+        byte[] stored = crypto.encryptMessageToBytes("data", crypto.generateRandomAESKeyBytes(), true);
+
+        // CBC lets roughly one wrong key in 256 through its padding check.
+        for (int i = 0; i < 1_000; i++) {
+            byte[] wrongKey = crypto.generateRandomAESKeyBytes();
+            assertThrows(AEADBadTagException.class, () -> crypto.decryptMessageFromBytes(stored, wrongKey));
+        }
+        assertThrows(AEADBadTagException.class,
+                () -> crypto.decryptPayloadStreaming(stored, crypto.generateRandomAESKeyBytes()));
+    }
+
+    @Test
+    void authenticatedPayload_anyModifiedByte_isRejected() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        byte[] stored = crypto.encryptMessageToBytes("tamper test", key, true);
+
+        for (int i = 1; i < stored.length; i++) {
+            byte[] tampered = stored.clone();
+            tampered[i] ^= 0x01;
+            assertThrows(AEADBadTagException.class, () -> crypto.decryptMessageFromBytes(tampered, key));
+        }
+    }
+
+    @Test
+    void authenticatedCompressedPayload_roundTrip() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        String message = "{\"host\": \"db.internal\", \"user\": \"\u00e9\u20ac\"}\n".repeat(500);
+
+        byte[] stored = crypto.encryptCompressedMessageToBytes(message, key, true);
+
+        assertEquals(CryptoUtil.GCM_COMPRESSED_PAYLOAD_MARKER, stored[0]);
+        assertTrue(CryptoUtil.isCompressedPayload(stored));
+        assertTrue(CryptoUtil.isAuthenticatedPayload(stored));
+        assertEquals(message, crypto.decryptMessageFromBytes(stored, key));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        crypto.decryptPayloadStreaming(stored, key).writeTo(out);
+        assertEquals(message, out.toString(StandardCharsets.UTF_8));
+
+        byte[] incompressible = crypto.encryptCompressedMessageToBytes("x", key, true);
+        assertEquals(CryptoUtil.GCM_PAYLOAD_MARKER, incompressible[0]);
+        assertEquals("x", crypto.decryptMessageFromBytes(incompressible, key));
+    }
+
+    @Test
+    void encryptAuthenticated_decryptAuthenticated_roundTrip() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        byte[] plaintext = crypto.generateRandomAESKeyBytes();
+
+        byte[] sealed = crypto.encryptAuthenticated(plaintext, key);
+
+        assertEquals(1 + 12 + plaintext.length + 16, sealed.length);
+        assertArrayEquals(plaintext, crypto.decryptAuthenticated(sealed, key));
+        assertThrows(AEADBadTagException.class,
+                () -> crypto.decryptAuthenticated(sealed, crypto.generateRandomAESKeyBytes()));
+    }
+
+    // ─── Segmented AES-GCM ────────────────────────────────────────────────────
+
+    @Test
+    void segmentedPayload_roundTrip_acrossSegmentBoundaries_andStreamedReveal() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        // Multi-byte characters straddle the 1000-byte segment boundaries.
+        String original = "bundle \u00e9\u20ac\ud83d\ude00\n".repeat(500);
+
+        byte[] stored = crypto.encryptSegmentedMessageToBytes(original, key, 1_000);
+
+        assertEquals(CryptoUtil.SEGMENTED_PAYLOAD_MARKER, stored[0]);
+        assertTrue(CryptoUtil.isSegmentedPayload(stored));
+        assertTrue(CryptoUtil.isAuthenticatedPayload(stored));
+        assertFalse(CryptoUtil.isCompressedPayload(stored));
+        assertFalse(CryptoUtil.isBinaryPayload(stored));
+        assertEquals(CryptoUtil.segmentedPayloadLength(CryptoUtil.utf8Length(original), 1_000), stored.length);
+        assertEquals(original, crypto.decryptMessageFromBytes(stored, key));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        crypto.decryptPayloadStreaming(stored, key).writeTo(out);
+        assertEquals(original, out.toString(StandardCharsets.UTF_8));
+
+        byte[] committed = crypto.withKeyCommitment(stored, key);
+        assertTrue(CryptoUtil.isSegmentedPayload(committed));
+        assertEquals(original, crypto.decryptMessageFromBytes(committed, key));
+        assertEquals("", crypto.decryptMessageFromBytes(crypto.encryptSegmentedMessageToBytes("", key, 1_000), key));
+        assertThrows(IllegalArgumentException.class, () -> crypto.encryptSegmentedMessageToBytes("x", key, 0));
+    }
+
+    @Test
+    void segmentedPayload_rejectsAWrongKey() throws Exception {
+        byte[] stored = crypto.encryptSegmentedMessageToBytes("z".repeat(10_000), crypto.generateRandomAESKeyBytes(),
+                1_024);
+
+        for (int i = 0; i < 100; i++) {
+            byte[] wrongKey = crypto.generateRandomAESKeyBytes();
+            assertThrows(AEADBadTagException.class, () -> crypto.decryptMessageFromBytes(stored, wrongKey));
+        }
+        assertThrows(AEADBadTagException.class,
+                () -> crypto.decryptPayloadStreaming(stored, crypto.generateRandomAESKeyBytes()));
+    }
+
+    @Test
+    void segmentedPayload_anyModifiedByte_reorderingOrTruncation_isRejected() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        byte[] stored = crypto.encryptSegmentedMessageToBytes("0123456789abcdef".repeat(4), key, 32);
+        int segment = 32 + 16;
+        int header = stored.length - 2 * segment;
+
+        for (int i = 1; i < stored.length; i++) {
+            byte[] tampered = stored.clone();
+            tampered[i] ^= 0x01;
+            assertThrows(GeneralSecurityException.class, () -> crypto.decryptMessageFromBytes(tampered, key));
+        }
+
+        byte[] swapped = stored.clone();
+        System.arraycopy(stored, header, swapped, header + segment, segment);
+        System.arraycopy(stored, header + segment, swapped, header, segment);
+        assertThrows(AEADBadTagException.class, () -> crypto.decryptMessageFromBytes(swapped, key));
+
+        byte[] truncated = Arrays.copyOf(stored, header + segment);
+        ByteBuffer.wrap(truncated, 5, Integer.BYTES).putInt(32);
+        assertThrows(AEADBadTagException.class, () -> crypto.decryptMessageFromBytes(truncated, key));
+    }
+
+    // ─── Pooled ciphers and contexts ──────────────────────────────────────────
+
+    @Test
+    void pooledCiphers_stillWork_afterAFailedDecrypt() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        byte[] sealed = crypto.encryptMessageToBytes("after a failure", key, true);
+        byte[] legacy = crypto.encryptMessageToBytes("after a failure", key, false);
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(AEADBadTagException.class,
+                    () -> crypto.decryptMessageFromBytes(sealed, crypto.generateRandomAESKeyBytes()));
+            assertEquals("after a failure", crypto.decryptMessageFromBytes(sealed, key));
+            assertEquals("after a failure", crypto.decryptMessageFromBytes(legacy, key));
+        }
+    }
+
+    @Test
+    void cipherContext_interoperatesWithTheByteArrayKeyApi() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        byte[] plaintext = crypto.generateRandomAESKeyBytes();
+
+        try (CipherContext context = crypto.openContext(key)) {
+            for (int i = 0; i < 3; i++) {
+                assertArrayEquals(plaintext,
+                        crypto.decryptAuthenticated(crypto.encryptAuthenticated(plaintext, context), key));
+                assertArrayEquals(plaintext,
+                        crypto.decryptAuthenticated(crypto.encryptAuthenticated(plaintext, key), context));
+                assertArrayEquals(plaintext, crypto.decrypt(crypto.encrypt(plaintext, context), key));
+                assertArrayEquals(plaintext, crypto.decrypt(crypto.encrypt(plaintext, key), context));
+            }
+            assertThrows(AEADBadTagException.class, () -> crypto.decryptAuthenticated(
+                    crypto.encryptAuthenticated(plaintext, crypto.generateRandomAESKeyBytes()), context));
+        }
+    }
+
+    // ─── Key commitment ───────────────────────────────────────────────────────
+
+    @Test
+    void keyCommitment_isSeenThrough_andOpensOnlyForItsKey() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        byte[] payload = crypto.encryptCompressedMessageToBytes("{\"a\":1}\n".repeat(200), key, true);
+
+        byte[] committed = crypto.withKeyCommitment(payload, key);
+
+        assertEquals(CryptoUtil.KEY_COMMITMENT_MARKER, committed[0]);
+        assertEquals(1 + 16 + payload.length, committed.length);
+        assertTrue(CryptoUtil.isCompressedPayload(committed));
+        assertTrue(CryptoUtil.isAuthenticatedPayload(committed));
+        assertArrayEquals(payload, crypto.openKeyCommitment(committed, key));
+        assertEquals("{\"a\":1}\n".repeat(200), crypto.decryptMessageFromBytes(committed, key));
+        for (int i = 0; i < 100; i++) {
+            byte[] wrongKey = crypto.generateRandomAESKeyBytes();
+            assertThrows(InvalidKeyException.class,
+                    () -> crypto.decryptMessageFromBytes(committed, wrongKey));
+        }
+    }
+
+    @Test
+    void keyCommitment_onAManifest_rejectsAWrongKeyBeforeAnyChunk() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        ChunkedEncryption encryption = crypto.encryptMessageInChunks("y".repeat(5_000), key, 1_024);
+        List<byte[]> chunks = drain(encryption);
+        byte[] committed = crypto.withKeyCommitment(encryption.manifest(), key);
+
+        assertTrue(CryptoUtil.isChunkedManifest(committed));
+        assertFalse(CryptoUtil.isFileManifest(committed));
+        assertThrows(InvalidKeyException.class,
+                () -> crypto.decryptMessageFromChunks(committed, crypto.generateRandomAESKeyBytes()));
+
+        ChunkedDecryption decryption = crypto.decryptMessageFromChunks(committed, key);
+        for (byte[] chunk : chunks) {
+            decryption.update(chunk);
+        }
+        assertEquals("y".repeat(5_000), decryption.finish());
+    }
+
+    @Test
+    void openKeyCommitment_passesAnUncommittedPayloadThrough() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        byte[] payload = crypto.encryptMessageToBytes("plain", key, false);
+
+        assertFalse(CryptoUtil.hasKeyCommitment(payload));
+        assertSame(payload, crypto.openKeyCommitment(payload, crypto.generateRandomAESKeyBytes()));
+    }
+
     // ─── Key generation ───────────────────────────────────────────────────────
 
     @Test
@@ -110,6 +392,206 @@ class CryptoUtilTest {
         assertFalse(Arrays.equals(k1, k2), "Keys must be random and unique");
     }
 
+    // ─── chunked encryption ────────────────────────────────────────────────────
+
+    private static List<byte[]> drain(ChunkedEncryption encryption) throws Exception {
+        List<byte[]> chunks = new ArrayList<>();
+        for (byte[] chunk = encryption.nextChunk(); chunk != null; chunk = encryption.nextChunk()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    @Test
+    void chunkedEncryption_roundTrip_acrossMultiByteCharacterBoundaries() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        // 2-, 3- and 4-byte UTF-8 sequences, so chunk boundaries fall inside characters.
+        String message = "a\u00e9\u20ac\ud83d\ude00".repeat(5_000);
+
+        ChunkedEncryption encryption = crypto.encryptMessageInChunks(message, key, 1024);
+        List<byte[]> chunks = drain(encryption);
+        byte[] manifest = encryption.manifest();
+
+        assertTrue(chunks.size() > 1);
+        assertTrue(CryptoUtil.isChunkedManifest(manifest));
+        assertFalse(CryptoUtil.isBinaryPayload(manifest));
+        ChunkedDecryption decryption = crypto.decryptMessageFromChunks(manifest, key);
+        assertEquals(chunks.size(), decryption.chunkCount());
+        for (byte[] chunk : chunks) {
+            decryption.update(chunk);
+        }
+        assertEquals(message, decryption.finish());
+    }
+
+    @Test
+    void chunkedEncryption_wrongKey_failsOnFinish() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        ChunkedEncryption encryption = crypto.encryptMessageInChunks("x".repeat(10_000), key, 1024);
+        List<byte[]> chunks = drain(encryption);
+
+        ChunkedDecryption decryption = crypto.decryptMessageFromChunks(
+                encryption.manifest(), crypto.generateRandomAESKeyBytes());
+        for (byte[] chunk : chunks) {
+            decryption.update(chunk);
+        }
+        assertThrows(BadPaddingException.class, decryption::finish);
+    }
+
+    @Test
+    void chunkedEncryption_manifestUnavailableUntilLastChunk() throws Exception {
+        ChunkedEncryption encryption = crypto.encryptMessageInChunks(
+                "x".repeat(4_096), crypto.generateRandomAESKeyBytes(), 1024);
+
+        encryption.nextChunk();
+
+        assertThrows(IllegalStateException.class, encryption::manifest);
+    }
+
+    @Test
+    void streamEncryption_roundTrip_includingAnEndOnAChunkBoundary() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        for (int length : new int[]{0, 1_000, 2_048, 5_000}) {
+            byte[] file = new byte[length];
+            new Random(length).nextBytes(file);
+
+            ChunkedEncryption encryption = crypto.encryptStreamInChunks(
+                    new ByteArrayInputStream(file), key, 1024);
+            List<byte[]> chunks = drain(encryption);
+            byte[] manifest = encryption.manifest();
+
+            assertEquals(length / 1024 + 1, chunks.size());
+            assertEquals(length, encryption.plaintextLength());
+            assertTrue(CryptoUtil.isFileManifest(manifest));
+            assertTrue(CryptoUtil.isChunkedManifest(manifest));
+            StreamingDecryption decryption = crypto.decryptStreaming(key, manifest, 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (byte[] chunk : chunks) {
+                decryption.update(chunk, 0, chunk.length, out);
+            }
+            decryption.finish(out);
+            assertArrayEquals(file, out.toByteArray());
+        }
+    }
+
+    @Test
+    void messageManifest_isNotAFileManifest() throws Exception {
+        ChunkedEncryption encryption = crypto.encryptMessageInChunks(
+                "x".repeat(4_096), crypto.generateRandomAESKeyBytes(), 1024);
+        drain(encryption);
+
+        assertFalse(CryptoUtil.isFileManifest(encryption.manifest()));
+    }
+
+    @Test
+    void decryptPayloadStreaming_writesPlaintext_forBothStoredFormats() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        String message = "stream \u00e9\u20ac ".repeat(3_000);
+
+        for (byte[] stored : List.of(crypto.encryptMessageToBytes(message, key),
+                crypto.encryptMessage(message, key).getBytes(StandardCharsets.US_ASCII))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            crypto.decryptPayloadStreaming(stored, key).writeTo(out);
+            assertEquals(message, out.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void decryptPayloadStreaming_wrongKey_failsBeforeAnythingIsWritten() throws Exception {
+        byte[] stored = crypto.encryptMessageToBytes("data", crypto.generateRandomAESKeyBytes());
+
+        assertThrows(BadPaddingException.class,
+                () -> crypto.decryptPayloadStreaming(stored, crypto.generateRandomAESKeyBytes()));
+    }
+
+    @Test
+    void decryptStreaming_overChunks_matchesChunkedDecryption() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        String message = "a\u00e9\u20ac\ud83d\ude00".repeat(5_000);
+        ChunkedEncryption encryption = crypto.encryptMessageInChunks(message, key, 1024);
+        List<byte[]> chunks = drain(encryption);
+        byte[] manifest = encryption.manifest();
+        byte[] last = chunks.get(chunks.size() - 1);
+
+        crypto.checkKey(key, last, last.length - 32, last, last.length - 16);
+        assertEquals(chunks.size(), CryptoUtil.chunkCount(manifest));
+        StreamingDecryption decryption = crypto.decryptStreaming(key, manifest, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            decryption.update(chunk, 0, chunk.length, out);
+        }
+        decryption.finish(out);
+        assertEquals(message, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void compressedPayload_roundTrip_isSmallerThanUncompressed() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        String message = "{\"host\": \"db.internal\", \"user\": \"\u00e9\u20ac\"}\n".repeat(500);
+
+        byte[] stored = crypto.encryptCompressedMessageToBytes(message, key);
+
+        assertTrue(CryptoUtil.isCompressedPayload(stored));
+        assertFalse(CryptoUtil.isBinaryPayload(stored));
+        assertTrue(stored.length * 10 < crypto.encryptMessageToBytes(message, key).length);
+        assertEquals(message, crypto.decryptMessageFromBytes(stored, key));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        crypto.decryptPayloadStreaming(stored, key).writeTo(out);
+        assertEquals(message, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void compressedPayload_incompressibleMessage_isStoredUncompressed() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        String message = "x";
+
+        byte[] stored = crypto.encryptCompressedMessageToBytes(message, key);
+
+        assertTrue(CryptoUtil.isBinaryPayload(stored));
+        assertEquals(CryptoUtil.binaryPayloadLength(1), stored.length);
+        assertEquals(message, crypto.decryptMessageFromBytes(stored, key));
+    }
+
+    @Test
+    void compressedPayload_wrongKey_throwsBadPaddingException() throws Exception {
+        byte[] stored = crypto.encryptCompressedMessageToBytes("y".repeat(4_096), crypto.generateRandomAESKeyBytes());
+
+        assertThrows(BadPaddingException.class,
+                () -> crypto.decryptMessageFromBytes(stored, crypto.generateRandomAESKeyBytes()));
+    }
+
+    @Test
+    void decryptPayloadStreaming_presetDictionaryStream_failsInsteadOfSpinning() throws Exception {
+        byte[] key = crypto.generateRandomAESKeyBytes();
+        byte[] deflated = new byte[1_024];
+        Deflater deflater = new Deflater();
+        deflater.setDictionary("dictionary".getBytes(StandardCharsets.UTF_8));
+        deflater.setInput("z".repeat(4_096).getBytes(StandardCharsets.UTF_8));
+        deflater.finish();
+        int deflatedLength = deflater.deflate(deflated);
+        deflater.end();
+        // What a wrong key that passes the padding check could decrypt to: a
+        // compressed CBC payload whose zlib header sets FDICT.
+        byte[] ivAndCiphertext = crypto.encrypt(Arrays.copyOf(deflated, deflatedLength), key);
+        byte[] stored = ByteBuffer.allocate(1 + Integer.BYTES + ivAndCiphertext.length)
+                .put(CryptoUtil.COMPRESSED_PAYLOAD_MARKER)
+                .putInt(4_096)
+                .put(ivAndCiphertext)
+                .array();
+
+        StreamingDecryption decryption = crypto.decryptPayloadStreaming(stored, key);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(IOException.class, () -> decryption.writeTo(new ByteArrayOutputStream())));
+    }
+
+    @Test
+    void utf8Length_matchesGetBytes() {
+        String message = "plain \u00e9 \u20ac \ud83d\ude00 lone \ud83d surrogate";
+
+        assertEquals(message.getBytes(StandardCharsets.UTF_8).length, CryptoUtil.utf8Length(message));
+    }
+
     // ─── PBKDF2 key derivation ─────────────────────────────────────────────────
 
     @Test
@@ -0,0 +1,65 @@
+package com.secret_message.secret_message_app.utils;
+
+import com.secret_message.secret_message_app.utils.PasswordGenerator.CharacterClass;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordGeneratorTest {
+
+    private final PasswordGenerator generator = new PasswordGenerator();
+
+    @Test
+    void generate_usesOnlyTheChosenClasses_andEachOfThemAtLeastOnce() {
+        for (int i = 0; i < 1_000; i++) {
+            char[] password = generator.generate(4, EnumSet.of(CharacterClass.LOWER, CharacterClass.DIGITS,
+                    CharacterClass.SYMBOLS));
+
+            assertEquals(4, password.length);
+            assertTrue(contains(password, "abcdefghijklmnopqrstuvwxyz"));
+            assertTrue(contains(password, "0123456789"));
+            assertTrue(contains(password, "!@#$%&*()_+-=[]?"));
+            assertFalse(contains(password, "ABCDEFGHIJKLMNOPQRSTUVWXYZ"));
+        }
+    }
+
+    @Test
+    void generate_coversTheWholeAlphabet() {
+        String digits = "0123456789";
+        boolean[] seen = new boolean[digits.length()];
+        for (int i = 0; i < 200; i++) {
+            for (char c : generator.generate(16, EnumSet.of(CharacterClass.DIGITS))) {
+                seen[digits.indexOf(c)] = true;
+            }
+        }
+
+        for (boolean value : seen) {
+            assertTrue(value);
+        }
+    }
+
+    @Test
+    void generate_rejectsNoClasses_andLengthsBelowTheClassCount() {
+        assertThrows(IllegalArgumentException.class, () -> generator.generate(16, Set.of()));
+        assertThrows(IllegalArgumentException.class,
+                () -> generator.generate(3, EnumSet.allOf(CharacterClass.class)));
+    }
+
+    @Test
+    void generateRandomPassword_keepsItsLength() {
+        assertEquals(32, generator.generateRandomPassword(32).length());
+        assertThrows(IllegalArgumentException.class, () -> generator.generateRandomPassword(0));
+    }
+
+    private static boolean contains(char[] password, String characters) {
+        for (char c : password) {
+            if (characters.indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+package com.secret_message.secret_message_app.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomSourceTest {
+
+    @Test
+    void randomUUID_isVersion4_andParsesBack() {
+        for (int i = 0; i < 1_000; i++) {
+            UUID uuid = RandomSource.randomUUID();
+
+            assertEquals(4, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertEquals(uuid, UUID.fromString(uuid.toString()));
+        }
+    }
+
+    @Test
+    void nextInt_staysInBounds_andCoversThem() {
+        boolean[] seen = new boolean[10];
+        for (int i = 0; i < 1_000; i++) {
+            seen[RandomSource.nextInt(seen.length)] = true;
+        }
+
+        for (boolean value : seen) {
+            assertTrue(value);
+        }
+    }
+
+    @Test
+    void stripeCount_isAPowerOfTwo_coveringTheCores() {
+        int stripes = RandomSource.stripeCount();
+
+        assertEquals(1, Integer.bitCount(stripes));
+        assertTrue(stripes >= Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    void concurrentCallers_neverSeeTheSameBytes() throws Exception {
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int task = 0; task < 64; task++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        assertTrue(ids.add(RandomSource.randomUUID()));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertEquals(64 * 500, ids.size());
+    }
+}